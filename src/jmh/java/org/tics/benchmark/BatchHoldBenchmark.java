@@ -0,0 +1,68 @@
+package org.tics.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.tics.seat.HoldRequest;
+import org.tics.seat.SeatHold;
+import org.tics.ticket.inventory.InventoryMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch hold API against the same requests issued as sequential findAndHoldSeats calls.
+ * Scores are per request so both variants compare directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchHoldBenchmark {
+
+    private static final int HOLD_PERIOD = 2;//milliseconds
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"1000x100"})
+    public String venue;
+
+    @Param({"ROW_BITMAP", "STRIPED_ROW_BITMAP"})
+    public InventoryMode inventoryMode;
+
+    private BenchmarkVenue batchVenue;
+    private List<HoldRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        batchVenue = new BenchmarkVenue(venue, inventoryMode, HOLD_PERIOD);
+        requests = new ArrayList<>(BATCH_SIZE);
+        for(int i = 0; i < BATCH_SIZE; i++) {
+            requests.add(new HoldRequest(1 + i % 6, BenchmarkVenue.EMAIL));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<SeatHold> batch() {
+        List<SeatHold> holds = batchVenue.service.findAndHoldSeatsBatch(requests);
+        expireIfSoldOut(holds.get(holds.size() - 1));
+        return holds;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public SeatHold sequential() {
+        SeatHold hold = null;
+        for(HoldRequest request : requests) {
+            hold = batchVenue.service.findAndHoldSeats(request.getNumSeats(), request.getCustomerEmail());
+        }
+        expireIfSoldOut(hold);
+        return hold;
+    }
+
+    private void expireIfSoldOut(SeatHold lastHold) {
+        if(lastHold.getErrorInfo() != null)
+            batchVenue.expireAll(HOLD_PERIOD);
+    }
+}
@@ -0,0 +1,82 @@
+package org.tics.benchmark;
+
+import org.tics.seat.SeatHold;
+import org.tics.ticket.TicketServiceConfig;
+import org.tics.ticket.TicketServiceImpl;
+import org.tics.ticket.expiry.HoldExpiryEngine;
+import org.tics.ticket.expiry.TimingWheelExpiryEngine;
+import org.tics.ticket.inventory.InventoryMode;
+
+/**
+ * Ticket service under benchmark. The expiry engine is advanced by the benchmark itself instead of its scheduler,
+ * so that expiry only happens when a benchmark asks for it.
+ */
+final class BenchmarkVenue {
+
+    static final String EMAIL = "bench@email.com";
+
+    final TicketServiceImpl service;
+    final HoldExpiryEngine expiryEngine;
+    final int capacity;
+
+    BenchmarkVenue(String venue, InventoryMode inventoryMode, int holdPeriod) {
+        this(venue, inventoryMode, holdPeriod, new TimingWheelExpiryEngine(1));
+    }
+
+    BenchmarkVenue(String venue, InventoryMode inventoryMode, int holdPeriod, HoldExpiryEngine expiryEngine) {
+        this(venue, inventoryMode, holdPeriod, expiryEngine, false);
+    }
+
+    BenchmarkVenue(String venue, InventoryMode inventoryMode, int holdPeriod, HoldExpiryEngine expiryEngine,
+                   boolean metrics) {
+        //venue layout given as RowsxSeatsInRow, e.g. 100x50
+        String[] layout = venue.split("x");
+        int rows = Integer.parseInt(layout[0]);
+        int seatsInRow = Integer.parseInt(layout[1]);
+        TicketServiceConfig config = new TicketServiceConfig(rows, seatsInRow, holdPeriod);
+        config.setInventoryMode(inventoryMode);
+        config.setExpiryEngine(expiryEngine);
+        config.setMetricsEnabled(metrics);
+        this.service = new TicketServiceImpl(config);
+        this.service.turnOffSchedule();
+        this.expiryEngine = expiryEngine;
+        this.capacity = rows * seatsInRow;
+    }
+
+    /**
+     * Expires every hold placed so far (holds are placed with a hold period of a few milliseconds).
+     */
+    void expireAll(int holdPeriod) {
+        awaitHoldsDue(holdPeriod);
+        expireDue();
+    }
+
+    /**
+     * Waits until every hold placed so far is past its expiry.
+     */
+    void awaitHoldsDue(int holdPeriod) {
+        long deadline = System.currentTimeMillis() + holdPeriod + 1;
+        while(System.currentTimeMillis() < deadline)
+            Thread.yield();
+    }
+
+    /**
+     * Expires and releases the holds past their expiry.
+     */
+    void expireDue() {
+        expiryEngine.advance(System.currentTimeMillis() + 1);
+    }
+
+    /**
+     * Holds every seat one at a time, reserves the seats in odd columns and expires the others,
+     * leaving a venue where no two free seats are adjacent.
+     */
+    void fragment(int holdPeriod) {
+        SeatHold hold;
+        while((hold = service.findAndHoldSeats(1, EMAIL)).getErrorInfo() == null) {
+            if(hold.getSeats().get(0).getCol() % 2 == 1)
+                service.reserveSeats(hold.getHoldId(), EMAIL);
+        }
+        expireAll(holdPeriod);
+    }
+}
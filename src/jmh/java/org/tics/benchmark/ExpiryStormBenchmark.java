@@ -0,0 +1,55 @@
+package org.tics.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.tics.ticket.expiry.HoldExpiryEngine;
+import org.tics.ticket.expiry.SkipListExpiryEngine;
+import org.tics.ticket.expiry.TimingWheelExpiryEngine;
+import org.tics.ticket.inventory.InventoryMode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to expire and release a storm of holds all due at once, per expiry engine and inventory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExpiryStormBenchmark {
+
+    private static final int HOLD_PERIOD = 1;//milliseconds
+    private static final int SEATS_IN_ROW = 100;
+    private static final int SEATS_PER_HOLD = 2;
+
+    @Param({"1000", "100000"})
+    public int holds;
+
+    @Param({"TIMING_WHEEL", "SKIP_LIST"})
+    public String expiryEngine;
+
+    @Param({"BLOCK_MAP", "ROW_BITMAP"})
+    public InventoryMode inventoryMode;
+
+    private BenchmarkVenue venue;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        HoldExpiryEngine engine = "SKIP_LIST".equals(expiryEngine) ?
+                new SkipListExpiryEngine(1) :
+                new TimingWheelExpiryEngine(1);
+        int rows = holds * SEATS_PER_HOLD / SEATS_IN_ROW;
+        venue = new BenchmarkVenue(rows + "x" + SEATS_IN_ROW, inventoryMode, HOLD_PERIOD, engine);
+        for(int i = 0; i < holds; i++) {
+            venue.service.findAndHoldSeats(SEATS_PER_HOLD, BenchmarkVenue.EMAIL);
+        }
+        venue.awaitHoldsDue(HOLD_PERIOD);
+    }
+
+    @Benchmark
+    public int expireAll() {
+        venue.expireDue();
+        return venue.service.numSeatsAvailable();
+    }
+}
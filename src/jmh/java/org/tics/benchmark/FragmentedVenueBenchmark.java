@@ -0,0 +1,47 @@
+package org.tics.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.tics.seat.SeatHold;
+import org.tics.ticket.inventory.InventoryMode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation on a fragmented venue where no two free seats are adjacent, so every multi seat request takes the
+ * split path. Holds expire in bulk whenever the free seats run out, restoring the same fragmented layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FragmentedVenueBenchmark {
+
+    private static final int HOLD_PERIOD = 2;//milliseconds
+
+    @Param({"100x50", "1000x100"})
+    public String venue;
+
+    @Param({"BLOCK_MAP", "ROW_BITMAP", "STRIPED_ROW_BITMAP"})
+    public InventoryMode inventoryMode;
+
+    @Param({"2", "6"})
+    public int seatsPerHold;
+
+    private BenchmarkVenue fragmented;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fragmented = new BenchmarkVenue(venue, inventoryMode, HOLD_PERIOD);
+        fragmented.fragment(HOLD_PERIOD);
+    }
+
+    @Benchmark
+    public SeatHold holdFragmented() {
+        SeatHold hold = fragmented.service.findAndHoldSeats(seatsPerHold, BenchmarkVenue.EMAIL);
+        if(hold.getErrorInfo() != null)
+            fragmented.expireAll(HOLD_PERIOD);
+        return hold;
+    }
+}
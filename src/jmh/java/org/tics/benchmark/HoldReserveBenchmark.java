@@ -0,0 +1,94 @@
+package org.tics.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.tics.seat.SeatHold;
+import org.tics.ticket.expiry.TimingWheelExpiryEngine;
+import org.tics.ticket.inventory.InventoryMode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of the hold and hold + reserve paths, single and multi threaded, for venue sizes from
+ * 10x10 to 5000x200. Holds are placed with a short hold period and expired in bulk when the venue runs out of seats;
+ * reserved venues are replaced by a fresh one once sold out.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar HoldReserveBenchmark -prof gc} to report the allocation rate,
+ * and compare the {@code metrics} runs to measure the instrumentation overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HoldReserveBenchmark {
+
+    private static final int HOLD_PERIOD = 2;//milliseconds
+
+    @Param({"10x10", "100x50", "1000x100", "5000x200"})
+    public String venue;
+
+    @Param({"BLOCK_MAP", "ROW_BITMAP", "STRIPED_ROW_BITMAP"})
+    public InventoryMode inventoryMode;
+
+    @Param({"4"})
+    public int seatsPerHold;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private volatile BenchmarkVenue holdVenue;
+    private volatile BenchmarkVenue reserveVenue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        holdVenue = newVenue(HOLD_PERIOD);
+        reserveVenue = newVenue(60 * 1000);
+    }
+
+    @Benchmark
+    public SeatHold hold() {
+        BenchmarkVenue current = holdVenue;
+        SeatHold hold = current.service.findAndHoldSeats(seatsPerHold, BenchmarkVenue.EMAIL);
+        if(hold.getErrorInfo() != null)
+            expireHolds(current);
+        return hold;
+    }
+
+    @Benchmark
+    public String holdAndReserve() {
+        BenchmarkVenue current = reserveVenue;
+        SeatHold hold = current.service.findAndHoldSeats(seatsPerHold, BenchmarkVenue.EMAIL);
+        if(hold.getErrorInfo() != null) {
+            replaceSoldOut(current);
+            return null;
+        }
+        return current.service.reserveSeats(hold.getHoldId(), BenchmarkVenue.EMAIL);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SeatHold holdMultiThreaded() {
+        return hold();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String holdAndReserveMultiThreaded() {
+        return holdAndReserve();
+    }
+
+    private synchronized void expireHolds(BenchmarkVenue current) {
+        if(current.service.numSeatsAvailable() < seatsPerHold)
+            current.expireAll(HOLD_PERIOD);
+    }
+
+    private synchronized void replaceSoldOut(BenchmarkVenue current) {
+        if(reserveVenue == current)
+            reserveVenue = newVenue(60 * 1000);
+    }
+
+    private BenchmarkVenue newVenue(int holdPeriod) {
+        return new BenchmarkVenue(venue, inventoryMode, holdPeriod, new TimingWheelExpiryEngine(1), metrics);
+    }
+}
@@ -0,0 +1,79 @@
+package org.tics.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.tics.seat.SeatHold;
+import org.tics.ticket.RingBufferTicketService;
+import org.tics.ticket.TicketService;
+import org.tics.ticket.TicketServiceConfig;
+import org.tics.ticket.TicketServiceImpl;
+import org.tics.ticket.inventory.InventoryMode;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi threaded holds on the single writer ring buffer service against the lock based service, both expiring
+ * their holds on their own every few milliseconds. Every invocation issues a burst of holds: the ring buffer
+ * service pipelines them asynchronously and waits for the last one, the lock based service serves them one call
+ * at a time. Requests landing on a sold out venue are rejected and count as operations for both services alike.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RingBufferBenchmark {
+
+    private static final int HOLD_PERIOD = 2;//milliseconds
+    private static final int BURST = 64;
+
+    @Param({"1000x100"})
+    public String venue;
+
+    @Param({"RING_BUFFER", "ROW_BITMAP", "STRIPED_ROW_BITMAP"})
+    public String mode;
+
+    private TicketService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] layout = venue.split("x");
+        TicketServiceConfig config = new TicketServiceConfig(Integer.parseInt(layout[0]), Integer.parseInt(layout[1]),
+                HOLD_PERIOD);
+        if("RING_BUFFER".equals(mode)) {
+            config.setInventoryMode(InventoryMode.ROW_BITMAP);
+            service = new RingBufferTicketService(config);
+        } else {
+            config.setInventoryMode(InventoryMode.valueOf(mode));
+            service = new TicketServiceImpl(config);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if(service instanceof RingBufferTicketService)
+            ((RingBufferTicketService) service).close();
+        else
+            ((TicketServiceImpl) service).close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public SeatHold hold() {
+        if(service instanceof RingBufferTicketService) {
+            RingBufferTicketService ring = (RingBufferTicketService) service;
+            CompletableFuture<SeatHold> last = null;
+            for(int i = 0; i < BURST; i++) {
+                last = ring.findAndHoldSeatsAsync(4, BenchmarkVenue.EMAIL);
+            }
+            return last.join();
+        }
+        SeatHold hold = null;
+        for(int i = 0; i < BURST; i++) {
+            hold = service.findAndHoldSeats(4, BenchmarkVenue.EMAIL);
+        }
+        return hold;
+    }
+}
@@ -0,0 +1,42 @@
+package org.tics.seat;
+
+/**
+ * DTO for a single hold request of a batch.
+ */
+public class HoldRequest {
+
+    private int numSeats;
+    private String customerEmail;
+
+    public HoldRequest() {
+    }
+
+    public HoldRequest(int numSeats, String customerEmail) {
+        this.numSeats = numSeats;
+        this.customerEmail = customerEmail;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public void setNumSeats(int numSeats) {
+        this.numSeats = numSeats;
+    }
+
+    public String getCustomerEmail() {
+        return customerEmail;
+    }
+
+    public void setCustomerEmail(String customerEmail) {
+        this.customerEmail = customerEmail;
+    }
+
+    @Override
+    public String toString() {
+        return "HoldRequest{" +
+                "numSeats=" + numSeats +
+                ", customerEmail='" + customerEmail + '\'' +
+                '}';
+    }
+}
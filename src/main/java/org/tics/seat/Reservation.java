@@ -0,0 +1,69 @@
+package org.tics.seat;
+
+import java.util.List;
+
+/**
+ * DTO for a confirmed reservation, as kept by the reservation ledger.
+ */
+public class Reservation {
+
+    private String reservationId;
+    private int holdId;
+    private SeatRuns seatRuns;
+
+    public Reservation() {
+    }
+
+    public Reservation(String reservationId, int holdId, SeatRuns seatRuns) {
+        this.reservationId = reservationId;
+        this.holdId = holdId;
+        this.seatRuns = seatRuns;
+    }
+
+    public String getReservationId() {
+        return reservationId;
+    }
+
+    public void setReservationId(String reservationId) {
+        this.reservationId = reservationId;
+    }
+
+    /**
+     * @return the id of the hold the reservation was made from
+     */
+    public int getHoldId() {
+        return holdId;
+    }
+
+    public void setHoldId(int holdId) {
+        this.holdId = holdId;
+    }
+
+    public int getNumSeats() {
+        return seatRuns != null ? seatRuns.getNumSeats() : 0;
+    }
+
+    /**
+     * @return the reserved seats, a lazily materialized view of the seat runs
+     */
+    public List<SeatInfo> getSeats() {
+        return seatRuns != null ? seatRuns.asSeatInfoList() : null;
+    }
+
+    public SeatRuns getSeatRuns() {
+        return seatRuns;
+    }
+
+    public void setSeatRuns(SeatRuns seatRuns) {
+        this.seatRuns = seatRuns;
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation{" +
+                "reservationId='" + reservationId + '\'' +
+                ", holdId=" + holdId +
+                ", seats=" + seatRuns +
+                '}';
+    }
+}
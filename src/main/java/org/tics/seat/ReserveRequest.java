@@ -0,0 +1,42 @@
+package org.tics.seat;
+
+/**
+ * DTO for a single reserve request of a batch.
+ */
+public class ReserveRequest {
+
+    private int holdId;
+    private String customerEmail;
+
+    public ReserveRequest() {
+    }
+
+    public ReserveRequest(int holdId, String customerEmail) {
+        this.holdId = holdId;
+        this.customerEmail = customerEmail;
+    }
+
+    public int getHoldId() {
+        return holdId;
+    }
+
+    public void setHoldId(int holdId) {
+        this.holdId = holdId;
+    }
+
+    public String getCustomerEmail() {
+        return customerEmail;
+    }
+
+    public void setCustomerEmail(String customerEmail) {
+        this.customerEmail = customerEmail;
+    }
+
+    @Override
+    public String toString() {
+        return "ReserveRequest{" +
+                "holdId=" + holdId +
+                ", customerEmail='" + customerEmail + '\'' +
+                '}';
+    }
+}
@@ -11,7 +11,10 @@ public class SeatHold {
     private int holdId;
     private int numSeats;
     private List<SeatInfo> seats;
+    private SeatRuns seatRuns;
     private String customerEmail;
+    private long expiryMillis;//epoch milliseconds, 0 if none
+    //materialized from expiryMillis on first access
     private Instant expirationTime;
     private ErrorInfo errorInfo;
 
@@ -23,9 +26,23 @@ public class SeatHold {
         this.numSeats = numSeats;
         this.customerEmail = customerEmail;
         this.expirationTime = expirationTime;
+        this.expiryMillis = expirationTime != null ? expirationTime.toEpochMilli() : 0;
         this.seats = seats;
     }
 
+    public SeatHold(int holdId, String customerEmail, SeatRuns seatRuns, Instant expirationTime) {
+        this(holdId, customerEmail, seatRuns, expirationTime.toEpochMilli());
+        this.expirationTime = expirationTime;
+    }
+
+    public SeatHold(int holdId, String customerEmail, SeatRuns seatRuns, long expiryMillis) {
+        this.holdId = holdId;
+        this.numSeats = seatRuns.getNumSeats();
+        this.customerEmail = customerEmail;
+        this.expiryMillis = expiryMillis;
+        this.seatRuns = seatRuns;
+    }
+
     public SeatHold(String customerEmail, int numSeats, ErrorInfo errorInfo) {
         this.customerEmail = customerEmail;
         this.seats = seats;
@@ -51,9 +68,9 @@ public class SeatHold {
         return "SeatHold{" +
                 "holdId=" + holdId +
                 ", numSeats=" + numSeats +
-                ", seats=" + seats +
+                ", seats=" + getSeats() +
                 ", customerEmail='" + customerEmail + '\'' +
-                ", expirationTime=" + expirationTime +
+                ", expirationTime=" + getExpirationTime() +
                 ", errorInfo=" + errorInfo +
                 '}';
     }
@@ -81,6 +98,7 @@ public class SeatHold {
 
     public void setExpirationTime(Instant expirationTime) {
         this.expirationTime = expirationTime;
+        this.expiryMillis = expirationTime != null ? expirationTime.toEpochMilli() : 0;
     }
 
     public int getHoldId() {
@@ -91,16 +109,42 @@ public class SeatHold {
         return numSeats;
     }
 
+    /**
+     * @return the held seats; a lazily materialized view when the hold was created from seat runs
+     */
     public List<SeatInfo> getSeats() {
-        return seats;
+        return seats != null || seatRuns == null ? seats : seatRuns.asSeatInfoList();
+    }
+
+    /**
+     * @return the held seats as runs of adjacent seats, or null if the hold was created from a seat list
+     */
+    public SeatRuns getSeatRuns() {
+        return seatRuns;
+    }
+
+    public void setSeatRuns(SeatRuns seatRuns) {
+        this.seatRuns = seatRuns;
     }
 
     public String getCustomerEmail() {
         return customerEmail;
     }
 
+    /**
+     * @return the expiration time, or null for a failed hold
+     */
     public Instant getExpirationTime() {
+        if(expirationTime == null && expiryMillis != 0)
+            expirationTime = Instant.ofEpochMilli(expiryMillis);
         return expirationTime;
     }
 
+    /**
+     * @return the expiration time in epoch milliseconds, or 0 for a failed hold
+     */
+    public long getExpiryMillis() {
+        return expiryMillis;
+    }
+
 }
@@ -0,0 +1,101 @@
+package org.tics.seat;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Compact representation of a set of seats as runs of adjacent seats in a row.
+ * The runs are packed in a single int array as (row, startCol, length) triples; per seat {@link SeatInfo} objects
+ * are only created on demand through the {@link #asSeatInfoList()} view.
+ */
+public class SeatRuns {
+
+    private static final int ROW = 0;
+    private static final int START_COL = 1;
+    private static final int LENGTH = 2;
+    private static final int RUN_SIZE = 3;
+
+    private final int[] runs;
+    private final int numSeats;
+
+    /**
+     * @param runs the runs packed as (row, startCol, length) triples
+     */
+    public SeatRuns(int[] runs) {
+        if(runs.length % RUN_SIZE != 0)
+            throw new IllegalArgumentException("runs have to be (row, startCol, length) triples");
+        this.runs = runs;
+        int seats = 0;
+        for(int i = LENGTH; i < runs.length; i += RUN_SIZE) {
+            seats += runs[i];
+        }
+        this.numSeats = seats;
+    }
+
+    /**
+     * @return the number of runs
+     */
+    public int size() {
+        return runs.length / RUN_SIZE;
+    }
+
+    public int getRow(int run) {
+        return runs[run * RUN_SIZE + ROW];
+    }
+
+    public int getStartCol(int run) {
+        return runs[run * RUN_SIZE + START_COL];
+    }
+
+    public int getLength(int run) {
+        return runs[run * RUN_SIZE + LENGTH];
+    }
+
+    /**
+     * @return the total number of seats over all the runs
+     */
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    /**
+     * @return a read only list view of the individual seats, in run order
+     */
+    public List<SeatInfo> asSeatInfoList() {
+        return new SeatInfoView();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SeatRuns{");
+        for(int run = 0; run < size(); run++) {
+            if(run > 0)
+                sb.append(", ");
+            sb.append("row=").append(getRow(run))
+                    .append(" cols=").append(getStartCol(run))
+                    .append("..").append(getStartCol(run) + getLength(run) - 1);
+        }
+        return sb.append('}').toString();
+    }
+
+    private class SeatInfoView extends AbstractList<SeatInfo> implements RandomAccess {
+
+        @Override
+        public SeatInfo get(int index) {
+            if(index < 0 || index >= numSeats)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numSeats);
+            int offset = index;
+            for(int i = 0; ; i += RUN_SIZE) {
+                if(offset < runs[i + LENGTH])
+                    return new SeatInfo(runs[i + ROW], runs[i + START_COL] + offset);
+                offset -= runs[i + LENGTH];
+            }
+        }
+
+        @Override
+        public int size() {
+            return numSeats;
+        }
+    }
+}
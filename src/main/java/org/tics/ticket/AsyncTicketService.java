@@ -0,0 +1,246 @@
+package org.tics.ticket;
+
+import org.tics.seat.ErrorInfo;
+import org.tics.seat.HoldRequest;
+import org.tics.seat.ReserveRequest;
+import org.tics.seat.SeatHold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Asynchronous front end of a ticket service.
+ * <p>
+ * Requests are put on a bounded queue and answered through a {@link CompletableFuture}. A single dispatcher thread
+ * drains the queue in batches of up to the batch size and serves each batch with one
+ * {@link TicketService#findAndHoldSeatsBatch} and one {@link TicketService#reserveSeatsBatch} call, so the cost of
+ * locking the inventory and syncing the journal is shared by the whole batch.
+ * <p>
+ * A request that finds the queue full waits up to the admission timeout for room (backpressure) and is then turned
+ * down (admission control): a hold completes with a BUSY error, a reservation completes exceptionally with a
+ * {@link RejectedExecutionException}. As the queue is bounded, so is the time a request spends waiting in it.
+ * <p>
+ * Requests are queued under a shared lock that closing takes exclusively, so a request is either queued before the
+ * close, and served before the dispatcher stops, or turned down.
+ */
+public class AsyncTicketService implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final TicketService service;
+    private final BlockingQueue<Object> queue;
+    private final int batchSize;
+    private final long admissionTimeout;//milliseconds
+    private final Thread dispatcher;
+    private final LongAdder rejected = new LongAdder();
+    //shared by the requests being queued, taken exclusively to stop accepting them
+    private final ReentrantReadWriteLock admission = new ReentrantReadWriteLock();
+
+    private volatile boolean running = true;
+
+    public AsyncTicketService(TicketService service) {
+        this(service, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, 0);
+    }
+
+    /**
+     * @param service          the ticket service serving the requests
+     * @param queueCapacity    the maximum number of requests waiting to be served
+     * @param batchSize        the maximum number of requests served at once
+     * @param admissionTimeout the time a request waits for room in a full queue before being rejected, in milliseconds
+     */
+    public AsyncTicketService(TicketService service, int queueCapacity, int batchSize, long admissionTimeout) {
+        if(service == null)
+            throw new IllegalArgumentException("service has to be provided");
+        if(queueCapacity <= 0 || batchSize <= 0 || admissionTimeout < 0)
+            throw new IllegalArgumentException("queueCapacity/batchSize has to be valid non-zero number");
+        this.service = service;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.admissionTimeout = admissionTimeout;
+        this.dispatcher = new Thread(this::dispatch, "ticket-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public int numSeatsAvailable() {
+        return service.numSeatsAvailable();
+    }
+
+    /**
+     * @return the hold, or a hold with a BUSY error if the request could not be queued
+     */
+    public CompletableFuture<SeatHold> findAndHoldSeats(int numSeats, String customerEmail) {
+        PendingHold pending = new PendingHold(new HoldRequest(numSeats, customerEmail));
+        if(!admit(pending))
+            pending.future.complete(busy(pending.request));
+        return pending.future;
+    }
+
+    /**
+     * @return the reservation id (null if the hold is not found), or a future failed with a
+     * {@link RejectedExecutionException} if the request could not be queued
+     */
+    public CompletableFuture<String> reserveSeats(int seatHoldId, String customerEmail) {
+        PendingReserve pending = new PendingReserve(new ReserveRequest(seatHoldId, customerEmail));
+        if(!admit(pending))
+            pending.future.completeExceptionally(new RejectedExecutionException("Too many requests"));
+        return pending.future;
+    }
+
+    /**
+     * @return the number of requests waiting to be served
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of requests turned down because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops accepting requests, serves the requests already queued and stops the dispatcher. Requests that raced
+     * with the shutdown are turned down.
+     */
+    @Override
+    public void close() {
+        //waits for the requests being queued, at most the admission timeout
+        admission.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            admission.writeLock().unlock();
+        }
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            //the dispatcher goes on serving the queued requests
+            Thread.currentThread().interrupt();
+        }
+        List<Object> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        for(Object pending : leftover) {
+            rejected.increment();
+            if(pending instanceof PendingHold) {
+                ((PendingHold) pending).future.complete(busy(((PendingHold) pending).request));
+            } else {
+                ((PendingReserve) pending).future.completeExceptionally(new RejectedExecutionException("Service closed"));
+            }
+        }
+    }
+
+    private boolean admit(Object pending) {
+        boolean queued = false;
+        admission.readLock().lock();
+        try {
+            if(running) {
+                queued = admissionTimeout == 0 ?
+                        queue.offer(pending) :
+                        queue.offer(pending, admissionTimeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            admission.readLock().unlock();
+        }
+        if(!queued)
+            rejected.increment();
+        return queued;
+    }
+
+    private static SeatHold busy(HoldRequest request) {
+        return new SeatHold(request.getCustomerEmail(), request.getNumSeats(),
+                new ErrorInfo("BUSY", "Too many requests, please try again later"));
+    }
+
+    private void dispatch() {
+        List<Object> batch = new ArrayList<>(batchSize);
+        while(running || !queue.isEmpty()) {
+            try {
+                Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null)
+                    continue;
+                batch.add(first);
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            serve(batch);
+            batch.clear();
+        }
+    }
+
+    private void serve(List<Object> batch) {
+        List<PendingHold> holds = new ArrayList<>();
+        List<PendingReserve> reserves = new ArrayList<>();
+        for(Object pending : batch) {
+            if(pending instanceof PendingHold)
+                holds.add((PendingHold) pending);
+            else
+                reserves.add((PendingReserve) pending);
+        }
+        if(!holds.isEmpty()) {
+            try {
+                List<HoldRequest> requests = new ArrayList<>(holds.size());
+                for(PendingHold pending : holds) {
+                    requests.add(pending.request);
+                }
+                List<SeatHold> results = service.findAndHoldSeatsBatch(requests);
+                for(int i = 0; i < holds.size(); i++) {
+                    holds.get(i).future.complete(results.get(i));
+                }
+            } catch (RuntimeException e) {
+                for(PendingHold pending : holds) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+        }
+        if(!reserves.isEmpty()) {
+            try {
+                List<ReserveRequest> requests = new ArrayList<>(reserves.size());
+                for(PendingReserve pending : reserves) {
+                    requests.add(pending.request);
+                }
+                List<String> results = service.reserveSeatsBatch(requests);
+                for(int i = 0; i < reserves.size(); i++) {
+                    reserves.get(i).future.complete(results.get(i));
+                }
+            } catch (RuntimeException e) {
+                for(PendingReserve pending : reserves) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private static final class PendingHold {
+
+        private final HoldRequest request;
+        private final CompletableFuture<SeatHold> future = new CompletableFuture<>();
+
+        PendingHold(HoldRequest request) {
+            this.request = request;
+        }
+    }
+
+    private static final class PendingReserve {
+
+        private final ReserveRequest request;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        PendingReserve(ReserveRequest request) {
+            this.request = request;
+        }
+    }
+}
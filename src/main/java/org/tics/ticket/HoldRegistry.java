@@ -0,0 +1,128 @@
+package org.tics.ticket;
+
+import org.tics.ticket.expiry.HoldExpiryEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Registry of the active seat holds.
+ * The holds are kept in a {@link HoldTable} that assigns their self-describing ids, for constant time lookups on
+ * reservation, while their expiry is tracked by a {@link HoldExpiryEngine}. The table owns the hold: whoever removes
+ * it from the table first (reservation or expiry) gets to act on it, the other party simply skips it.
+ */
+public class HoldRegistry {
+
+    private final HoldTable holdTable;
+    private final HoldExpiryEngine expiryEngine;
+    private final Consumer<List<SeatBlockHold>> expiredHandler;
+
+    /**
+     * @param holdTable the table of the active holds
+     * @param expiryEngine the engine tracking hold expiry
+     * @param expiredHandler the handler receiving the batches of expired holds to be released
+     */
+    public HoldRegistry(HoldTable holdTable, HoldExpiryEngine expiryEngine, Consumer<List<SeatBlockHold>> expiredHandler) {
+        this.holdTable = holdTable;
+        this.expiryEngine = expiryEngine;
+        this.expiredHandler = expiredHandler;
+        this.expiryEngine.setExpiryHandler(this::onExpired);
+    }
+
+    /**
+     * Registers the hold bound to its customer, assigning its id.
+     *
+     * @return the hold id, or 0 if the table is full
+     */
+    public int add(SeatBlockHold hold) {
+        int holdId = holdTable.add(hold, hold.getCustomerEmail());
+        if(holdId != 0)
+            expiryEngine.schedule(hold);
+        return holdId;
+    }
+
+    /**
+     * Registers a hold under its existing id, e.g. on recovery.
+     *
+     * @return false if the id does not fit the hold table
+     */
+    public boolean restore(SeatBlockHold hold) {
+        if(!holdTable.restore(hold, hold.getCustomerEmail()))
+            return false;
+        expiryEngine.schedule(hold);
+        return true;
+    }
+
+    /**
+     * Removes the active hold with the given id.
+     *
+     * @param holdId the hold identifier
+     * @param customerEmail the email of the customer claiming the hold
+     * @return the removed hold, or null if the hold is unknown, reserved or expired already, or not the customer's
+     */
+    public SeatBlockHold remove(int holdId, String customerEmail) {
+        SeatBlockHold hold = holdTable.remove(holdId, customerEmail);
+        if(hold != null)
+            expiryEngine.cancel(hold);
+        return hold;
+    }
+
+    /**
+     * @return the active hold with the given id if it is the customer's, or null
+     */
+    public SeatBlockHold get(int holdId, String customerEmail) {
+        return holdTable.get(holdId, customerEmail);
+    }
+
+    /**
+     * Moves the expiry of an active hold, updating the expiry engine in place. The caller holds the hold's monitor.
+     *
+     * @param hold the hold
+     * @param expiryMillis the new expiration time, in epoch milliseconds
+     * @return false if the hold is being expired already
+     */
+    public boolean reschedule(SeatBlockHold hold, long expiryMillis) {
+        if(!expiryEngine.cancel(hold))
+            return false;
+        hold.setExpiryMillis(expiryMillis);
+        expiryEngine.schedule(hold);
+        return true;
+    }
+
+    /**
+     * Expires all the holds due at the given time, handing them over to the expired handler.
+     *
+     * @param nowMillis the current time in epoch milliseconds
+     */
+    public void expire(long nowMillis) {
+        expiryEngine.advance(nowMillis);
+    }
+
+    public void start() {
+        expiryEngine.start();
+    }
+
+    public void stop() {
+        expiryEngine.stop();
+    }
+
+    public int size() {
+        return holdTable.size();
+    }
+
+    public boolean isEmpty() {
+        return holdTable.isEmpty();
+    }
+
+    private void onExpired(List<SeatBlockHold> holds) {
+        List<SeatBlockHold> expired = new ArrayList<>(holds.size());
+        for(SeatBlockHold hold : holds) {
+            //only release the holds not claimed by a reservation in the meantime
+            if(holdTable.remove(hold))
+                expired.add(hold);
+        }
+        if(!expired.isEmpty())
+            expiredHandler.accept(expired);
+    }
+}
@@ -0,0 +1,258 @@
+package org.tics.ticket;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table of the active holds indexed by primitive hold id.
+ * <p>
+ * A hold id is self-describing: below the id prefix, its low slot bits are the index of the table slot holding the
+ * hold and the bits above them are the slot's generation, bumped every time the slot is reused. A lookup goes
+ * straight to the slot and compares the stored id, so stale ids (reserved or expired holds whose slot was reused)
+ * and forged ids are rejected in constant time without hashing or boxing. Every hold is also bound to its customer's
+ * email, checked on lookup and removal: the hash of the email rejects other customers first, then the email itself
+ * is compared, so a colliding email does not pass for the customer's.
+ * <p>
+ * The table holds at most one slot per seat, as every hold takes at least one seat. Free slots are recycled through
+ * a lock-free stack. The slot generations start at a random value, so that ids issued by an earlier table (e.g.
+ * before a restart) are unlikely to match the new ones.
+ */
+public class HoldTable {
+
+    public static final int DEFAULT_ID_BITS = 31;
+    public static final int MIN_GENERATION_BITS = 4;
+
+    private final int capacity;
+    private final int prefix;
+    private final int slotBits;
+    private final int slotMask;
+    private final int maxGeneration;
+
+    //id of the hold in each slot, 0 if the slot is free
+    private final AtomicIntegerArray ids;
+    private final SeatBlockHold[] holds;
+    private final int[] customerHashes;
+    private final String[] customerEmails;
+    //generation of the last id issued in each slot, 0 if never used; owned by whoever holds the slot
+    private final int[] generations;
+
+    //free slot stack: (tag << 32) | (slot + 1) of the top slot, 0 when empty; the tag defeats ABA
+    private final AtomicLong freeTop = new AtomicLong();
+    private final int[] nextFree;
+    //slots below are either taken or on the free stack
+    private final AtomicInteger unused = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param capacity the maximum number of active holds
+     * @param prefix   the high bits shared by all the ids
+     * @param idBits   the number of low id bits holding the slot and the generation
+     */
+    public HoldTable(int capacity, int prefix, int idBits) {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("capacity has to be valid non-zero number");
+        this.slotBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(capacity - 1));
+        if(idBits - slotBits < MIN_GENERATION_BITS || idBits > DEFAULT_ID_BITS)
+            throw new IllegalArgumentException("idBits is too small for " + capacity + " holds");
+        if((prefix & (int) ((1L << idBits) - 1)) != 0)
+            throw new IllegalArgumentException("prefix overlaps the id bits");
+        this.capacity = capacity;
+        this.prefix = prefix;
+        this.slotMask = (1 << slotBits) - 1;
+        this.maxGeneration = (1 << (idBits - slotBits)) - 1;
+        this.ids = new AtomicIntegerArray(capacity);
+        this.holds = new SeatBlockHold[capacity];
+        this.customerHashes = new int[capacity];
+        this.customerEmails = new String[capacity];
+        this.generations = new int[capacity];
+        this.nextFree = new int[capacity];
+    }
+
+    /**
+     * Stores the hold and assigns its id.
+     *
+     * @param hold          the hold
+     * @param customerEmail the email of the customer the hold is bound to
+     * @return the hold id, or 0 if the table is full
+     */
+    public int add(SeatBlockHold hold, String customerEmail) {
+        int slot = takeSlot();
+        if(slot < 0)
+            return 0;
+        int generation = generations[slot];
+        generation = generation == 0 ?
+                ThreadLocalRandom.current().nextInt(maxGeneration) + 1 :
+                generation % maxGeneration + 1;
+        generations[slot] = generation;
+        int holdId = prefix | (generation << slotBits) | slot;
+        hold.setHoldId(holdId);
+        holds[slot] = hold;
+        customerHashes[slot] = customerHash(customerEmail);
+        customerEmails[slot] = customerEmail;
+        size.incrementAndGet();
+        ids.set(slot, holdId);
+        return holdId;
+    }
+
+    /**
+     * Stores a hold under its existing id, e.g. on recovery. Meant to be called before the table is shared between
+     * threads.
+     *
+     * @return false if the id does not fit the table or its slot is taken
+     */
+    public boolean restore(SeatBlockHold hold, String customerEmail) {
+        int holdId = hold.getHoldId();
+        int slot = holdId & slotMask;
+        int generation = (holdId >>> slotBits) & maxGeneration;
+        if(slot >= capacity || generation == 0 || (holdId & ~((maxGeneration << slotBits) | slotMask)) != prefix)
+            return false;
+        if(ids.get(slot) != 0 || (slot < unused.get() && !takeFree(slot)))
+            return false;
+        //the never used slots skipped over go to the free stack
+        for(int skipped = unused.get(); skipped < slot; skipped++) {
+            freeSlot(skipped);
+        }
+        unused.set(Math.max(unused.get(), slot + 1));
+        holds[slot] = hold;
+        customerHashes[slot] = customerHash(customerEmail);
+        customerEmails[slot] = customerEmail;
+        generations[slot] = generation;
+        size.incrementAndGet();
+        ids.set(slot, holdId);
+        return true;
+    }
+
+    /**
+     * @return the active hold with the given id, or null
+     */
+    public SeatBlockHold get(int holdId) {
+        int slot = holdId & slotMask;
+        if(slot >= capacity || ids.get(slot) != holdId || holdId == 0)
+            return null;
+        SeatBlockHold hold = holds[slot];
+        return ids.get(slot) == holdId ? hold : null;
+    }
+
+    /**
+     * @return the active hold with the given id if it belongs to the customer, or null
+     */
+    public SeatBlockHold get(int holdId, String customerEmail) {
+        SeatBlockHold hold = get(holdId);
+        return hold != null && isCustomer(holdId & slotMask, customerEmail) ? hold : null;
+    }
+
+    /**
+     * Removes the active hold with the given id if it belongs to the customer.
+     *
+     * @return the removed hold, or null if the id is stale or forged or the customer does not match
+     */
+    public SeatBlockHold remove(int holdId, String customerEmail) {
+        int slot = holdId & slotMask;
+        if(slot >= capacity || holdId == 0 || ids.get(slot) != holdId || !isCustomer(slot, customerEmail))
+            return null;
+        return take(slot, holdId);
+    }
+
+    /**
+     * Removes the hold if it is still active, whoever its customer is, e.g. on expiry.
+     *
+     * @return true if the hold was removed by this call
+     */
+    public boolean remove(SeatBlockHold hold) {
+        int holdId = hold.getHoldId();
+        int slot = holdId & slotMask;
+        if(slot >= capacity || holdId == 0 || ids.get(slot) != holdId)
+            return false;
+        return take(slot, holdId) != null;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the hash of a customer email, indexing the customer's holds and reservations; not unique
+     */
+    public static int customerHash(String customerEmail) {
+        if(customerEmail == null)
+            return 0;
+        int h = customerEmail.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    //the binding is read after the id, which is set once the binding is written
+    private boolean isCustomer(int slot, String customerEmail) {
+        return customerHashes[slot] == customerHash(customerEmail) && Objects.equals(customerEmails[slot], customerEmail);
+    }
+
+    private SeatBlockHold take(int slot, int holdId) {
+        SeatBlockHold hold = holds[slot];
+        //whoever clears the id owns the hold
+        if(!ids.compareAndSet(slot, holdId, 0))
+            return null;
+        holds[slot] = null;
+        customerEmails[slot] = null;
+        size.decrementAndGet();
+        freeSlot(slot);
+        return hold;
+    }
+
+    private int takeSlot() {
+        while(true) {
+            long top = freeTop.get();
+            int slot = (int) top - 1;
+            if(slot < 0)
+                break;
+            long next = ((top >>> 32) + 1) << 32 | nextFree[slot];
+            if(freeTop.compareAndSet(top, next))
+                return slot;
+        }
+        if(unused.get() < capacity) {
+            int slot = unused.getAndIncrement();
+            if(slot < capacity)
+                return slot;
+        }
+        //the stack may have been refilled in the meantime
+        long top = freeTop.get();
+        return (int) top != 0 ? takeSlot() : -1;
+    }
+
+    //unlinks the slot from the free stack; single threaded use only
+    private boolean takeFree(int slot) {
+        long top = freeTop.get();
+        int previous = -1;
+        int current = (int) top - 1;
+        while(current >= 0 && current != slot) {
+            previous = current;
+            current = nextFree[current] - 1;
+        }
+        if(current < 0)
+            return false;
+        if(previous < 0)
+            freeTop.set(((top >>> 32) + 1) << 32 | nextFree[slot]);
+        else
+            nextFree[previous] = nextFree[slot];
+        return true;
+    }
+
+    private void freeSlot(int slot) {
+        while(true) {
+            long top = freeTop.get();
+            nextFree[slot] = (int) top;
+            long next = ((top >>> 32) + 1) << 32 | (slot + 1);
+            if(freeTop.compareAndSet(top, next))
+                return;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.tics.ticket;
+
+import org.tics.util.TimeSource;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Results of the requests made with an idempotency key, kept for a time to live so that a retried request gets the
+ * original result instead of being served again.
+ * <p>
+ * The first request with a key runs and records its result; duplicates arriving while it runs wait for that result,
+ * later ones get it straight from the cache. Only successful results are kept, so a retry of a failed request runs
+ * again. The cache is split into lock stripes, each an insertion ordered map: since every key lives for the same time,
+ * the eldest entries are the first to expire and are dropped on access, and past the cache size the eldest entries go
+ * first whatever their age. The stripe lock is never held while a request runs.
+ *
+ * @param <V> the result type
+ */
+public class IdempotencyCache<V> {
+
+    public static final int DEFAULT_MAX_KEYS = 1 << 16;
+
+    private static final int STRIPES = 16;
+
+    private final long ttlMillis;
+    private final int maxPerStripe;
+    private final TimeSource timeSource;
+    private final Stripe<V>[] stripes;
+
+    /**
+     * @param ttlMillis  the time a result is kept for, in milliseconds
+     * @param maxKeys    the number of results kept at most
+     * @param timeSource the clock the results expire by
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public IdempotencyCache(long ttlMillis, int maxKeys, TimeSource timeSource) {
+        if(ttlMillis <= 0 || maxKeys <= 0)
+            throw new IllegalArgumentException("ttlMillis/maxKeys has to be valid non-zero number");
+        this.ttlMillis = ttlMillis;
+        this.maxPerStripe = Math.max(1, maxKeys / STRIPES);
+        this.timeSource = timeSource;
+        this.stripes = new Stripe[STRIPES];
+        for(int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    /**
+     * Runs a request unless a request with the same key ran or is running.
+     *
+     * @param key        the idempotency key
+     * @param request    the request
+     * @param successful whether a result is kept for the duplicates
+     * @return the result of the request that first came with the key
+     */
+    public V execute(String key, Supplier<V> request, Predicate<V> successful) {
+        long now = timeSource.currentTimeMillis();
+        Stripe<V> stripe = stripeOf(key);
+        Entry<V> entry;
+        boolean first = false;
+        synchronized(stripe) {
+            expire(stripe, now);
+            entry = stripe.entries.get(key);
+            if(entry == null) {
+                entry = new Entry<>(now + ttlMillis);
+                stripe.entries.put(key, entry);
+                if(stripe.entries.size() > maxPerStripe)
+                    stripe.entries.remove(stripe.entries.keySet().iterator().next());
+                first = true;
+            }
+        }
+        if(!first) {
+            try {
+                return entry.result.join();
+            } catch(CompletionException e) {
+                if(e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+        V result;
+        try {
+            result = request.get();
+        } catch(RuntimeException e) {
+            remove(stripe, key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        if(!successful.test(result))
+            remove(stripe, key, entry);
+        entry.result.complete(result);
+        return result;
+    }
+
+    /**
+     * @return the number of keys kept, including those of requests still running
+     */
+    public int size() {
+        int size = 0;
+        for(Stripe<V> stripe : stripes) {
+            synchronized(stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe<V> stripeOf(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static <V> void expire(Stripe<V> stripe, long now) {
+        Iterator<Entry<V>> eldest = stripe.entries.values().iterator();
+        while(eldest.hasNext() && eldest.next().expiryMillis <= now) {
+            eldest.remove();
+        }
+    }
+
+    //leaves the key to the next request, unless the entry was evicted and the key taken since
+    private static <V> void remove(Stripe<V> stripe, String key, Entry<V> entry) {
+        synchronized(stripe) {
+            stripe.entries.remove(key, entry);
+        }
+    }
+
+    private static final class Entry<V> {
+        private final long expiryMillis;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        Entry(long expiryMillis) {
+            this.expiryMillis = expiryMillis;
+        }
+    }
+
+    //locked by its own monitor
+    private static final class Stripe<V> {
+        private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,379 @@
+package org.tics.ticket;
+
+import org.tics.seat.ErrorInfo;
+import org.tics.seat.SeatHold;
+import org.tics.util.TimeSource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ticket service hosting many events, each with its own venue inventory, hold registry and locks.
+ * <p>
+ * ### Hold id routing:-
+ * Every registered event owns a slot, kept in the high {@link #EVENT_BITS} bits of its hold ids; the low
+ * {@link #LOCAL_HOLD_ID_BITS} bits are the event's own hold id (hold table slot and generation). A reservation is
+ * therefore routed to its event in constant time without any global hold index. The local id bits keep at least
+ * {@link #MIN_EVENT_GENERATION_BITS} generation bits next to the slot of a hold, so that a stale id rarely matches a
+ * live hold, which limits an event to venues of up to {@link #MAX_EVENT_SEATS} seats.
+ * <p>
+ * ### Lifecycle:-
+ * An event's service is only created on its first request. An event idle for the eviction period with no
+ * active holds has its service closed and dropped, provided it can be rebuilt: either it journals to disk or it
+ * sold nothing. Its next request recreates the service, recovering it from the journal. The expiry engines of all
+ * the events advance on a shared scheduler, so the memory and threads used grow with the active events only.
+ */
+public class MultiEventTicketService implements AutoCloseable {
+
+    public static final int EVENT_BITS = 8;
+    public static final int LOCAL_HOLD_ID_BITS = HoldTable.DEFAULT_ID_BITS - EVENT_BITS;
+    public static final int MAX_EVENTS = (1 << EVENT_BITS) - 1;//slot zero is not used
+    public static final int MIN_EVENT_GENERATION_BITS = 7;
+    public static final int MAX_EVENT_SEATS = 1 << (LOCAL_HOLD_ID_BITS - MIN_EVENT_GENERATION_BITS);
+    public static final long DEFAULT_IDLE_EVICTION = 60_000;//milliseconds
+
+    private final Map<String, Event> events = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Event> slots = new AtomicReferenceArray<>(MAX_EVENTS + 1);
+
+    private final long idleEviction;//milliseconds
+    private final TimeSource timeSource;
+    private final ScheduledExecutorService scheduler;
+
+    public MultiEventTicketService() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_IDLE_EVICTION);
+    }
+
+    /**
+     * @param schedulerThreads the number of threads advancing the expiry engines of all the events
+     * @param idleEviction     the time an event has to stay idle before its service is evicted, in milliseconds
+     */
+    public MultiEventTicketService(int schedulerThreads, long idleEviction) {
+        this(schedulerThreads, idleEviction, new TimeSource());
+    }
+
+    /**
+     * @param schedulerThreads the number of threads advancing the expiry engines of all the events
+     * @param idleEviction     the time an event has to stay idle before its service is evicted, in milliseconds
+     * @param timeSource       the clock of the idle eviction, and of the events that do not set their own
+     */
+    public MultiEventTicketService(int schedulerThreads, long idleEviction, TimeSource timeSource) {
+        if(schedulerThreads <= 0 || idleEviction <= 0)
+            throw new IllegalArgumentException("schedulerThreads/idleEviction has to be valid non-zero number");
+        if(timeSource == null)
+            throw new IllegalArgumentException("timeSource has to be provided");
+        this.idleEviction = idleEviction;
+        this.timeSource = timeSource;
+        this.scheduler = Executors.newScheduledThreadPool(schedulerThreads, r -> {
+            Thread thread = new Thread(r, "event-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweep = Math.max(1, idleEviction / 2);
+        scheduler.scheduleWithFixedDelay(() -> evictIdle(timeSource.currentTimeMillis()),
+                sweep, sweep, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers an event; its service is created on the first request.
+     *
+     * @param eventId the event id
+     * @param config  the venue and the service modes of the event, of up to {@link #MAX_EVENT_SEATS} seats; its hold id
+     *                and scheduler settings are overridden, and its time source defaults to this service's
+     */
+    public synchronized void registerEvent(String eventId, TicketServiceConfig config) {
+        if(eventId == null || config == null)
+            throw new IllegalArgumentException("eventId/config has to be provided");
+        if(events.containsKey(eventId))
+            throw new IllegalArgumentException("event " + eventId + " is already registered");
+        //the hold table takes a slot per seat of the venue grid
+        if((long) config.getRows() * config.getSeatsInRow() > MAX_EVENT_SEATS)
+            throw new IllegalArgumentException("an event can not have more than " + MAX_EVENT_SEATS + " seats");
+        int slot = 1;
+        while(slot <= MAX_EVENTS && slots.get(slot) != null)
+            slot++;
+        if(slot > MAX_EVENTS)
+            throw new IllegalArgumentException("no more than " + MAX_EVENTS + " events can be registered");
+
+        config.setHoldIdPrefix(slot << LOCAL_HOLD_ID_BITS);
+        config.setHoldIdBits(LOCAL_HOLD_ID_BITS);
+        config.setExpiryScheduler(scheduler);
+        if(config.getTimeSource() == null)
+            config.setTimeSource(timeSource);
+        Event event = new Event(eventId, slot, config, timeSource);
+        slots.set(slot, event);
+        events.put(eventId, event);
+    }
+
+    /**
+     * Closes and unregisters an event; its hold ids are no longer routed and its slot may be reused.
+     *
+     * @param eventId the event id
+     * @return true if the event was registered
+     */
+    public synchronized boolean removeEvent(String eventId) {
+        Event event = events.remove(eventId);
+        if(event == null)
+            return false;
+        event.lock.writeLock().lock();
+        try {
+            event.closeService();
+            event.removed = true;
+        } finally {
+            event.lock.writeLock().unlock();
+        }
+        slots.set(event.slot, null);
+        return true;
+    }
+
+    /**
+     * @param eventId the event id
+     * @return a ticket service scoped to the event
+     */
+    public TicketService forEvent(String eventId) {
+        Event event = getEvent(eventId);
+        return new TicketService() {
+            @Override
+            public int numSeatsAvailable() {
+                return MultiEventTicketService.this.numSeatsAvailable(event);
+            }
+
+            @Override
+            public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+                return MultiEventTicketService.this.findAndHoldSeats(event, numSeats, customerEmail);
+            }
+
+            @Override
+            public String reserveSeats(int seatHoldId, String customerEmail) {
+                if(eventSlotOf(seatHoldId) != event.slot)
+                    return null;
+                return MultiEventTicketService.this.reserveSeats(seatHoldId, customerEmail);
+            }
+        };
+    }
+
+    public int numSeatsAvailable(String eventId) {
+        return numSeatsAvailable(getEvent(eventId));
+    }
+
+    /**
+     * @return the hold, or an UNKNOWN_EVENT hold if the event is not registered
+     */
+    public SeatHold findAndHoldSeats(String eventId, int numSeats, String customerEmail) {
+        Event event = events.get(eventId);
+        if(event == null)
+            return unknownEvent(numSeats, customerEmail);
+        return findAndHoldSeats(event, numSeats, customerEmail);
+    }
+
+    /**
+     * Reserves the held seats of whichever event issued the hold.
+     *
+     * @return the reservation id, or null if the hold is unknown or no longer active, or its event is not registered
+     */
+    public String reserveSeats(int seatHoldId, String customerEmail) {
+        int slot = eventSlotOf(seatHoldId);
+        Event event = slot > 0 ? slots.get(slot) : null;
+        if(event == null)
+            return null;
+        event.lock.readLock().lock();
+        try {
+            TicketServiceImpl service = event.service();
+            return service != null ? service.reserveSeats(seatHoldId, customerEmail) : null;
+        } finally {
+            event.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Extends a hold of whichever event issued it.
+     *
+     * @return the extended hold, or null if the hold is unknown or no longer active, or its event is not registered
+     * @see TicketServiceImpl#extendHold(int, String, long)
+     */
+    public SeatHold extendHold(int seatHoldId, String customerEmail, long millis) {
+        int slot = eventSlotOf(seatHoldId);
+        Event event = slot > 0 ? slots.get(slot) : null;
+        if(event == null)
+            return null;
+        event.lock.readLock().lock();
+        try {
+            TicketServiceImpl service = event.service();
+            return service != null ? service.extendHold(seatHoldId, customerEmail, millis) : null;
+        } finally {
+            event.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Releases some of the seats of a hold of whichever event issued it.
+     *
+     * @return the hold with the seats it keeps, or null if the hold is unknown or no longer active, or its event is
+     * not registered
+     * @see TicketServiceImpl#releaseSeats(int, String, int)
+     */
+    public SeatHold releaseSeats(int seatHoldId, String customerEmail, int numSeats) {
+        int slot = eventSlotOf(seatHoldId);
+        Event event = slot > 0 ? slots.get(slot) : null;
+        if(event == null)
+            return null;
+        event.lock.readLock().lock();
+        try {
+            TicketServiceImpl service = event.service();
+            return service != null ? service.releaseSeats(seatHoldId, customerEmail, numSeats) : null;
+        } finally {
+            event.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param seatHoldId the hold id
+     * @return the slot of the event that issued the hold
+     */
+    public static int eventSlotOf(int seatHoldId) {
+        return seatHoldId >>> LOCAL_HOLD_ID_BITS;
+    }
+
+    /**
+     * @return the number of events whose service is currently instantiated
+     */
+    public int getActiveEventCount() {
+        int active = 0;
+        for(Event event : events.values()) {
+            if(event.service != null)
+                active++;
+        }
+        return active;
+    }
+
+    /**
+     * Evicts the services of the events idle since before the eviction period.
+     *
+     * @param nowMillis the current time
+     */
+    void evictIdle(long nowMillis) {
+        for(Event event : events.values()) {
+            if(event.service == null || nowMillis - event.lastAccess < idleEviction)
+                continue;
+            if(!event.lock.writeLock().tryLock())
+                continue;
+            try {
+                TicketServiceImpl service = event.service;
+                if(service != null && nowMillis - event.lastAccess >= idleEviction && event.isEvictable(service))
+                    event.closeService();
+            } finally {
+                event.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        scheduler.shutdownNow();
+        for(String eventId : events.keySet()) {
+            removeEvent(eventId);
+        }
+    }
+
+    private int numSeatsAvailable(Event event) {
+        event.lock.readLock().lock();
+        try {
+            TicketServiceImpl service = event.service();
+            return service != null ? service.numSeatsAvailable() : 0;
+        } finally {
+            event.lock.readLock().unlock();
+        }
+    }
+
+    private SeatHold findAndHoldSeats(Event event, int numSeats, String customerEmail) {
+        event.lock.readLock().lock();
+        try {
+            TicketServiceImpl service = event.service();
+            return service != null ?
+                    service.findAndHoldSeats(numSeats, customerEmail) :
+                    unknownEvent(numSeats, customerEmail);
+        } finally {
+            event.lock.readLock().unlock();
+        }
+    }
+
+    //the event was removed, or never registered
+    private static SeatHold unknownEvent(int numSeats, String customerEmail) {
+        return new SeatHold(customerEmail, numSeats, new ErrorInfo("UNKNOWN_EVENT", "The event is not registered"));
+    }
+
+    private Event getEvent(String eventId) {
+        Event event = events.get(eventId);
+        if(event == null)
+            throw new IllegalArgumentException("event " + eventId + " is not registered");
+        return event;
+    }
+
+    /**
+     * Registered event; requests share its read lock, eviction takes its write lock.
+     */
+    private static class Event {
+
+        private final String eventId;
+        private final int slot;
+        private final TicketServiceConfig config;
+        private final TimeSource timeSource;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private volatile TicketServiceImpl service;
+        private volatile long lastAccess;
+        private boolean removed;
+
+        Event(String eventId, int slot, TicketServiceConfig config, TimeSource timeSource) {
+            this.eventId = eventId;
+            this.slot = slot;
+            this.config = config;
+            this.timeSource = timeSource;
+        }
+
+        /**
+         * Returns the event's service, creating it if needed. The caller holds the read lock.
+         *
+         * @return the service, or null once the event is removed
+         */
+        TicketServiceImpl service() {
+            lastAccess = timeSource.currentTimeMillis();
+            TicketServiceImpl current = service;
+            if(current != null)
+                return current;
+            synchronized(this) {
+                if(service == null && !removed)
+                    service = new TicketServiceImpl(config);
+                return service;
+            }
+        }
+
+        /**
+         * An evicted service has to be rebuilt as it was: from its journal, or from scratch if it sold nothing.
+         */
+        boolean isEvictable(TicketServiceImpl service) {
+            return service.getActiveHoldCount() == 0 &&
+                    (config.getJournalDirectory() != null || service.getReservationCount() == 0);
+        }
+
+        /**
+         * Closes the service; the caller holds the write lock.
+         */
+        void closeService() {
+            TicketServiceImpl current = service;
+            if(current == null)
+                return;
+            current.close();
+            service = null;
+        }
+
+        @Override
+        public String toString() {
+            return "Event{" + eventId + ", slot=" + slot + '}';
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.tics.ticket;
+
+import org.tics.seat.Reservation;
+import org.tics.seat.SeatRuns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Ledger of the confirmed reservations of a venue.
+ * <p>
+ * The reservations are stored column wise in primitive arrays, one entry per reservation in booking order: hold id,
+ * customer hash and the end of its seat runs in a single packed (row, startCol, length) run column. Only the
+ * reservation id and the customer email are kept as objects. Three indexes point into the columns:
+ * <ul>
+ * <li>reservation id: open addressing table, O(1)</li>
+ * <li>customer hash: open addressing table of each customer's latest reservation, chained to the earlier ones
+ * through a column, O(k) for k reservations</li>
+ * <li>seat: the reservation of every seat of the venue, O(1)</li>
+ * </ul>
+ * Lookups by customer walk the reservations chained under the hash of the email and keep those of the email itself,
+ * so a customer with a colliding email never sees another's. The ledger is guarded by its monitor.
+ */
+public class ReservationLedger {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int rows;
+    private final int seatsInRow;
+    //reservation index + 1 of each seat, 0 if not reserved
+    private final int[] seatReservations;
+
+    private int size;
+    private String[] ids;
+    private int[] holdIds;
+    private int[] customerHashes;
+    private String[] customerEmails;
+    //end of each reservation's runs in the run column; they start where the previous reservation's end
+    private int[] runEnds;
+    //previous reservation index + 1 with the same customer hash, 0 if none
+    private int[] previousOfCustomer;
+    private int[] runs;
+
+    //open addressing tables of reservation index + 1, 0 for an empty slot
+    private int[] idTable;
+    private int[] customerTable;
+    private int customers;
+
+    /**
+     * @param rows       the number of rows of the venue
+     * @param seatsInRow the number of seats in a row
+     */
+    public ReservationLedger(int rows, int seatsInRow) {
+        if(rows <= 0 || seatsInRow <= 0)
+            throw new IllegalArgumentException("rows/seatsInRow has to be valid non-zero number");
+        this.rows = rows;
+        this.seatsInRow = seatsInRow;
+        this.seatReservations = new int[rows * seatsInRow];
+        this.ids = new String[INITIAL_CAPACITY];
+        this.holdIds = new int[INITIAL_CAPACITY];
+        this.customerHashes = new int[INITIAL_CAPACITY];
+        this.customerEmails = new String[INITIAL_CAPACITY];
+        this.runEnds = new int[INITIAL_CAPACITY];
+        this.previousOfCustomer = new int[INITIAL_CAPACITY];
+        this.runs = new int[INITIAL_CAPACITY * 3];
+        this.idTable = new int[2 * INITIAL_CAPACITY];
+        this.customerTable = new int[2 * INITIAL_CAPACITY];
+    }
+
+    /**
+     * Records a reservation.
+     *
+     * @param reservationId the reservation id, unique
+     * @param holdId        the id of the hold reserved
+     * @param customerEmail the email of the customer the hold is bound to
+     * @param seatBlocks    the reserved seats
+     */
+    public synchronized void add(String reservationId, int holdId, String customerEmail, List<SeatBlock> seatBlocks) {
+        if(find(reservationId) >= 0)
+            throw new IllegalArgumentException("reservation " + reservationId + " is already recorded");
+        if(size == ids.length)
+            grow();
+        int start = size > 0 ? runEnds[size - 1] : 0;
+        if(start + 3 * seatBlocks.size() > runs.length)
+            runs = Arrays.copyOf(runs, Math.max(2 * runs.length, start + 3 * seatBlocks.size()));
+        int r = size++;
+        int end = start;
+        for(SeatBlock seatBlock : seatBlocks) {
+            runs[end++] = seatBlock.getRow();
+            runs[end++] = seatBlock.getCol();
+            runs[end++] = seatBlock.getLength();
+            int seat = (seatBlock.getRow() - 1) * seatsInRow + seatBlock.getCol() - 1;
+            Arrays.fill(seatReservations, seat, seat + seatBlock.getLength(), r + 1);
+        }
+        ids[r] = reservationId;
+        holdIds[r] = holdId;
+        int customerHash = HoldTable.customerHash(customerEmail);
+        customerHashes[r] = customerHash;
+        customerEmails[r] = customerEmail;
+        runEnds[r] = end;
+
+        if(2 * size > idTable.length)
+            idTable = rehash(idTable, false);
+        idTable[slotOf(idTable, reservationId)] = r + 1;
+
+        int slot = customerSlot(customerHash);
+        if(customerTable[slot] == 0 && 2 * ++customers > customerTable.length) {
+            customerTable = rehash(customerTable, true);
+            slot = customerSlot(customerHash);
+        }
+        previousOfCustomer[r] = customerTable[slot];
+        customerTable[slot] = r + 1;
+    }
+
+    /**
+     * @return the number of reservations recorded
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param reservationId the reservation id
+     * @return the reservation, or null if unknown
+     */
+    public synchronized Reservation get(String reservationId) {
+        int r = find(reservationId);
+        return r >= 0 ? toReservation(r) : null;
+    }
+
+    /**
+     * @param customerEmail the email of the customer the holds are bound to
+     * @return the reservations of the customer, in booking order
+     */
+    public synchronized List<Reservation> getByCustomer(String customerEmail) {
+        int r = customerTable[customerSlot(HoldTable.customerHash(customerEmail))] - 1;
+        if(r < 0)
+            return Collections.emptyList();
+        List<Reservation> reservations = new ArrayList<>();
+        for(; r >= 0; r = previousOfCustomer[r] - 1) {
+            if(Objects.equals(customerEmails[r], customerEmail))
+                reservations.add(toReservation(r));
+        }
+        Collections.reverse(reservations);
+        return reservations;
+    }
+
+    /**
+     * @param row the row of the seat, from 1
+     * @param col the seat in the row, from 1
+     * @return the reservation of the seat, or null if the seat is not reserved
+     */
+    public synchronized Reservation getBySeat(int row, int col) {
+        if(row < 1 || row > rows || col < 1 || col > seatsInRow)
+            return null;
+        int r = seatReservations[(row - 1) * seatsInRow + col - 1] - 1;
+        return r >= 0 ? toReservation(r) : null;
+    }
+
+    private Reservation toReservation(int r) {
+        int start = r > 0 ? runEnds[r - 1] : 0;
+        return new Reservation(ids[r], holdIds[r], new SeatRuns(Arrays.copyOfRange(runs, start, runEnds[r])));
+    }
+
+    private int find(String reservationId) {
+        int mask = idTable.length - 1;
+        for(int slot = spread(reservationId.hashCode()) & mask; idTable[slot] != 0; slot = (slot + 1) & mask) {
+            if(ids[idTable[slot] - 1].equals(reservationId))
+                return idTable[slot] - 1;
+        }
+        return -1;
+    }
+
+    //first empty slot of the id's probe sequence
+    private int slotOf(int[] table, String reservationId) {
+        int mask = table.length - 1;
+        int slot = spread(reservationId.hashCode()) & mask;
+        while(table[slot] != 0)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    //slot of the customer's entry, or the empty slot it goes in
+    private int customerSlot(int customerHash) {
+        int mask = customerTable.length - 1;
+        int slot = spread(customerHash) & mask;
+        while(customerTable[slot] != 0 && customerHashes[customerTable[slot] - 1] != customerHash)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    //doubles a table, keyed by reservation id or by customer hash
+    private int[] rehash(int[] table, boolean byCustomer) {
+        int[] grown = new int[2 * table.length];
+        int mask = grown.length - 1;
+        for(int entry : table) {
+            if(entry == 0)
+                continue;
+            int slot = spread(byCustomer ? customerHashes[entry - 1] : ids[entry - 1].hashCode()) & mask;
+            while(grown[slot] != 0)
+                slot = (slot + 1) & mask;
+            grown[slot] = entry;
+        }
+        return grown;
+    }
+
+    private void grow() {
+        int capacity = 2 * ids.length;
+        ids = Arrays.copyOf(ids, capacity);
+        holdIds = Arrays.copyOf(holdIds, capacity);
+        customerHashes = Arrays.copyOf(customerHashes, capacity);
+        customerEmails = Arrays.copyOf(customerEmails, capacity);
+        runEnds = Arrays.copyOf(runEnds, capacity);
+        previousOfCustomer = Arrays.copyOf(previousOfCustomer, capacity);
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
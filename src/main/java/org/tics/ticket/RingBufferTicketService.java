@@ -0,0 +1,332 @@
+package org.tics.ticket;
+
+import org.tics.seat.ErrorInfo;
+import org.tics.seat.SeatHold;
+import org.tics.ticket.expiry.HoldExpiryEngine;
+import org.tics.ticket.expiry.TimingWheelExpiryEngine;
+import org.tics.ticket.inventory.SeatInventory;
+import org.tics.util.CachedTimeSource;
+import org.tics.util.ReservationIdGenerator;
+import org.tics.util.TimeSource;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single writer ticket service.
+ * <p>
+ * Callers publish hold, reserve and expire commands into a preallocated ring buffer; a single allocator thread
+ * consumes them in sequence order, owns the seat inventory, the holds and the reservations, and completes the
+ * callers' futures. As no other thread touches that state, the commands are applied in one deterministic order
+ * without contending on the inventory structures.
+ * <p>
+ * Producers claim a sequence with one atomic increment and publish the filled slot by writing its sequence; a
+ * producer that laps the allocator waits for it to catch up, so the buffer never grows. Hold expiry is driven by
+ * expire commands published every sweep interval, and the expired seats are released by the allocator itself.
+ * Hold requests for more seats than are available are turned down by the caller without a round trip.
+ * The service keeps its state in memory only (no journal).
+ * <p>
+ * Closing marks the claim sequence closed in the same atomic step producers claim with: a claim either lands before
+ * the close, and its command is processed before the allocator stops, or after it, and is rejected.
+ */
+public class RingBufferTicketService implements TicketService, AutoCloseable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int HOLD = 1;
+    private static final int RESERVE = 2;
+    private static final int EXPIRE = 3;
+    //added to the claim sequence on close; the claims past it are rejected
+    private static final long CLOSED = 1L << 62;
+
+    private final Command[] ring;
+    private final int mask;
+    //last sequence claimed by a producer / processed by the allocator
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong processed = new AtomicLong(-1);
+    //last sequence claimed before the close, the last one the allocator processes
+    private volatile long lastSequence = Long.MAX_VALUE;
+
+    //owned by the allocator thread
+    private final SeatInventory inventory;
+    private final HoldTable holds;
+    private final ReservationLedger reservations;
+    private final HoldExpiryEngine expiryEngine;
+    private final ReservationIdGenerator resIdGenerator;
+    private final int holdPeriod;//milliseconds
+    private final TimeSource timeSource;
+
+    private final Thread allocator;
+    private final ScheduledExecutorService ticker;
+    private boolean closed;
+
+    public RingBufferTicketService(TicketServiceConfig config) {
+        this(config, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param config     the venue and the service modes; the journal and metrics settings are not used
+     * @param bufferSize the number of ring buffer slots, a power of two
+     */
+    public RingBufferTicketService(TicketServiceConfig config, int bufferSize) {
+        if(config.getRows() <= 0 || config.getSeatsInRow() <= 0 || config.getHoldPeriod() <= 0 || config.getSweepInterval() <= 0)
+            throw new IllegalArgumentException("rows/seatsInRow has to be valid non-zero number");
+        if(bufferSize <= 0 || Integer.bitCount(bufferSize) != 1)
+            throw new IllegalArgumentException("bufferSize has to be a power of two");
+
+        this.ring = new Command[bufferSize];
+        for(int i = 0; i < bufferSize; i++) {
+            ring[i] = new Command();
+        }
+        this.mask = bufferSize - 1;
+
+        this.inventory = TicketServiceImpl.createInventory(config);
+        this.reservations = new ReservationLedger(config.getRows(), config.getSeatsInRow());
+        this.holds = new HoldTable(config.getRows() * config.getSeatsInRow(), config.getHoldIdPrefix(),
+                config.getHoldIdBits());
+        this.resIdGenerator = config.getReservationIdGenerator() != null ?
+                config.getReservationIdGenerator() :
+                new ReservationIdGenerator();
+        this.holdPeriod = config.getHoldPeriod();
+        this.timeSource = config.getTimeSource() != null ?
+                config.getTimeSource() :
+                CachedTimeSource.shared();
+        this.expiryEngine = config.getExpiryEngine() != null ?
+                config.getExpiryEngine() :
+                new TimingWheelExpiryEngine(config.getSweepInterval(), TimingWheelExpiryEngine.DEFAULT_WHEEL_SIZE,
+                        timeSource.currentTimeMillis());
+        this.expiryEngine.setExpiryHandler(this::releaseHolds);
+
+        this.allocator = new Thread(this::allocate, "ring-allocator");
+        this.allocator.setDaemon(true);
+        this.allocator.start();
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ring-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepInterval = config.getSweepInterval();
+        ticker.scheduleAtFixedRate(() -> expire(timeSource.currentTimeMillis()),
+                sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads the inventory's seat counter off the allocator thread: the count is as of the commands processed so far,
+     * not those still in the buffer.
+     */
+    @Override
+    public int numSeatsAvailable() {
+        return inventory.numSeatsAvailable();
+    }
+
+    @Override
+    public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+        return findAndHoldSeatsAsync(numSeats, customerEmail).join();
+    }
+
+    @Override
+    public String reserveSeats(int seatHoldId, String customerEmail) {
+        return reserveSeatsAsync(seatHoldId, customerEmail).join();
+    }
+
+    public CompletableFuture<SeatHold> findAndHoldSeatsAsync(int numSeats, String customerEmail) {
+        CompletableFuture<SeatHold> future = new CompletableFuture<>();
+        //the seat counter is read off the allocator thread, so the request is turned down as if it had been processed
+        //before the commands still in the buffer; the counter is atomic, so the read is stale at worst
+        if(numSeats > inventory.numSeatsAvailable()) {
+            future.complete(notAvailable(numSeats, customerEmail));
+            return future;
+        }
+        Command command = claim();
+        if(command == null) {
+            future.completeExceptionally(new RejectedExecutionException("Service closed"));
+            return future;
+        }
+        command.type = HOLD;
+        command.numSeats = numSeats;
+        command.customerEmail = customerEmail;
+        command.holdFuture = future;
+        publish(command);
+        return future;
+    }
+
+    public CompletableFuture<String> reserveSeatsAsync(int seatHoldId, String customerEmail) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Command command = claim();
+        if(command == null) {
+            future.completeExceptionally(new RejectedExecutionException("Service closed"));
+            return future;
+        }
+        command.type = RESERVE;
+        command.holdId = seatHoldId;
+        command.customerEmail = customerEmail;
+        command.reserveFuture = future;
+        publish(command);
+        return future;
+    }
+
+    /**
+     * Publishes an expire command; the holds due at the given time are released once the allocator reaches it.
+     */
+    void expire(long nowMillis) {
+        Command command = claim();
+        if(command == null)
+            return;
+        command.type = EXPIRE;
+        command.nowMillis = nowMillis;
+        publish(command);
+    }
+
+    /**
+     * Stops the expiry, processes the commands already published and stops the allocator.
+     */
+    @Override
+    public void close() {
+        synchronized(this) {
+            if(!closed) {
+                closed = true;
+                ticker.shutdownNow();
+                lastSequence = claimed.getAndAdd(CLOSED);
+            }
+        }
+        try {
+            allocator.join();
+        } catch (InterruptedException e) {
+            //the allocator goes on processing the commands claimed before the close
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the slot of the sequence claimed, or null once the service is closed
+     */
+    private Command claim() {
+        long sequence = claimed.incrementAndGet();
+        if(sequence >= CLOSED)
+            return null;
+        while(sequence - ring.length > processed.get())
+            LockSupport.parkNanos(1000);
+        Command command = ring[(int) (sequence & mask)];
+        command.pendingSequence = sequence;
+        return command;
+    }
+
+    private static void publish(Command command) {
+        command.sequence = command.pendingSequence;
+    }
+
+    private void allocate() {
+        long next = 0;
+        int idle = 0;
+        while(true) {
+            Command command = ring[(int) (next & mask)];
+            if(command.sequence != next) {
+                //every claim up to the last one has been or will be published
+                if(next > lastSequence)
+                    break;
+                if(++idle < 100)
+                    continue;
+                if(idle < 200)
+                    Thread.yield();
+                else
+                    LockSupport.parkNanos(50_000);
+                continue;
+            }
+            idle = 0;
+            process(command);
+            command.clear();
+            processed.lazySet(next);
+            next++;
+        }
+    }
+
+    private void process(Command command) {
+        switch(command.type) {
+            case HOLD:
+                try {
+                    command.holdFuture.complete(hold(command.numSeats, command.customerEmail));
+                } catch (RuntimeException e) {
+                    command.holdFuture.completeExceptionally(e);
+                }
+                break;
+            case RESERVE:
+                try {
+                    command.reserveFuture.complete(reserve(command.holdId, command.customerEmail));
+                } catch (RuntimeException e) {
+                    command.reserveFuture.completeExceptionally(e);
+                }
+                break;
+            case EXPIRE:
+                expiryEngine.advance(command.nowMillis);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private SeatHold hold(int numSeats, String customerEmail) {
+        List<SeatBlock> seatBlocks = numSeats > 0 ? inventory.allocate(numSeats) : null;
+        if(seatBlocks == null || seatBlocks.isEmpty())
+            return notAvailable(numSeats, customerEmail);
+        long expiryMillis = timeSource.currentTimeMillis() + holdPeriod;
+        SeatBlockHold hold = new SeatBlockHold(0, seatBlocks, expiryMillis);
+        hold.setCustomerEmail(customerEmail);
+        int holdId = holds.add(hold, customerEmail);
+        expiryEngine.schedule(hold);
+        return new SeatHold(holdId, customerEmail, TicketServiceImpl.toSeatRuns(seatBlocks), expiryMillis);
+    }
+
+    private static SeatHold notAvailable(int numSeats, String customerEmail) {
+        return new SeatHold(customerEmail, numSeats,
+                new ErrorInfo("NOT_AVAILABLE", "The requested seats could not be allocated"));
+    }
+
+    private String reserve(int holdId, String customerEmail) {
+        SeatBlockHold hold = holds.remove(holdId, customerEmail);
+        if(hold == null)
+            return null;
+        expiryEngine.cancel(hold);
+        String resId = resIdGenerator.nextId();
+        reservations.add(resId, holdId, customerEmail, hold.getSeatBlocks());
+        return resId;
+    }
+
+    //invoked by the expiry engine while the allocator processes an expire command
+    private void releaseHolds(List<SeatBlockHold> expired) {
+        for(SeatBlockHold hold : expired) {
+            if(holds.remove(hold))
+                inventory.release(hold.getSeatBlocks());
+        }
+    }
+
+    /**
+     * Preallocated ring buffer slot.
+     */
+    private static final class Command {
+
+        //sequence of the command published in the slot
+        private volatile long sequence = -1;
+        private long pendingSequence;
+
+        private int type;
+        private int numSeats;
+        private int holdId;
+        private String customerEmail;
+        private long nowMillis;
+        private CompletableFuture<SeatHold> holdFuture;
+        private CompletableFuture<String> reserveFuture;
+
+        private void clear() {
+            customerEmail = null;
+            holdFuture = null;
+            reserveFuture = null;
+        }
+    }
+}
@@ -1,17 +1,22 @@
 package org.tics.ticket;
 
-import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Structure for internal seat block hold for a request. This differs from the SeatHold structure as it is used to
  * hold the block of seats and is internal in nature.
+ * The seats and expiration time of an active hold are only changed while holding its monitor.
  */
 public class SeatBlockHold {
     private int holdId;
     private List<SeatBlock> seatBlocks;
-    private Instant expirationTime;
+    private long expiryMillis;//epoch milliseconds
+    //customer the hold is bound to, and the hash of its email
+    private String customerEmail;
+    private int customerHash;
+    //expiry engine bookkeeping for O(1) cancellation
+    private volatile Object expiryHandle;
 
     public SeatBlockHold() {
     }
@@ -20,21 +25,21 @@ public class SeatBlockHold {
         this.holdId = holdId;
     }
 
-    public SeatBlockHold(int holdId, List<SeatBlock> seatBlocks, Instant expirationTime) {
+    public SeatBlockHold(int holdId, List<SeatBlock> seatBlocks, long expiryMillis) {
         this.holdId = holdId;
-        this.expirationTime = expirationTime;
+        this.expiryMillis = expiryMillis;
         this.seatBlocks = seatBlocks;
     }
 
 
     @Override
     public boolean equals(Object o) {
-        return Objects.equals(holdId, ((SeatBlockHold)o).holdId);
+        return o instanceof SeatBlockHold && holdId == ((SeatBlockHold) o).holdId;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(holdId);
+        return Integer.hashCode(holdId);
     }
 
     public void setHoldId(int holdId) {
@@ -53,8 +58,71 @@ public class SeatBlockHold {
         return seatBlocks;
     }
 
-    public Instant getExpirationTime() {
-        return expirationTime;
+    /**
+     * @return the expiration time, in epoch milliseconds
+     */
+    public long getExpiryMillis() {
+        return expiryMillis;
+    }
+
+    public void setExpiryMillis(long expiryMillis) {
+        this.expiryMillis = expiryMillis;
+    }
+
+    /**
+     * @return the number of seats held
+     */
+    public int getNumSeats() {
+        int numSeats = 0;
+        for(SeatBlock seatBlock : seatBlocks) {
+            numSeats += seatBlock.getLength();
+        }
+        return numSeats;
+    }
+
+    /**
+     * Trims the given number of seats off the end of the hold, shortening its last seat blocks in place.
+     *
+     * @param numSeats the number of seats to give up, less than the number of seats held
+     * @return the seat blocks given up
+     */
+    public List<SeatBlock> releaseSeats(int numSeats) {
+        List<SeatBlock> released = new ArrayList<>();
+        int remaining = numSeats;
+        while(remaining > 0) {
+            SeatBlock last = seatBlocks.get(seatBlocks.size() - 1);
+            int length = Math.min(remaining, last.getLength());
+            SeatBlock seatBlock = new SeatBlock(last.getRow(), last.getCol() + last.getLength() - length);
+            seatBlock.setLength(length);
+            released.add(seatBlock);
+            if(length == last.getLength())
+                seatBlocks.remove(seatBlocks.size() - 1);
+            else
+                last.setLength(last.getLength() - length);
+            remaining -= length;
+        }
+        return released;
+    }
+
+    public String getCustomerEmail() {
+        return customerEmail;
+    }
+
+    public void setCustomerEmail(String customerEmail) {
+        this.customerEmail = customerEmail;
+        this.customerHash = HoldTable.customerHash(customerEmail);
+    }
+
+    public int getCustomerHash() {
+        return customerHash;
+    }
+
+    public Object getExpiryHandle() {
+        return expiryHandle;
+    }
+
+    public void setExpiryHandle(Object expiryHandle) {
+        this.expiryHandle = expiryHandle;
     }
 
 }
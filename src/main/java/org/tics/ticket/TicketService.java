@@ -1,7 +1,12 @@
 package org.tics.ticket;
 
+import org.tics.seat.HoldRequest;
+import org.tics.seat.ReserveRequest;
 import org.tics.seat.SeatHold;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface TicketService {
 
     int numSeatsAvailable();
@@ -13,6 +18,19 @@ public interface TicketService {
      * @return a SeatHold object identifying the specific seats and related information
      */
     SeatHold findAndHoldSeats(int numSeats, String customerEmail);
+    /**
+     * Find and hold the best available seats for a batch of requests. Each request succeeds or fails on its own.
+     *
+     * @param requests the hold requests, in the order they are to be served
+     * @return a SeatHold object per request, in request order
+     */
+    default List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> requests) {
+        List<SeatHold> holds = new ArrayList<>(requests.size());
+        for(HoldRequest request : requests) {
+            holds.add(findAndHoldSeats(request.getNumSeats(), request.getCustomerEmail()));
+        }
+        return holds;
+    }
     /**
      * Commit seats held for a specific customer
      *
@@ -21,5 +39,18 @@ public interface TicketService {
      * @return a reservation confirmation code
      */
     String reserveSeats(int seatHoldId, String customerEmail);
+    /**
+     * Commit the seats held for a batch of requests. Each request succeeds or fails on its own.
+     *
+     * @param requests the reserve requests
+     * @return a reservation confirmation code per request, in request order; null for the holds not found
+     */
+    default List<String> reserveSeatsBatch(List<ReserveRequest> requests) {
+        List<String> reservations = new ArrayList<>(requests.size());
+        for(ReserveRequest request : requests) {
+            reservations.add(reserveSeats(request.getHoldId(), request.getCustomerEmail()));
+        }
+        return reservations;
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,400 @@
+package org.tics.ticket;
+
+import org.tics.ticket.admission.CustomerAdmission;
+import org.tics.ticket.allocation.FirstFitStrategy;
+import org.tics.ticket.allocation.SeatAllocationStrategy;
+import org.tics.ticket.expiry.HoldExpiryEngine;
+import org.tics.ticket.inventory.InventoryMode;
+import org.tics.ticket.seatmap.SeatMapPublisher;
+import org.tics.ticket.venue.VenueLayout;
+import org.tics.util.ReservationIdGenerator;
+import org.tics.util.TimeSource;
+
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Configuration of the ticket service: venue layout, hold period and the optional service modes.
+ */
+public class TicketServiceConfig {
+
+    public static final int DEFAULT_HOLD_PERIOD = 1000;//milliseconds
+    public static final int DEFAULT_SWEEP_INTERVAL = 100;//milliseconds
+    public static final int DEFAULT_JOURNAL_COMMIT_INTERVAL = 2;//milliseconds
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 1000000;//journal events
+
+    private int rows;
+    private int seatsInRow;
+    private int holdPeriod;//milliseconds
+    private int sweepInterval;//milliseconds
+    private HoldExpiryEngine expiryEngine;
+    private InventoryMode inventoryMode = InventoryMode.BLOCK_MAP;
+    private int stripes;
+    private SeatAllocationStrategy allocationStrategy = new FirstFitStrategy();
+    private Path journalDirectory;
+    private int journalCommitInterval = DEFAULT_JOURNAL_COMMIT_INTERVAL;
+    private long snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+    private int holdIdPrefix;
+    private int holdIdBits = HoldTable.DEFAULT_ID_BITS;
+    private ScheduledExecutorService expiryScheduler;
+    private boolean metricsEnabled;
+    private String metricsObjectName;
+    private ReservationIdGenerator reservationIdGenerator;
+    private TimeSource timeSource;
+    private VenueLayout venueLayout;
+    private boolean seatMapEnabled;
+    private int seatMapInterval = SeatMapPublisher.DEFAULT_PUBLISH_INTERVAL;
+    private boolean waitlistEnabled;
+    private int maxHeldSeatsPerCustomer;
+    private int holdRatePerCustomer;
+    private int holdBurstPerCustomer;
+    private int maxTrackedCustomers = CustomerAdmission.DEFAULT_MAX_CUSTOMERS;
+    private long idempotencyTtl;
+    private int maxIdempotencyKeys = IdempotencyCache.DEFAULT_MAX_KEYS;
+    private Consumer<Throwable> errorHandler;
+
+    public TicketServiceConfig(int rows, int seatsInRow) {
+        this(rows, seatsInRow, DEFAULT_HOLD_PERIOD);
+    }
+
+    public TicketServiceConfig(int rows, int seatsInRow, int holdPeriod) {
+        this.rows = rows;
+        this.seatsInRow = seatsInRow;
+        this.holdPeriod = holdPeriod;
+        this.sweepInterval = Math.min(DEFAULT_SWEEP_INTERVAL, Math.max(holdPeriod, 1));
+    }
+
+    /**
+     * Configuration of a venue made of sections; the venue rows are those of all the sections and its row length the
+     * longest one.
+     */
+    public TicketServiceConfig(VenueLayout venueLayout, int holdPeriod) {
+        this(venueLayout.getRows(), venueLayout.getSeatsInRow(), holdPeriod);
+        this.venueLayout = venueLayout;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    public int getSeatsInRow() {
+        return seatsInRow;
+    }
+
+    public void setSeatsInRow(int seatsInRow) {
+        this.seatsInRow = seatsInRow;
+    }
+
+    public int getHoldPeriod() {
+        return holdPeriod;
+    }
+
+    public void setHoldPeriod(int holdPeriod) {
+        this.holdPeriod = holdPeriod;
+    }
+
+    /**
+     * The interval at which expired holds are released; bounds how long a hold can outlive its hold period.
+     */
+    public int getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(int sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    /**
+     * The engine tracking hold expiry. When not set, a timing wheel ticking every sweep interval is used. An
+     * {@link org.tics.ticket.expiry.AbstractHoldExpiryEngine} set here is given the time source, expiry scheduler and
+     * error handler of this configuration, those that are set.
+     */
+    public HoldExpiryEngine getExpiryEngine() {
+        return expiryEngine;
+    }
+
+    public void setExpiryEngine(HoldExpiryEngine expiryEngine) {
+        this.expiryEngine = expiryEngine;
+    }
+
+    /**
+     * The seat inventory implementation holding the available seats.
+     */
+    public InventoryMode getInventoryMode() {
+        return inventoryMode;
+    }
+
+    public void setInventoryMode(InventoryMode inventoryMode) {
+        this.inventoryMode = inventoryMode;
+    }
+
+    /**
+     * The number of row stripes locked independently in the striped inventory mode.
+     * When not set, four stripes per available processor are used.
+     */
+    public int getStripes() {
+        return stripes > 0 ? stripes : 4 * Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    /**
+     * The strategy placing contiguous seats in the row bitmap inventory modes. The block map inventory is always
+     * first fit by block size.
+     */
+    public SeatAllocationStrategy getAllocationStrategy() {
+        return allocationStrategy;
+    }
+
+    public void setAllocationStrategy(SeatAllocationStrategy allocationStrategy) {
+        this.allocationStrategy = allocationStrategy;
+    }
+
+    /**
+     * The directory of the hold/reservation journal. When set, the service recovers its state from the journal on
+     * startup and journals every hold, reservation and expiry; when not set, the state is kept in memory only.
+     */
+    public Path getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public void setJournalDirectory(Path journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * The interval at which the journaled events nobody waits for are forced to disk.
+     */
+    public int getJournalCommitInterval() {
+        return journalCommitInterval;
+    }
+
+    public void setJournalCommitInterval(int journalCommitInterval) {
+        this.journalCommitInterval = journalCommitInterval;
+    }
+
+    /**
+     * The number of journaled events after which a snapshot bounds the replay on recovery.
+     */
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(long snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * The high bits shared by all the hold ids of the service, e.g. to encode the event hosting the service.
+     */
+    public int getHoldIdPrefix() {
+        return holdIdPrefix;
+    }
+
+    public void setHoldIdPrefix(int holdIdPrefix) {
+        this.holdIdPrefix = holdIdPrefix;
+    }
+
+    /**
+     * The number of low hold id bits holding the hold sequence.
+     */
+    public int getHoldIdBits() {
+        return holdIdBits;
+    }
+
+    public void setHoldIdBits(int holdIdBits) {
+        this.holdIdBits = holdIdBits;
+    }
+
+    /**
+     * The scheduler advancing the expiry engine, shared between services. When not set, the engine advances on a
+     * dedicated thread.
+     */
+    public ScheduledExecutorService getExpiryScheduler() {
+        return expiryScheduler;
+    }
+
+    public void setExpiryScheduler(ScheduledExecutorService expiryScheduler) {
+        this.expiryScheduler = expiryScheduler;
+    }
+
+    /**
+     * Whether the service records metrics (counts, latencies, expiry lag). Disabled by default.
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    /**
+     * The JMX object name the metrics are registered under, if any. Only used when the metrics are enabled.
+     */
+    public String getMetricsObjectName() {
+        return metricsObjectName;
+    }
+
+    public void setMetricsObjectName(String metricsObjectName) {
+        this.metricsObjectName = metricsObjectName;
+    }
+
+    /**
+     * The reservation id generator (default: random UUIDs). Generators are thread safe and can be shared between
+     * services.
+     */
+    public ReservationIdGenerator getReservationIdGenerator() {
+        return reservationIdGenerator;
+    }
+
+    public void setReservationIdGenerator(ReservationIdGenerator reservationIdGenerator) {
+        this.reservationIdGenerator = reservationIdGenerator;
+    }
+
+    /**
+     * The clock the holds expire by (default: the shared {@link org.tics.util.CachedTimeSource}). A
+     * {@link org.tics.util.ManualTimeSource} runs the expiry at the caller's pace.
+     */
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    public void setTimeSource(TimeSource timeSource) {
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * The sections of the venue, if any. When set, each section gets its own inventory of the inventory mode and
+     * holds can target a section or a tier; the rows and row length have to cover the layout.
+     */
+    public VenueLayout getVenueLayout() {
+        return venueLayout;
+    }
+
+    public void setVenueLayout(VenueLayout venueLayout) {
+        this.venueLayout = venueLayout;
+    }
+
+    /**
+     * Whether the service publishes versioned snapshots of the availability of every seat. Disabled by default.
+     */
+    public boolean isSeatMapEnabled() {
+        return seatMapEnabled;
+    }
+
+    public void setSeatMapEnabled(boolean seatMapEnabled) {
+        this.seatMapEnabled = seatMapEnabled;
+    }
+
+    /**
+     * The minimum time between two seat map snapshots; bounds how stale a snapshot read can be.
+     */
+    public int getSeatMapInterval() {
+        return seatMapInterval;
+    }
+
+    public void setSeatMapInterval(int seatMapInterval) {
+        this.seatMapInterval = seatMapInterval;
+    }
+
+    /**
+     * Whether requests that cannot be served can wait for the seats of expiring or released holds. Disabled by
+     * default. The waiters are timed out on the expiry scheduler when set, on a dedicated thread otherwise.
+     */
+    public boolean isWaitlistEnabled() {
+        return waitlistEnabled;
+    }
+
+    public void setWaitlistEnabled(boolean waitlistEnabled) {
+        this.waitlistEnabled = waitlistEnabled;
+    }
+
+    /**
+     * The seats a customer can hold at once, across its active holds; 0 (default) for no limit. Requests over it get a
+     * QUOTA_EXCEEDED hold.
+     */
+    public int getMaxHeldSeatsPerCustomer() {
+        return maxHeldSeatsPerCustomer;
+    }
+
+    public void setMaxHeldSeatsPerCustomer(int maxHeldSeatsPerCustomer) {
+        this.maxHeldSeatsPerCustomer = maxHeldSeatsPerCustomer;
+    }
+
+    /**
+     * The hold requests per second a customer can make on average; 0 (default) for no limit. Requests over it get a
+     * RATE_LIMITED hold.
+     */
+    public int getHoldRatePerCustomer() {
+        return holdRatePerCustomer;
+    }
+
+    public void setHoldRatePerCustomer(int holdRatePerCustomer) {
+        this.holdRatePerCustomer = holdRatePerCustomer;
+    }
+
+    /**
+     * The hold requests a customer can make at once before the rate applies (default: the rate, at least 1).
+     */
+    public int getHoldBurstPerCustomer() {
+        return holdBurstPerCustomer > 0 ? holdBurstPerCustomer : Math.max(1, holdRatePerCustomer);
+    }
+
+    public void setHoldBurstPerCustomer(int holdBurstPerCustomer) {
+        this.holdBurstPerCustomer = holdBurstPerCustomer;
+    }
+
+    /**
+     * The number of customers whose quota and rate are tracked at once, bounding the memory of the admission control.
+     */
+    public int getMaxTrackedCustomers() {
+        return maxTrackedCustomers;
+    }
+
+    public void setMaxTrackedCustomers(int maxTrackedCustomers) {
+        this.maxTrackedCustomers = maxTrackedCustomers;
+    }
+
+    /**
+     * The time the results of the holds and reservations made with an idempotency key are kept for retries, in
+     * milliseconds; 0 (default) disables the idempotency keys.
+     */
+    public long getIdempotencyTtl() {
+        return idempotencyTtl;
+    }
+
+    public void setIdempotencyTtl(long idempotencyTtl) {
+        this.idempotencyTtl = idempotencyTtl;
+    }
+
+    /**
+     * The number of hold results, and of reservation results, kept for retries at most.
+     */
+    public int getMaxIdempotencyKeys() {
+        return maxIdempotencyKeys;
+    }
+
+    public void setMaxIdempotencyKeys(int maxIdempotencyKeys) {
+        this.maxIdempotencyKeys = maxIdempotencyKeys;
+    }
+
+    /**
+     * The handler of the failures of the service's background work, e.g. an expiry sweep or a journal commit; null
+     * (default) hands them to the uncaught exception handler of the thread they happen on.
+     */
+    public Consumer<Throwable> getErrorHandler() {
+        return errorHandler;
+    }
+
+    public void setErrorHandler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+}
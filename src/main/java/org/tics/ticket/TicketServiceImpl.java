@@ -1,229 +1,890 @@
 package org.tics.ticket;
 
 import org.tics.seat.*;
-import org.tics.util.HoldIdGenerator;
+import org.tics.ticket.admission.CustomerAdmission;
+import org.tics.ticket.expiry.AbstractHoldExpiryEngine;
+import org.tics.ticket.expiry.HoldExpiryEngine;
+import org.tics.ticket.expiry.TimingWheelExpiryEngine;
+import org.tics.ticket.inventory.BlockMapSeatInventory;
+import org.tics.ticket.inventory.RowBitmapSeatInventory;
+import org.tics.ticket.inventory.SeatInventory;
+import org.tics.ticket.inventory.SectionedSeatInventory;
+import org.tics.ticket.journal.HoldJournal;
+import org.tics.ticket.journal.JournalState;
+import org.tics.ticket.metrics.TicketServiceMetrics;
+import org.tics.ticket.seatmap.SeatMapPublisher;
+import org.tics.ticket.venue.VenueLayout;
+import org.tics.util.CachedTimeSource;
 import org.tics.util.ReservationIdGenerator;
+import org.tics.util.TimeSource;
 
-import java.time.Instant;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Ticket service implementation to hold and reserve tickets.
  * ### Hold/expiry:-
- * The ticket holds are queued up in min heap using the hold's expiry timestamp.
- * The service implementation holds a timer that runs in predefined interval (default: 1 second) to clean up the expired holds.
- * The expired entries, if any, would be at the top of the min heap and could be easily found and released them to the availability pool.
- * The scheduled timer is started at service instantiation time and on each run, the heap's entries is examined and removed if expired.
+ * The ticket holds are kept in a hold registry indexed by hold id and ordered by the hold's expiry timestamp.
+ * The hold expiry is tracked by a pluggable expiry engine (default: hashed timing wheel) that advances every sweep interval
+ * (default: 100 milliseconds, independent of the hold period) and releases the expired holds to the availability pool in batches.
+ * The engine is started at service instantiation time, so a hold outlives its hold period by at most one sweep interval.
+ * Expiry times are kept as epoch milliseconds read from a pluggable time source: by default a coarse clock sampled
+ * every millisecond by a shared daemon thread, so the hot path reads one volatile field instead of the system clock;
+ * a manual clock lets simulations run hours of expiry at full speed.
  * <p>
  * ### Seat allocation:-
+ * The seats are allocated from a selectable seat inventory (default: map of block size to seat blocks).
  * The seat allocation algorithm picks the first available block of seats that are adjacent to each other.
  * If it couldn't find a contiguous block, it tries to split into multiple blocks starting the next lowest number than requested.
  * If required seats could not be allocated, they would be released.
+ * The row bitmap inventory additionally coalesces released seats with their free neighbours, places contiguous seats
+ * with a pluggable allocation strategy (first fit, best fit or center weighted), and in the striped mode
+ * locks row stripes independently so that concurrent requests landing in different stripes proceed in parallel.
  * <p>
  * ### Seat reservation using hold:-
- * The seat reservation operation uses the hold id and removes the hold from the hold queue.
- * If the hold is valid/active, a reservation id is returned. If it couldn't be found, null is returned.
+ * The seat reservation operation uses the hold id and removes the hold from the hold registry in constant time.
+ * Hold ids encode the slot of the hold in the hold table and the slot's generation, so stale and forged ids are
+ * rejected without a lookup, and each hold is bound to the hash of its customer's email.
+ * If the hold is valid/active and the customer's, a reservation id is returned. Otherwise, null is returned.
+ * An active hold can also be extended, moving it in the expiry engine, or give up some of its seats, which go
+ * straight back to the seat pool; both update the hold in place under its monitor, which reservation and expiry
+ * take before journaling or releasing the hold.
+ * <p>
+ * ### Durability:-
+ * When a journal directory is configured, holds, reservations and expiries are appended to a write-ahead journal
+ * and the service rebuilds its holds, reservations and seat inventory from it on startup. A reservation id is only
+ * returned once its reservation is on disk; group commit shares one fsync between all the concurrent reservations.
+ * <p>
+ * ### Metrics:-
+ * When enabled, the service counts holds, rejections, reservations and expiries with striped counters and records
+ * the hold/reserve latency and the expiry lag in log-linear histograms, readable as snapshots or through JMX.
+ * When disabled, the hot path skips them with a single null check.
+ * <p>
+ * ### Waitlist:-
+ * When enabled, a request that cannot be served can wait for seats: it is parked on a waitlist by number of seats,
+ * and the seats of expiring or released holds are handed to the waiting requests they fit, best fit then oldest
+ * first, before going back to the pool. The waiters are completed off the expiry path, on the waitlist scheduler.
  */
 public class TicketServiceImpl implements TicketService {
 
-    private Timer cleanExpHoldTimer;
     private int holdPeriod;//milliseconds
+    //clock the holds expire by
+    private TimeSource timeSource;
 
-    private AtomicInteger freeSeats;
-    //(Min heap - expiry timestamp) - added on hold; expired entries cleaned up by scheduled timer
-    private PriorityBlockingQueue<SeatBlockHold> holdQueue;
-    //(Map of block size to available seat blocks)
-    private Map<Integer, List<SeatBlock>> availMap;
+    //(Hold id index + expiry engine) - added on hold; expired entries released by the expiry engine
+    private HoldRegistry holdRegistry;
+    //Available seat pool
+    private SeatInventory inventory;
 
-    private Map<String, SeatBlockHold> reservedSeats;
+    //confirmed reservations, indexed by id, customer and seat
+    private ReservationLedger reservations;
 
-    private HoldIdGenerator holdIdGenerator;
     private ReservationIdGenerator resIdGenerator;
 
+    //write-ahead journal; null when the state is kept in memory only
+    private HoldJournal journal;
+
+    //hot path metrics; null when disabled
+    private TicketServiceMetrics metrics;
+
+    //seat map snapshots, wrapping the inventory; null when disabled
+    private SeatMapPublisher seatMap;
+
+    //requests waiting for freed seats; null when disabled
+    private Waitlist waitlist;
+    //times the waiters out and completes them; owned by the service unless the expiry scheduler is shared
+    private ScheduledExecutorService waitlistScheduler;
+    private boolean ownsWaitlistScheduler;
+    private int capacity;
+
+    //per customer held seat quota and request rate; null when neither is limited
+    private CustomerAdmission admission;
+
+    //results of the holds and reservations made with an idempotency key; null when disabled
+    private IdempotencyCache<SeatHold> holdKeys;
+    private IdempotencyCache<String> reserveKeys;
+
     public TicketServiceImpl(int rows, int seatsInRow) {
         this(rows, seatsInRow, 1 * 1000);
     }
 
     public TicketServiceImpl(int rows, int seatsInRow, int holdPeriod) {
+        this(new TicketServiceConfig(rows, seatsInRow, holdPeriod));
+    }
 
-        if(rows <= 0 || seatsInRow <= 0 || holdPeriod <= 0)
+    public TicketServiceImpl(TicketServiceConfig config) {
+        int rows = config.getRows();
+        int seatsInRow = config.getSeatsInRow();
+
+        if(rows <= 0 || seatsInRow <= 0 || config.getHoldPeriod() <= 0 || config.getSweepInterval() <= 0)
             throw new IllegalArgumentException("rows/seatsInRow has to be valid non-zero number");
 
-        this.holdIdGenerator = new HoldIdGenerator();
-        this.resIdGenerator = new ReservationIdGenerator();
+        this.timeSource = config.getTimeSource() != null ?
+                config.getTimeSource() :
+                CachedTimeSource.shared();
+        this.resIdGenerator = config.getReservationIdGenerator() != null ?
+                config.getReservationIdGenerator() :
+                new ReservationIdGenerator();
+
+        this.reservations = new ReservationLedger(rows, seatsInRow);
+        this.inventory = createInventory(config);
+        if(config.isSeatMapEnabled()) {
+            List<SeatBlock> blocked = config.getVenueLayout() != null ?
+                    unsellableSeats(config.getVenueLayout(), rows, seatsInRow) :
+                    Collections.<SeatBlock>emptyList();
+            this.seatMap = new SeatMapPublisher(inventory, rows, seatsInRow, blocked, config.getSeatMapInterval(),
+                    timeSource);
+            this.inventory = seatMap;
+        }
+
+        HoldExpiryEngine expiryEngine = config.getExpiryEngine();
+        if(expiryEngine == null) {
+            TimingWheelExpiryEngine timingWheel = new TimingWheelExpiryEngine(config.getSweepInterval(),
+                    TimingWheelExpiryEngine.DEFAULT_WHEEL_SIZE, timeSource.currentTimeMillis());
+            timingWheel.setScheduler(config.getExpiryScheduler());
+            timingWheel.setErrorHandler(config.getErrorHandler());
+            timingWheel.setTimeSource(timeSource);
+            expiryEngine = timingWheel;
+        } else if(expiryEngine instanceof AbstractHoldExpiryEngine) {
+            //a self advancing engine follows the clock, scheduler and error handler the configuration sets
+            AbstractHoldExpiryEngine engine = (AbstractHoldExpiryEngine) expiryEngine;
+            if(config.getTimeSource() != null)
+                engine.setTimeSource(timeSource);
+            if(config.getExpiryScheduler() != null)
+                engine.setScheduler(config.getExpiryScheduler());
+            if(config.getErrorHandler() != null)
+                engine.setErrorHandler(config.getErrorHandler());
+        }
+        //a hold takes at least one seat, so there are never more active holds than seats
+        HoldTable holdTable = new HoldTable(rows * seatsInRow, config.getHoldIdPrefix(), config.getHoldIdBits());
+        this.holdRegistry = new HoldRegistry(holdTable, expiryEngine, this::releaseHolds);
+
+        if(config.getMaxHeldSeatsPerCustomer() > 0 || config.getHoldRatePerCustomer() > 0)
+            this.admission = new CustomerAdmission(config.getMaxHeldSeatsPerCustomer(),
+                    config.getHoldRatePerCustomer(),
+                    config.getHoldBurstPerCustomer(),
+                    config.getMaxTrackedCustomers());
+
+        if(config.getJournalDirectory() != null) {
+            try {
+                this.journal = HoldJournal.open(config.getJournalDirectory(),
+                        config.getJournalCommitInterval(),
+                        config.getSnapshotInterval());
+            } catch (IOException e) {
+                throw new UncheckedIOException("could not open the journal", e);
+            }
+            journal.setErrorHandler(config.getErrorHandler());
+            recover(journal.getRecoveredState());
+        }
+
+        if(config.isMetricsEnabled()) {
+            this.metrics = new TicketServiceMetrics(timeSource, holdRegistry::size,
+                    this::getWaitlistSize,
+                    inventory::numSeatsAvailable,
+                    inventory::largestFreeRun);
+            if(config.getMetricsObjectName() != null)
+                metrics.register(config.getMetricsObjectName());
+        }
 
-        this.reservedSeats = new ConcurrentHashMap<>();
-        this.availMap = new ConcurrentSkipListMap<>();
+        if(config.isWaitlistEnabled()) {
+            this.waitlist = new Waitlist();
+            this.ownsWaitlistScheduler = config.getExpiryScheduler() == null;
+            this.waitlistScheduler = ownsWaitlistScheduler ?
+                    Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "waitlist");
+                        thread.setDaemon(true);
+                        return thread;
+                    }) :
+                    config.getExpiryScheduler();
+        }
+        this.capacity = config.getVenueLayout() != null ? config.getVenueLayout().getNumSeats() : rows * seatsInRow;
 
-        this.holdQueue = new PriorityBlockingQueue<>(rows, (o1, o2) ->
-                                                                (int)(o1.getExpirationTime().toEpochMilli() -
-                                                                        (o2.getExpirationTime().toEpochMilli())));
-        List<SeatBlock> seatBlocks = new CopyOnWriteArrayList<>();
-        for(int i=1;i<=rows;i++) {
-            seatBlocks.add(new SeatBlock(i, 1));
+        if(config.getIdempotencyTtl() > 0) {
+            this.holdKeys = new IdempotencyCache<>(config.getIdempotencyTtl(), config.getMaxIdempotencyKeys(),
+                    timeSource);
+            this.reserveKeys = new IdempotencyCache<>(config.getIdempotencyTtl(), config.getMaxIdempotencyKeys(),
+                    timeSource);
         }
-        this.availMap.put(seatsInRow, seatBlocks);
-        this.freeSeats = new AtomicInteger(rows * seatsInRow);
 
-        this.holdPeriod = holdPeriod;
+        this.holdPeriod = config.getHoldPeriod();
         scheduleCleanExpiredHolds();
     }
 
+    /**
+     * @return the seats of the rows x seatsInRow grid that no inventory sells: the blocked seats of the layout, the
+     * seats past the width of a narrower section and the rows past the layout
+     */
+    static List<SeatBlock> unsellableSeats(VenueLayout layout, int rows, int seatsInRow) {
+        List<SeatBlock> unsellable = new ArrayList<>(layout.getBlockedSeats());
+        for(int row = 1; row <= rows; row++) {
+            int width = row <= layout.getRows() ? layout.getSectionOfRow(row).getSeatsInRow() : 0;
+            if(width < seatsInRow) {
+                SeatBlock tail = new SeatBlock(row, width + 1);
+                tail.setLength(seatsInRow - width);
+                unsellable.add(tail);
+            }
+        }
+        return unsellable;
+    }
+
+    /**
+     * Restores the reservations and the holds still active from the journaled state; the seats of the holds that
+     * expired while the service was down are left available.
+     */
+    private void recover(JournalState state) {
+        long now = timeSource.currentTimeMillis();
+        List<SeatBlock> claimed = new ArrayList<>();
+        for(Map.Entry<String, JournalState.HeldSeats> reservation : state.getReservations().entrySet()) {
+            SeatBlockHold hold = toSeatBlockHold(reservation.getValue());
+            claimed.addAll(hold.getSeatBlocks());
+            reservations.add(reservation.getKey(), hold.getHoldId(), hold.getCustomerEmail(), hold.getSeatBlocks());
+            resIdGenerator.resumeAfter(reservation.getKey());
+        }
+        for(JournalState.HeldSeats heldSeats : state.getHolds()) {
+            SeatBlockHold hold = toSeatBlockHold(heldSeats);
+            //the expiry engine is not started yet, so the hold cannot expire before its seats are claimed
+            if(heldSeats.getExpiryMillis() > now && holdRegistry.restore(hold)) {
+                claimed.addAll(hold.getSeatBlocks());
+                if(admission != null)
+                    admission.charge(hold.getCustomerHash(), hold.getNumSeats());
+            } else
+                journal.appendExpire(heldSeats.getHoldId());
+        }
+        inventory.claim(claimed);
+    }
+
+    private static SeatBlockHold toSeatBlockHold(JournalState.HeldSeats heldSeats) {
+        int[] seatRuns = heldSeats.getSeatRuns();
+        List<SeatBlock> seatBlocks = new ArrayList<>(seatRuns.length / 3);
+        for(int i = 0; i < seatRuns.length; i += 3) {
+            SeatBlock seatBlock = new SeatBlock(seatRuns[i], seatRuns[i + 1]);
+            seatBlock.setLength(seatRuns[i + 2]);
+            seatBlocks.add(seatBlock);
+        }
+        SeatBlockHold hold = new SeatBlockHold(heldSeats.getHoldId(), seatBlocks, heldSeats.getExpiryMillis());
+        hold.setCustomerEmail(heldSeats.getCustomerEmail());
+        return hold;
+    }
+
+    static SeatInventory createInventory(TicketServiceConfig config) {
+        VenueLayout layout = config.getVenueLayout();
+        if(layout != null) {
+            if(layout.getRows() > config.getRows() || layout.getSeatsInRow() > config.getSeatsInRow())
+                throw new IllegalArgumentException("rows/seatsInRow has to cover the venue layout");
+            return new SectionedSeatInventory(layout,
+                    section -> createInventory(config, section.getRows(), section.getSeatsInRow()));
+        }
+        return createInventory(config, config.getRows(), config.getSeatsInRow());
+    }
+
+    private static SeatInventory createInventory(TicketServiceConfig config, int rows, int seatsInRow) {
+        switch(config.getInventoryMode()) {
+            case ROW_BITMAP:
+                return new RowBitmapSeatInventory(rows, seatsInRow, 1, config.getAllocationStrategy());
+            case STRIPED_ROW_BITMAP:
+                return new RowBitmapSeatInventory(rows, seatsInRow, config.getStripes(),
+                        config.getAllocationStrategy());
+            case BLOCK_MAP:
+            default:
+                return new BlockMapSeatInventory(rows, seatsInRow);
+        }
+    }
+
     public void turnOffSchedule() {
-        if(cleanExpHoldTimer != null)
-            cleanExpHoldTimer.cancel();
+        holdRegistry.stop();
     }
 
     public void scheduleCleanExpiredHolds() {
-//        System.out.println(String.format("scheduling cleanExpHoldTimer every %s milliseconds to clean up expired holds", holdPeriod));
-        cleanExpHoldTimer = new Timer();
-        cleanExpHoldTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                cleanExpiredHolds();
+        holdRegistry.start();
+    }
+
+    /**
+     * Stops the hold expiry and closes the journal, if any, once everything journaled is on disk.
+     */
+    public void close() {
+        turnOffSchedule();
+        if(waitlist != null) {
+            for(Waitlist.Waiter waiter : waitlist.clear())
+                waiter.getFuture().complete(notAvailable(waiter.getNumSeats(), waiter.getCustomerEmail()));
+            if(ownsWaitlistScheduler)
+                waitlistScheduler.shutdownNow();
+        }
+        if(metrics != null)
+            metrics.unregister();
+        if(journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("could not close the journal", e);
             }
-        }, 0, holdPeriod);
+        }
     }
 
     void cleanExpiredHolds() {
-//        System.out.println("cleanExpiredHolds() - "+ (!holdQueue.isEmpty() ? holdQueue.peek().getExpirationTime() : "") + " "+(Instant.now()));
-        while(!holdQueue.isEmpty() && holdQueue.peek().getExpirationTime().isBefore(Instant.now())) {
-            SeatBlockHold hold = holdQueue.poll();
-            releaseHold(hold.getSeatBlocks());
+        holdRegistry.expire(timeSource.currentTimeMillis());
+    }
+
+    /**
+     * Releases the seats of expired holds, already removed from the registry. A failure to journal or release one hold
+     * does not keep the seats of the others from the pool; the failures are rethrown once the whole batch is done.
+     */
+    void releaseHolds(List<SeatBlockHold> holds) {
+        long now = metrics != null ? timeSource.currentTimeMillis() : 0;
+        RuntimeException failure = null;
+        for(SeatBlockHold hold : holds) {
+            //waits out a partial release in progress
+            synchronized(hold) {
+                try {
+                    if(journal != null)
+                        journal.appendExpire(hold.getHoldId());
+                } catch (RuntimeException e) {
+                    //a hold not journaled as expired is expired again on recovery, its expiry being past
+                    failure = addFailure(failure, e);
+                }
+                try {
+                    if(admission != null)
+                        admission.release(hold.getCustomerHash(), hold.getNumSeats());
+                    releaseHold(hold.getSeatBlocks());
+                } catch (RuntimeException e) {
+                    failure = addFailure(failure, e);
+                }
+            }
+            if(metrics != null)
+                metrics.recordExpired(now - hold.getExpiryMillis());
         }
+        if(failure != null)
+            throw failure;
+    }
+
+    private static RuntimeException addFailure(RuntimeException failure, RuntimeException e) {
+        if(failure == null)
+            return e;
+        failure.addSuppressed(e);
+        return failure;
     }
 
     void releaseHold(List<SeatBlock> seatBlocks) {
+        if(waitlist != null && waitlist.size() > 0)
+            seatBlocks = handOff(seatBlocks);
+        if(!seatBlocks.isEmpty())
+            inventory.release(seatBlocks);
+    }
+
+    /**
+     * Holds freed seats for the waiters they fit, in the order the seats were held.
+     *
+     * @return the seats left for the pool
+     */
+    private List<SeatBlock> handOff(List<SeatBlock> seatBlocks) {
+        int freed = 0;
+        for(SeatBlock seatBlock : seatBlocks) {
+            freed += seatBlock.getLength();
+        }
+        //waiters the seats would take over their quota are turned away
+        List<Waitlist.Waiter> overQuota = new ArrayList<>();
+        List<Waitlist.Waiter> served = waitlist.match(freed, waiter -> admission == null ||
+                admission.tryCharge(HoldTable.customerHash(waiter.getCustomerEmail()), waiter.getNumSeats()),
+                overQuota);
+        for(Waitlist.Waiter waiter : overQuota) {
+            waitlistScheduler.execute(() -> waiter.getFuture().complete(
+                    quotaExceeded(waiter.getNumSeats(), waiter.getCustomerEmail())));
+        }
+        if(served.isEmpty())
+            return seatBlocks;
+        List<SeatBlock> left = new ArrayList<>(seatBlocks.size());
         for(SeatBlock seatBlock : seatBlocks) {
-            availMap.putIfAbsent(seatBlock.getLength(), new CopyOnWriteArrayList<>());
-            availMap.get(seatBlock.getLength()).add(new SeatBlock(seatBlock.getRow(), seatBlock.getCol()));
-            freeSeats.updateAndGet((x) -> x + seatBlock.getLength());
+            SeatBlock copy = new SeatBlock(seatBlock.getRow(), seatBlock.getCol());
+            copy.setLength(seatBlock.getLength());
+            left.add(copy);
         }
+        long expiryMillis = timeSource.currentTimeMillis() + holdPeriod;
+        for(Waitlist.Waiter waiter : served) {
+            List<SeatBlock> taken = new ArrayList<>();
+            int numRem = waiter.getNumSeats();
+            while(numRem > 0) {
+                SeatBlock first = left.get(0);
+                if(first.getLength() <= numRem) {
+                    taken.add(left.remove(0));
+                    numRem -= first.getLength();
+                } else {
+                    SeatBlock slice = new SeatBlock(first.getRow(), first.getCol());
+                    slice.setLength(numRem);
+                    taken.add(slice);
+                    SeatBlock rest = new SeatBlock(first.getRow(), first.getCol() + numRem);
+                    rest.setLength(first.getLength() - numRem);
+                    left.set(0, rest);
+                    numRem = 0;
+                }
+            }
+            SeatHold hold = createHold(taken, waiter.getNumSeats(), waiter.getCustomerEmail(), expiryMillis);
+            //completed off the expiry path and outside the monitor of the hold the seats came from
+            waitlistScheduler.execute(() -> deliver(waiter, hold));
+        }
+        return left;
+    }
+
+    //the waiter may have been cancelled after it was served; its hold is then dropped
+    private void deliver(Waitlist.Waiter waiter, SeatHold hold) {
+        if(!waiter.getFuture().complete(hold))
+            releaseSeats(hold.getHoldId(), waiter.getCustomerEmail(), hold.getNumSeats());
+    }
+
+    /**
+     * @return the number of holds neither reserved nor expired
+     */
+    public int getActiveHoldCount() {
+        return holdRegistry.size();
+    }
+
+    /**
+     * @return the number of reservations made
+     */
+    public int getReservationCount() {
+        return reservations.size();
+    }
+
+    /**
+     * @param reservationId the reservation confirmation code
+     * @return the reservation, or null if unknown
+     */
+    public Reservation getReservation(String reservationId) {
+        return reservations.get(reservationId);
+    }
+
+    /**
+     * @param customerEmail the email address of the customer
+     * @return the reservations of the customer, in booking order
+     */
+    public List<Reservation> getReservations(String customerEmail) {
+        return reservations.getByCustomer(customerEmail);
+    }
+
+    /**
+     * @param row the row of the seat, from 1
+     * @param col the seat in the row, from 1
+     * @return the reservation holding the seat, or null if the seat is not reserved
+     */
+    public Reservation getReservation(int row, int col) {
+        return reservations.getBySeat(row, col);
+    }
+
+    /**
+     * @return the seat map snapshots and deltas, or null when disabled
+     */
+    public SeatMapPublisher getSeatMap() {
+        return seatMap;
+    }
+
+    /**
+     * @return the service metrics, or null when disabled
+     */
+    public TicketServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the journal, or null when disabled
+     */
+    HoldJournal getJournal() {
+        return journal;
     }
 
     @Override
     public int numSeatsAvailable() {
-        return freeSeats.intValue();
+        return inventory.numSeatsAvailable();
+    }
+
+    /**
+     * @param zone a section or tier of the venue layout
+     * @return the number of seats available in the zone
+     * @throws IllegalArgumentException if the zone is not in the venue layout, or the service has no layout
+     */
+    public int numSeatsAvailable(String zone) {
+        return inventory.numSeatsAvailable(zone);
     }
 
     @Override
     public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
-        SeatHold hold = null;
-        SeatBlock seatBlock = null;
-        List<SeatBlock> seatBlocks = new ArrayList<>();
-
-        //find seats from available pool.
-        //1. find a block with same size as requested number of seats
-        //2. if not found, chop a slice of next higher block
-        //3. if not found, split requested number of seats into small number of blocks
-        List<SeatBlock> list = availMap.get(numSeats);
-        if(list == null || list.isEmpty()) {
-            //Couldn't find a block size same as requested; searching for next higher seat block
-            Map.Entry<Integer, List<SeatBlock>> seatEntry = null;
-            int k =  numSeats;
-            do {
-                seatEntry = ((ConcurrentSkipListMap) availMap).higherEntry(k++);
-                if(seatEntry == null)
-                    break;
-                list = seatEntry.getValue();
-                if (list != null && !list.isEmpty()) {
-                    SeatBlock removedBlock = list.remove(0);
-                    availMap.putIfAbsent(seatEntry.getKey() - numSeats, new CopyOnWriteArrayList<>());
-                    availMap.get(seatEntry.getKey() - numSeats).add(new SeatBlock(removedBlock.getRow(), removedBlock.getCol() + numSeats));
-                    seatBlock = removedBlock;
-                    seatBlock.setLength(numSeats);
-                    seatBlocks.add(seatBlock);
-                    break;
-                }
-            } while(seatEntry != null);
-            //couldn't find a single contiguous block of seats
-            //split the requested num and find seatBlocks
-            if(seatEntry == null) {
-                int numRem = numSeats;
-                k = numRem;
-                do {
-                    seatEntry = ((ConcurrentSkipListMap) availMap).lowerEntry(k--);
-                    if(seatEntry == null)
-                        break;
-                    list = seatEntry.getValue();
-                    if (list != null) {
-                        while(!list.isEmpty() && numRem > 0) {
-                            SeatBlock removedBlock = list.remove(0);
-                            if(numRem < seatEntry.getKey()) {
-                                availMap.putIfAbsent(numRem - seatEntry.getKey(), new CopyOnWriteArrayList<>());
-                                availMap.get(numRem - seatEntry.getKey()).add(new SeatBlock(removedBlock.getRow(), removedBlock.getCol() + numRem));
-                                seatBlock = removedBlock;
-                                seatBlock.setLength(seatEntry.getKey());
-                                seatBlocks.add(seatBlock);
-                            } else {
-                                removedBlock.setLength(seatEntry.getKey());
-                                seatBlocks.add(removedBlock);
-                            }
-                            numRem -= seatEntry.getKey();
-                        }
-                    }
-                } while(seatEntry != null && numRem > 0);
-            }
-        } else {
-            seatBlock = list.remove(0);
-            seatBlock.setLength(numSeats);
-            seatBlocks.add(seatBlock);
+        return findAndHoldSeats(numSeats, customerEmail, null);
+    }
+
+    /**
+     * Find and hold the best available seats of a section or tier, searching that zone only. The seats are all held
+     * in one section.
+     *
+     * @param zone a section or tier of the venue layout, or null for the whole venue
+     * @throws IllegalArgumentException if the zone is not in the venue layout, or the service has no layout
+     */
+    public SeatHold findAndHoldSeats(int numSeats, String customerEmail, String zone) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        SeatHold hold = admit(numSeats, customerEmail);
+        if(hold == null) {
+            List<SeatBlock> seatBlocks = zone != null ?
+                    inventory.allocate(numSeats, zone) :
+                    inventory.allocate(numSeats);
+            hold = createHold(seatBlocks, numSeats, customerEmail, timeSource.currentTimeMillis() + holdPeriod);
+            if(admission != null && hold.getErrorInfo() != null)
+                admission.release(HoldTable.customerHash(customerEmail), numSeats);
+        }
+        if(metrics != null) {
+            boolean placed = hold.getErrorInfo() == null;
+            metrics.recordHolds(placed ? 1 : 0, placed ? 0 : 1, System.nanoTime() - start);
         }
+        return hold;
+    }
 
-        if(seatBlocks != null && !seatBlocks.isEmpty()) {
-            List<SeatInfo> seatInfo = new LinkedList<>();
-            int k = 0;
-            //populate seat info based on allocated seat blocks
-            for(SeatBlock tmpSeatBlock : seatBlocks) {
-                for(int i = 0; i< tmpSeatBlock.getLength(); i++) {
-                    seatInfo.add(new SeatInfo(tmpSeatBlock.getRow(), tmpSeatBlock.getCol()+i));
-                    k++;
-                }
+    /**
+     * Find and hold the best available seats once per idempotency key: a retry with the key of a request that placed a
+     * hold gets that hold back, without allocating seats, for the idempotency time to live. Retries of a request that
+     * failed are served again. Without idempotency keys configured, the key is ignored.
+     *
+     * @param zone           a section or tier of the venue layout, or null for the whole venue
+     * @param idempotencyKey the key the client keeps across the retries of a request, unique per customer; or null
+     */
+    public SeatHold findAndHoldSeats(int numSeats, String customerEmail, String zone, String idempotencyKey) {
+        if(holdKeys == null || idempotencyKey == null)
+            return findAndHoldSeats(numSeats, customerEmail, zone);
+        return holdKeys.execute(scopedKey(customerEmail, idempotencyKey),
+                () -> findAndHoldSeats(numSeats, customerEmail, zone),
+                hold -> hold.getErrorInfo() == null);
+    }
+
+    /**
+     * Holds the seats for the batch in one pass over the seat inventory, with a single expiry timestamp.
+     */
+    @Override
+    public List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> requests) {
+        //requests turned away by the admission control take no part in the allocation pass
+        SeatHold[] rejected = new SeatHold[requests.size()];
+        int admitted = 0;
+        for(int i = 0; i < rejected.length; i++) {
+            HoldRequest request = requests.get(i);
+            rejected[i] = admit(request.getNumSeats(), request.getCustomerEmail());
+            if(rejected[i] == null)
+                admitted++;
+        }
+        int[] numSeats = new int[admitted];
+        for(int i = 0, j = 0; i < rejected.length; i++) {
+            if(rejected[i] == null)
+                numSeats[j++] = requests.get(i).getNumSeats();
+        }
+        List<List<SeatBlock>> allocations = inventory.allocateAll(numSeats);
+        long expiryMillis = timeSource.currentTimeMillis() + holdPeriod;
+        List<SeatHold> holds = new ArrayList<>(rejected.length);
+        for(int i = 0, j = 0; i < rejected.length; i++) {
+            if(rejected[i] != null) {
+                holds.add(rejected[i]);
+                continue;
             }
-            //if we could not find requested number of seats, release them to availability pool
-            if(k != numSeats) {
-                for(SeatBlock seatBlockInternal : seatBlocks) {
-                    availMap.putIfAbsent(seatBlockInternal.getLength(), new CopyOnWriteArrayList<>());
-                    availMap.get(seatBlockInternal.getLength()).add(new SeatBlock(seatBlockInternal.getRow(), seatBlockInternal.getCol()));
+            HoldRequest request = requests.get(i);
+            SeatHold hold = createHold(allocations.get(j++), request.getNumSeats(), request.getCustomerEmail(),
+                    expiryMillis);
+            if(admission != null && hold.getErrorInfo() != null)
+                admission.release(HoldTable.customerHash(request.getCustomerEmail()), request.getNumSeats());
+            holds.add(hold);
+        }
+        if(metrics != null) {
+            int placed = 0;
+            for(SeatHold hold : holds) {
+                if(hold.getErrorInfo() == null)
+                    placed++;
+            }
+            metrics.recordHolds(placed, holds.size() - placed, -1);
+        }
+        return holds;
+    }
+
+    /**
+     * Find and hold the best available seats, or wait for seats freed by expiring or released holds when there are
+     * not enough available. Without the waitlist, the hold is returned as is.
+     *
+     * @param timeoutMillis the time to wait for seats, in milliseconds
+     * @return the hold once placed, or a NOT_AVAILABLE hold if the seats could not be held within the timeout;
+     * cancelling the future leaves the waitlist, or drops a hold placed in the meantime
+     */
+    public CompletableFuture<SeatHold> findAndHoldSeatsOrWait(int numSeats, String customerEmail, long timeoutMillis) {
+        if(timeoutMillis <= 0)
+            throw new IllegalArgumentException("timeoutMillis has to be valid non-zero number");
+        SeatHold hold = findAndHoldSeats(numSeats, customerEmail);
+        //requests turned away by the admission control do not wait
+        if(waitlist == null || hold.getErrorInfo() == null || numSeats <= 0 || numSeats > capacity ||
+                !"NOT_AVAILABLE".equals(hold.getErrorInfo().getErrorCode()))
+            return CompletableFuture.completedFuture(hold);
+        Waitlist.Waiter waiter = new Waitlist.Waiter(numSeats, customerEmail);
+        waitlist.add(waiter);
+        //seats freed before the waiter was listed
+        List<SeatBlock> seatBlocks = inventory.allocate(numSeats);
+        if(seatBlocks != null) {
+            if(waitlist.remove(waiter)) {
+                if(admission != null && !admission.tryCharge(HoldTable.customerHash(customerEmail), numSeats)) {
+                    releaseHold(seatBlocks);
+                    waiter.getFuture().complete(quotaExceeded(numSeats, customerEmail));
+                    return waiter.getFuture();
                 }
-            } else {
-                //create seatBlock hold with list of seatBlocks
-                Instant expiryTime = Instant.now().plusMillis(holdPeriod);
-                int holdId = holdIdGenerator.nextId();
-                SeatBlockHold seatBlockHold = new SeatBlockHold(holdId,
-                        seatBlocks,
-                        expiryTime);
-                holdQueue.offer(seatBlockHold);
-                hold = new SeatHold(holdId,
-                        customerEmail,
-                        numSeats,
-                        seatInfo,
-                        expiryTime);
-                freeSeats.updateAndGet((x) -> x - numSeats);
+                waiter.getFuture().complete(createHold(seatBlocks, numSeats, customerEmail,
+                        timeSource.currentTimeMillis() + holdPeriod));
+                return waiter.getFuture();
             }
+            releaseHold(seatBlocks);
         }
-        return hold != null ?
-                hold :
-                new SeatHold(
-                customerEmail,
-                numSeats,
+        waitlistScheduler.schedule(() -> {
+            if(waitlist.remove(waiter))
+                waiter.getFuture().complete(notAvailable(numSeats, customerEmail));
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        waiter.getFuture().whenComplete((placed, e) -> {
+            if(waiter.getFuture().isCancelled())
+                waitlist.remove(waiter);
+        });
+        return waiter.getFuture();
+    }
+
+    /**
+     * @return the number of requests waiting for seats
+     */
+    public int getWaitlistSize() {
+        return waitlist != null ? waitlist.size() : 0;
+    }
+
+    /**
+     * Checks the customer's held seat quota and request rate, counting the seats as held if the request is admitted.
+     *
+     * @return null if the request is admitted, the rejected hold otherwise
+     */
+    private SeatHold admit(int numSeats, String customerEmail) {
+        if(admission == null || numSeats <= 0)
+            return null;
+        switch(admission.acquire(HoldTable.customerHash(customerEmail), numSeats, timeSource.currentTimeMillis())) {
+            case QUOTA_EXCEEDED:
+                return quotaExceeded(numSeats, customerEmail);
+            case RATE_LIMITED:
+                return new SeatHold(customerEmail, numSeats,
+                        new ErrorInfo("RATE_LIMITED", "The customer made too many hold requests"));
+            default:
+                return null;
+        }
+    }
+
+    private static SeatHold quotaExceeded(int numSeats, String customerEmail) {
+        return new SeatHold(customerEmail, numSeats,
+                new ErrorInfo("QUOTA_EXCEEDED", "The customer holds as many seats as allowed"));
+    }
+
+    private static SeatHold notAvailable(int numSeats, String customerEmail) {
+        return new SeatHold(customerEmail, numSeats,
                 new ErrorInfo("NOT_AVAILABLE", "The requested seats could not be allocated"));
     }
 
+    private SeatHold createHold(List<SeatBlock> seatBlocks, int numSeats, String customerEmail, long expiryMillis) {
+        SeatHold hold = null;
+        if(seatBlocks != null && !seatBlocks.isEmpty()) {
+            //create seatBlock hold with list of seatBlocks; the registry assigns its id
+            SeatBlockHold seatBlockHold = new SeatBlockHold(0,
+                    seatBlocks,
+                    expiryMillis);
+            seatBlockHold.setCustomerEmail(customerEmail);
+            int holdId = holdRegistry.add(seatBlockHold);
+            //the id is only handed out once the hold is journaled
+            if(journal != null)
+                journal.appendHold(holdId, customerEmail, expiryMillis, seatBlocks);
+            hold = new SeatHold(holdId,
+                    customerEmail,
+                    toSeatRuns(seatBlocks),
+                    expiryMillis);
+        }
+        return hold != null ? hold : notAvailable(numSeats, customerEmail);
+    }
+
+    //seat runs of the allocated seat blocks; seat info is only materialized if the caller asks for it
+    static SeatRuns toSeatRuns(List<SeatBlock> seatBlocks) {
+        int[] runs = new int[seatBlocks.size() * 3];
+        int i = 0;
+        for(SeatBlock seatBlock : seatBlocks) {
+            runs[i++] = seatBlock.getRow();
+            runs[i++] = seatBlock.getCol();
+            runs[i++] = seatBlock.getLength();
+        }
+        return new SeatRuns(runs);
+    }
+
     @Override
     public String reserveSeats(int seatHoldId, String customerEmail) {
+        long start = metrics != null ? System.nanoTime() : 0;
         String resId = null;
-        SeatBlockHold hold = new SeatBlockHold(seatHoldId);
-        if(holdQueue.contains(hold)) {
-            holdQueue.remove(hold);
+        SeatBlockHold hold = holdRegistry.remove(seatHoldId, customerEmail);
+        if(hold != null) {
             resId = resIdGenerator.nextId();
-            reservedSeats.put(resId, hold);
+            long seq = -1;
+            //journaled after an extension or partial release in progress
+            synchronized(hold) {
+                if(journal != null)
+                    seq = journal.appendReserve(seatHoldId, resId);
+            }
+            if(journal != null) {
+                try {
+                    journal.sync(seq);
+                } catch (UncheckedIOException e) {
+                    releaseUnreserved(hold);
+                    if(metrics != null)
+                        metrics.recordReserve(false, System.nanoTime() - start);
+                    throw e;
+                }
+            }
+            reservations.add(resId, seatHoldId, customerEmail, hold.getSeatBlocks());
+            if(admission != null)
+                admission.release(hold.getCustomerHash(), hold.getNumSeats());
         }
+        if(metrics != null)
+            metrics.recordReserve(resId != null, System.nanoTime() - start);
         return resId;
     }
+
+    /**
+     * Commit the seats held once per idempotency key: a retry with the key of a request that reserved the hold gets
+     * the reservation id back, for the idempotency time to live. Without idempotency keys configured, the key is
+     * ignored.
+     *
+     * @param idempotencyKey the key the client keeps across the retries of a request, unique per customer; or null
+     */
+    public String reserveSeats(int seatHoldId, String customerEmail, String idempotencyKey) {
+        if(reserveKeys == null || idempotencyKey == null)
+            return reserveSeats(seatHoldId, customerEmail);
+        return reserveKeys.execute(scopedKey(customerEmail, idempotencyKey),
+                () -> reserveSeats(seatHoldId, customerEmail),
+                Objects::nonNull);
+    }
+
+    //the reservation of a hold already out of the registry could not be journaled: its seats go back to the pool
+    private void releaseUnreserved(SeatBlockHold hold) {
+        synchronized(hold) {
+            if(admission != null)
+                admission.release(hold.getCustomerHash(), hold.getNumSeats());
+            releaseHold(hold.getSeatBlocks());
+        }
+    }
+
+    //the keys of different customers never collide
+    private static String scopedKey(String customerEmail, String idempotencyKey) {
+        return customerEmail + '\n' + idempotencyKey;
+    }
+
+    /**
+     * Reserves the batch with a single journal sync for all of its reservations.
+     */
+    @Override
+    public List<String> reserveSeatsBatch(List<ReserveRequest> requests) {
+        List<String> resIds = new ArrayList<>(requests.size());
+        List<SeatBlockHold> holds = new ArrayList<>(requests.size());
+        long lastSeq = -1;
+        for(ReserveRequest request : requests) {
+            String resId = null;
+            SeatBlockHold hold = holdRegistry.remove(request.getHoldId(), request.getCustomerEmail());
+            if(hold != null) {
+                resId = resIdGenerator.nextId();
+                synchronized(hold) {
+                    if(journal != null)
+                        lastSeq = journal.appendReserve(request.getHoldId(), resId);
+                }
+            }
+            resIds.add(resId);
+            holds.add(hold);
+        }
+        if(journal != null && lastSeq >= 0) {
+            try {
+                journal.sync(lastSeq);
+            } catch (UncheckedIOException e) {
+                for(SeatBlockHold hold : holds) {
+                    if(hold != null)
+                        releaseUnreserved(hold);
+                }
+                if(metrics != null) {
+                    for(int i = 0; i < requests.size(); i++) {
+                        metrics.recordReserve(false, -1);
+                    }
+                }
+                throw e;
+            }
+        }
+        for(int i = 0; i < resIds.size(); i++) {
+            SeatBlockHold hold = holds.get(i);
+            if(resIds.get(i) != null) {
+                reservations.add(resIds.get(i), hold.getHoldId(), hold.getCustomerEmail(), hold.getSeatBlocks());
+                if(admission != null)
+                    admission.release(hold.getCustomerHash(), hold.getNumSeats());
+            }
+            //the latency of a batch is not that of any of its requests
+            if(metrics != null)
+                metrics.recordReserve(resIds.get(i) != null, -1);
+        }
+        return resIds;
+    }
+
+    /**
+     * Pushes the expiry of an active hold back, keeping its seats. The hold is moved in the expiry engine in place.
+     *
+     * @param seatHoldId the hold identifier
+     * @param customerEmail the email address of the customer to which the hold is assigned
+     * @param millis the time added to the hold's expiration time, in milliseconds
+     * @return the hold with its new expiration time, or null if the hold is not active or not the customer's
+     */
+    public SeatHold extendHold(int seatHoldId, String customerEmail, long millis) {
+        if(millis <= 0)
+            throw new IllegalArgumentException("millis has to be valid non-zero number");
+        SeatBlockHold hold = holdRegistry.get(seatHoldId, customerEmail);
+        if(hold == null)
+            return null;
+        synchronized(hold) {
+            //the hold may have been reserved or expired before the monitor was taken
+            if(holdRegistry.get(seatHoldId, customerEmail) != hold)
+                return null;
+            long expiryMillis = hold.getExpiryMillis() + millis;
+            if(!holdRegistry.reschedule(hold, expiryMillis))
+                return null;
+            if(journal != null)
+                journal.appendExtend(seatHoldId, expiryMillis);
+            return new SeatHold(seatHoldId, customerEmail, toSeatRuns(hold.getSeatBlocks()), expiryMillis);
+        }
+    }
+
+    /**
+     * Gives up some of the seats of an active hold, returning them to the seat pool. The hold keeps its id and
+     * expiration time; its last seats are released first. Releasing all of its seats drops the hold.
+     *
+     * @param seatHoldId the hold identifier
+     * @param customerEmail the email address of the customer to which the hold is assigned
+     * @param numSeats the number of seats to release
+     * @return the hold with the seats it keeps, or null if the hold is not active or not the customer's
+     */
+    public SeatHold releaseSeats(int seatHoldId, String customerEmail, int numSeats) {
+        if(numSeats <= 0)
+            throw new IllegalArgumentException("numSeats has to be valid non-zero number");
+        SeatBlockHold hold = holdRegistry.get(seatHoldId, customerEmail);
+        if(hold == null)
+            return null;
+        synchronized(hold) {
+            if(numSeats >= hold.getNumSeats()) {
+                if(holdRegistry.remove(seatHoldId, customerEmail) != hold)
+                    return null;
+                if(journal != null)
+                    journal.appendExpire(seatHoldId);
+                if(admission != null)
+                    admission.release(hold.getCustomerHash(), hold.getNumSeats());
+                releaseHold(hold.getSeatBlocks());
+                return new SeatHold(seatHoldId, customerEmail, new SeatRuns(new int[0]), hold.getExpiryMillis());
+            }
+            if(holdRegistry.get(seatHoldId, customerEmail) != hold)
+                return null;
+            List<SeatBlock> released = hold.releaseSeats(numSeats);
+            if(journal != null)
+                journal.appendRelease(seatHoldId, hold.getSeatBlocks());
+            if(admission != null)
+                admission.release(hold.getCustomerHash(), numSeats);
+            releaseHold(released);
+            return new SeatHold(seatHoldId, customerEmail, toSeatRuns(hold.getSeatBlocks()), hold.getExpiryMillis());
+        }
+    }
 }
@@ -0,0 +1,125 @@
+package org.tics.ticket;
+
+import org.tics.seat.SeatHold;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Waitlist of the hold requests that could not be served, parked by number of seats.
+ * <p>
+ * Seats freed by expired or released holds are matched against it before going back to the pool: the freed seats go
+ * to the largest request they can serve, the oldest first, and so on with the seats left. Whoever removes a waiter
+ * from the list (a match, its timeout or its cancellation) owns it and is the only one to complete it.
+ */
+public class Waitlist {
+
+    //waiters by number of seats, oldest first
+    private final TreeMap<Integer, ArrayDeque<Waiter>> waiters = new TreeMap<>();
+    private volatile int size;
+
+    public synchronized void add(Waiter waiter) {
+        waiters.computeIfAbsent(waiter.getNumSeats(), n -> new ArrayDeque<>()).add(waiter);
+        size++;
+    }
+
+    /**
+     * @return true if the waiter was still on the list
+     */
+    public synchronized boolean remove(Waiter waiter) {
+        ArrayDeque<Waiter> queue = waiters.get(waiter.getNumSeats());
+        if(queue == null || !queue.remove(waiter))
+            return false;
+        if(queue.isEmpty())
+            waiters.remove(waiter.getNumSeats());
+        size--;
+        return true;
+    }
+
+    /**
+     * Takes the waiters the freed seats serve, best fit first.
+     *
+     * @param numSeats the number of seats freed
+     * @return the waiters served, in the order the seats go to them; their seats add up to numSeats at most
+     */
+    public List<Waiter> match(int numSeats) {
+        return match(numSeats, waiter -> true, new ArrayList<>());
+    }
+
+    /**
+     * Takes the waiters the freed seats serve, best fit first, skipping those that may not be served.
+     *
+     * @param numSeats the number of seats freed
+     * @param admit    whether a waiter may be served; called with the waitlist locked
+     * @param rejected receives the waiters taken off the list without being served
+     * @return the waiters served, in the order the seats go to them; their seats add up to numSeats at most
+     */
+    public synchronized List<Waiter> match(int numSeats, Predicate<Waiter> admit, List<Waiter> rejected) {
+        List<Waiter> served = new ArrayList<>();
+        Map.Entry<Integer, ArrayDeque<Waiter>> entry;
+        while(numSeats > 0 && (entry = waiters.floorEntry(numSeats)) != null) {
+            Waiter waiter = entry.getValue().poll();
+            if(entry.getValue().isEmpty())
+                waiters.remove(entry.getKey());
+            size--;
+            if(!admit.test(waiter)) {
+                rejected.add(waiter);
+                continue;
+            }
+            served.add(waiter);
+            numSeats -= waiter.getNumSeats();
+        }
+        return served;
+    }
+
+    /**
+     * Takes all the waiters off the list.
+     */
+    public synchronized List<Waiter> clear() {
+        List<Waiter> all = new ArrayList<>(size);
+        for(ArrayDeque<Waiter> queue : waiters.values()) {
+            all.addAll(queue);
+        }
+        waiters.clear();
+        size = 0;
+        return all;
+    }
+
+    /**
+     * @return the number of waiting requests; read without locking
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Hold request waiting for seats.
+     */
+    public static class Waiter {
+        private final int numSeats;
+        private final String customerEmail;
+        private final CompletableFuture<SeatHold> future = new CompletableFuture<>();
+
+        public Waiter(int numSeats, String customerEmail) {
+            this.numSeats = numSeats;
+            this.customerEmail = customerEmail;
+        }
+
+        public int getNumSeats() {
+            return numSeats;
+        }
+
+        public String getCustomerEmail() {
+            return customerEmail;
+        }
+
+        public CompletableFuture<SeatHold> getFuture() {
+            return future;
+        }
+    }
+}
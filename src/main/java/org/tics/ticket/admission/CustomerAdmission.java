@@ -0,0 +1,203 @@
+package org.tics.ticket.admission;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per customer admission control of hold requests, checked before any seat is allocated: a cap on the seats a
+ * customer holds at once and a token bucket on the rate of its hold requests.
+ * <p>
+ * Customers are tracked by the same hash the holds are bound to, in a table split into lock stripes; each stripe is a
+ * small access ordered map, so a check is one uncontended monitor and a hash lookup. The table is bounded: an entry
+ * with no seats held and a full bucket carries no state and is dropped as soon as it is the stripe's least recently
+ * seen entry; past the table size, the least recently seen entries with no seats held are dropped even if their bucket
+ * is not full yet, handing those customers a fresh burst. Entries holding seats are never dropped, and there are at
+ * most as many as seats in the venue. A rare customer with a colliding hash shares the quota of another.
+ */
+public class CustomerAdmission {
+
+    public enum Verdict {
+        ADMITTED,
+        //the customer would hold more seats than its quota
+        QUOTA_EXCEEDED,
+        //the customer has no request token left
+        RATE_LIMITED
+    }
+
+    public static final int DEFAULT_MAX_CUSTOMERS = 1 << 18;
+
+    private static final int STRIPES = 64;
+    //tokens are counted in thousandths, so a bucket refills by the request rate per second every millisecond
+    private static final long TOKEN = 1000;
+    //least recently seen entries looked at to make room in a full stripe
+    private static final int EVICTION_SCAN = 8;
+
+    private final int maxHeldSeats;
+    private final int requestRate;
+    private final long bucketSize;
+    private final long refillMillis;
+    private final int maxPerStripe;
+    private final Stripe[] stripes;
+
+    /**
+     * @param maxHeldSeats the seats a customer can hold at once, 0 for no limit
+     * @param requestRate  the hold requests per second a customer is allowed on average, 0 for no limit
+     * @param burst        the hold requests a customer can make at once, at least 1 when the rate is limited
+     * @param maxCustomers the number of customers tracked, bounding the memory of the table
+     */
+    public CustomerAdmission(int maxHeldSeats, int requestRate, int burst, int maxCustomers) {
+        if(maxHeldSeats < 0 || requestRate < 0)
+            throw new IllegalArgumentException("maxHeldSeats/requestRate has to be valid number");
+        if(requestRate > 0 && burst <= 0)
+            throw new IllegalArgumentException("burst has to be valid non-zero number");
+        if(maxCustomers <= 0)
+            throw new IllegalArgumentException("maxCustomers has to be valid non-zero number");
+        this.maxHeldSeats = maxHeldSeats;
+        this.requestRate = requestRate;
+        this.bucketSize = requestRate > 0 ? burst * TOKEN : 0;
+        this.refillMillis = requestRate > 0 ? (bucketSize + requestRate - 1) / requestRate : 0;
+        this.maxPerStripe = Math.max(1, maxCustomers / STRIPES);
+        this.stripes = new Stripe[STRIPES];
+        for(int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Admits a hold request, taking a request token and counting its seats as held by the customer if admitted. A
+     * request over the quota takes no token.
+     *
+     * @param customerHash the customer hash the hold is bound to
+     * @param numSeats     the number of seats requested
+     * @param now          the current time, in epoch milliseconds
+     */
+    public Verdict acquire(int customerHash, int numSeats, long now) {
+        Stripe stripe = stripeOf(customerHash);
+        synchronized(stripe) {
+            Customer customer = stripe.customers.get(customerHash);
+            if(customer == null) {
+                evict(stripe, now);
+                customer = new Customer(bucketSize, now);
+                stripe.customers.put(customerHash, customer);
+            }
+            if(requestRate > 0) {
+                customer.tokens = Math.min(bucketSize, customer.tokens + (now - customer.lastRefill) * requestRate);
+                customer.lastRefill = now;
+                if(customer.tokens < TOKEN)
+                    return Verdict.RATE_LIMITED;
+            }
+            if(maxHeldSeats > 0 && customer.heldSeats + numSeats > maxHeldSeats)
+                return Verdict.QUOTA_EXCEEDED;
+            if(requestRate > 0)
+                customer.tokens -= TOKEN;
+            customer.heldSeats += numSeats;
+            return Verdict.ADMITTED;
+        }
+    }
+
+    /**
+     * Counts seats as held by the customer if they keep it within its quota, whatever its request rate, e.g. for the
+     * seats handed to a waiting request.
+     *
+     * @return true if the seats are counted, false if they would take the customer over its quota
+     */
+    public boolean tryCharge(int customerHash, int numSeats) {
+        Stripe stripe = stripeOf(customerHash);
+        synchronized(stripe) {
+            Customer customer = stripe.customers.get(customerHash);
+            if(customer == null) {
+                customer = new Customer(bucketSize, 0);
+                stripe.customers.put(customerHash, customer);
+            }
+            if(maxHeldSeats > 0 && customer.heldSeats + numSeats > maxHeldSeats)
+                return false;
+            customer.heldSeats += numSeats;
+            return true;
+        }
+    }
+
+    /**
+     * Counts seats as held by the customer without any check, e.g. for the holds restored on recovery.
+     */
+    public void charge(int customerHash, int numSeats) {
+        Stripe stripe = stripeOf(customerHash);
+        synchronized(stripe) {
+            Customer customer = stripe.customers.get(customerHash);
+            if(customer == null) {
+                customer = new Customer(bucketSize, 0);
+                stripe.customers.put(customerHash, customer);
+            }
+            customer.heldSeats += numSeats;
+        }
+    }
+
+    /**
+     * Gives back seats the customer no longer holds: reserved, released or expired, or not allocated after all.
+     */
+    public void release(int customerHash, int numSeats) {
+        Stripe stripe = stripeOf(customerHash);
+        synchronized(stripe) {
+            Customer customer = stripe.customers.get(customerHash);
+            if(customer != null)
+                customer.heldSeats = Math.max(0, customer.heldSeats - numSeats);
+        }
+    }
+
+    /**
+     * @return the number of seats the customer holds
+     */
+    public int heldSeats(int customerHash) {
+        Stripe stripe = stripeOf(customerHash);
+        synchronized(stripe) {
+            Customer customer = stripe.customers.get(customerHash);
+            return customer != null ? customer.heldSeats : 0;
+        }
+    }
+
+    /**
+     * @return the number of customers tracked
+     */
+    public int size() {
+        int size = 0;
+        for(Stripe stripe : stripes) {
+            synchronized(stripe) {
+                size += stripe.customers.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(int customerHash) {
+        return stripes[(customerHash ^ (customerHash >>> 16)) & (STRIPES - 1)];
+    }
+
+    //makes room for an entry: drops the stale entries in front of the stripe, and idle ones while it is full
+    private void evict(Stripe stripe, long now) {
+        Map<Integer, Customer> customers = stripe.customers;
+        Iterator<Customer> eldest = customers.values().iterator();
+        for(int scanned = 0; scanned < EVICTION_SCAN && eldest.hasNext(); scanned++) {
+            Customer customer = eldest.next();
+            if(customer.heldSeats == 0 && (customers.size() >= maxPerStripe || now - customer.lastRefill >= refillMillis))
+                eldest.remove();
+            else if(customers.size() < maxPerStripe)
+                break;
+        }
+    }
+
+    private static final class Customer {
+        private int heldSeats;
+        private long tokens;
+        private long lastRefill;
+
+        Customer(long tokens, long lastRefill) {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+    }
+
+    //locked by its own monitor
+    private static final class Stripe {
+        private final LinkedHashMap<Integer, Customer> customers = new LinkedHashMap<>(16, 0.75f, true);
+    }
+}
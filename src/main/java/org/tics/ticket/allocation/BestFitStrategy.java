@@ -0,0 +1,42 @@
+package org.tics.ticket.allocation;
+
+/**
+ * Takes the smallest run of free seats long enough for the request, leaving the long runs to large parties.
+ * An exact fit is taken as soon as it is found; otherwise the best of the first candidate rows is taken.
+ */
+public class BestFitStrategy implements SeatAllocationStrategy {
+
+    public static final int DEFAULT_CANDIDATE_ROWS = 32;
+
+    private final int candidateRows;
+
+    public BestFitStrategy() {
+        this(DEFAULT_CANDIDATE_ROWS);
+    }
+
+    public BestFitStrategy(int candidateRows) {
+        if(candidateRows <= 0)
+            throw new IllegalArgumentException("candidateRows has to be valid non-zero number");
+        this.candidateRows = candidateRows;
+    }
+
+    @Override
+    public long rowScore(int row, int rows, int seatsInRow) {
+        return 0;
+    }
+
+    @Override
+    public int place(int runStart, int runEnd, int numSeats, int seatsInRow) {
+        return runStart;
+    }
+
+    @Override
+    public long placementScore(int start, int runLength, int numSeats, int seatsInRow) {
+        return runLength - numSeats;
+    }
+
+    @Override
+    public int maxCandidateRows() {
+        return candidateRows;
+    }
+}
@@ -0,0 +1,51 @@
+package org.tics.ticket.allocation;
+
+/**
+ * Prefers the seats closest to the stage and to the center of the row.
+ * A placement scores its distance from the center of the row (in half seats) plus the row distance from the stage
+ * times the row weight. Within a free run the seats are placed as close to the center of the row as the run allows.
+ */
+public class CenterWeightedStrategy implements SeatAllocationStrategy {
+
+    public static final int DEFAULT_ROW_WEIGHT = 2;
+    public static final int DEFAULT_CANDIDATE_ROWS = 32;
+
+    private final int rowWeight;
+    private final int candidateRows;
+
+    public CenterWeightedStrategy() {
+        this(DEFAULT_ROW_WEIGHT, DEFAULT_CANDIDATE_ROWS);
+    }
+
+    /**
+     * @param rowWeight the score of one row further from the stage, in half seats off center
+     * @param candidateRows the number of rows able to hold a request compared before the best placement is taken
+     */
+    public CenterWeightedStrategy(int rowWeight, int candidateRows) {
+        if(rowWeight < 0 || candidateRows <= 0)
+            throw new IllegalArgumentException("rowWeight/candidateRows has to be valid number");
+        this.rowWeight = rowWeight;
+        this.candidateRows = candidateRows;
+    }
+
+    @Override
+    public long rowScore(int row, int rows, int seatsInRow) {
+        return (long) row * rowWeight;
+    }
+
+    @Override
+    public int place(int runStart, int runEnd, int numSeats, int seatsInRow) {
+        int centered = (seatsInRow - numSeats) / 2;
+        return Math.max(runStart, Math.min(centered, runEnd - numSeats));
+    }
+
+    @Override
+    public long placementScore(int start, int runLength, int numSeats, int seatsInRow) {
+        return Math.abs(2 * start + numSeats - seatsInRow);
+    }
+
+    @Override
+    public int maxCandidateRows() {
+        return candidateRows;
+    }
+}
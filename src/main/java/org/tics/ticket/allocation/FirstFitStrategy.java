@@ -0,0 +1,27 @@
+package org.tics.ticket.allocation;
+
+/**
+ * Takes the first run of free seats long enough for the request, from the front row and leftmost seat.
+ */
+public class FirstFitStrategy implements SeatAllocationStrategy {
+
+    @Override
+    public long rowScore(int row, int rows, int seatsInRow) {
+        return 0;
+    }
+
+    @Override
+    public int place(int runStart, int runEnd, int numSeats, int seatsInRow) {
+        return runStart;
+    }
+
+    @Override
+    public long placementScore(int start, int runLength, int numSeats, int seatsInRow) {
+        return 0;
+    }
+
+    @Override
+    public int maxCandidateRows() {
+        return 1;
+    }
+}
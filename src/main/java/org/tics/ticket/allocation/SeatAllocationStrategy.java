@@ -0,0 +1,45 @@
+package org.tics.ticket.allocation;
+
+/**
+ * Strategy placing a request for contiguous seats among the free runs of seats of a venue.
+ * <p>
+ * The inventory visits the rows front (row 1, nearest the stage) to back and scores every placement as the row score
+ * plus the placement score, keeping the lowest. The row scores are computed once per venue into a table, so they must
+ * not decrease from front to back: the search stops at the first row whose row score alone cannot beat the best
+ * placement found, at a placement that cannot be improved in its row (placement score of 0) with no better rows
+ * left, or after {@link #maxCandidateRows()} rows able to hold the request.
+ */
+public interface SeatAllocationStrategy {
+
+    /**
+     * @param row the row index, 0 based from the front
+     * @param rows the number of rows of the venue
+     * @param seatsInRow the number of seats in a row
+     * @return the score of the row alone, non decreasing from front to back
+     */
+    long rowScore(int row, int rows, int seatsInRow);
+
+    /**
+     * @param runStart the first seat of the free run, 0 based
+     * @param runEnd the seat after the last seat of the free run
+     * @param numSeats the number of seats requested, at most the run length
+     * @param seatsInRow the number of seats in the row
+     * @return the first seat of the placement within the run
+     */
+    int place(int runStart, int runEnd, int numSeats, int seatsInRow);
+
+    /**
+     * @param start the first seat of the placement, 0 based
+     * @param runLength the length of the free run holding the placement
+     * @param numSeats the number of seats requested
+     * @param seatsInRow the number of seats in the row
+     * @return the score of the placement within its row, lower is better
+     */
+    long placementScore(int start, int runLength, int numSeats, int seatsInRow);
+
+    /**
+     * @return the number of rows able to hold a request that are compared before the best placement is taken
+     */
+    int maxCandidateRows();
+
+}
@@ -0,0 +1,116 @@
+package org.tics.ticket.expiry;
+
+import org.tics.ticket.SeatBlockHold;
+import org.tics.util.TimeSource;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Base expiry engine advancing itself every sweep interval, either on a dedicated daemon thread or on a scheduler
+ * shared with other engines.
+ */
+public abstract class AbstractHoldExpiryEngine implements HoldExpiryEngine {
+
+    private final long sweepInterval;//milliseconds
+    private ScheduledExecutorService scheduler;
+    private ScheduledExecutorService sharedScheduler;
+    private ScheduledFuture<?> sweep;
+    private volatile TimeSource timeSource = new TimeSource();
+    private volatile Consumer<Throwable> errorHandler;
+
+    protected volatile Consumer<List<SeatBlockHold>> expiryHandler = (holds) -> {};
+
+    protected AbstractHoldExpiryEngine(long sweepInterval) {
+        if(sweepInterval <= 0)
+            throw new IllegalArgumentException("sweepInterval has to be valid non-zero number");
+        this.sweepInterval = sweepInterval;
+    }
+
+    public long getSweepInterval() {
+        return sweepInterval;
+    }
+
+    @Override
+    public void setExpiryHandler(Consumer<List<SeatBlockHold>> expiryHandler) {
+        this.expiryHandler = expiryHandler;
+    }
+
+    /**
+     * Advances the engine on the given scheduler instead of a dedicated thread. Takes effect on the next start.
+     *
+     * @param sharedScheduler the scheduler, or null for a dedicated thread
+     */
+    public synchronized void setScheduler(ScheduledExecutorService sharedScheduler) {
+        this.sharedScheduler = sharedScheduler;
+    }
+
+    /**
+     * Sets the clock the engine is advanced to on every sweep (default: the system clock).
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * Sets the handler of the failures of a sweep (default: the uncaught exception handler of the sweeping thread).
+     * The engine keeps sweeping after a failure. The holds of a failed sweep are expired all the same and are not
+     * retried, so the expiry handler has to deal with every hold of the batch before it throws.
+     */
+    public void setErrorHandler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public synchronized void start() {
+        if(sweep != null)
+            return;
+        if(sharedScheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "hold-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        ScheduledExecutorService executor = sharedScheduler != null ? sharedScheduler : scheduler;
+        sweep = executor.scheduleAtFixedRate(() -> {
+            try {
+                advance(timeSource.currentTimeMillis());
+            } catch (RuntimeException e) {
+                //keep the schedule alive; the next sweep retries
+                onError(e);
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if(sweep != null) {
+            sweep.cancel(false);
+            sweep = null;
+        }
+        if(scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void onError(Throwable e) {
+        Consumer<Throwable> handler = errorHandler;
+        if(handler != null) {
+            handler.accept(e);
+        } else {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    protected void fireExpired(List<SeatBlockHold> expired) {
+        if(!expired.isEmpty())
+            expiryHandler.accept(expired);
+    }
+}
@@ -0,0 +1,54 @@
+package org.tics.ticket.expiry;
+
+import org.tics.ticket.SeatBlockHold;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Engine tracking the expiry of seat holds.
+ * Holds are scheduled on creation and cancelled on reservation. Whenever the engine is advanced (by its own
+ * scheduler or manually), the holds that expired are handed over to the expiry handler in a single batch.
+ */
+public interface HoldExpiryEngine {
+
+    /**
+     * Sets the handler receiving the batches of expired holds.
+     *
+     * @param expiryHandler the handler invoked with the holds expired on an advance
+     */
+    void setExpiryHandler(Consumer<List<SeatBlockHold>> expiryHandler);
+
+    /**
+     * Tracks the hold until it expires or is cancelled.
+     *
+     * @param hold the hold to be expired
+     */
+    void schedule(SeatBlockHold hold);
+
+    /**
+     * Stops tracking the hold.
+     *
+     * @param hold the hold to be cancelled
+     * @return true if the hold was cancelled before it expired
+     */
+    boolean cancel(SeatBlockHold hold);
+
+    /**
+     * Expires all the holds due at the given time and passes them to the expiry handler.
+     *
+     * @param nowMillis the current time in epoch milliseconds
+     */
+    void advance(long nowMillis);
+
+    /**
+     * Starts advancing the engine on its own sweep interval.
+     */
+    void start();
+
+    /**
+     * Stops advancing the engine on its own sweep interval.
+     */
+    void stop();
+
+}
@@ -0,0 +1,50 @@
+package org.tics.ticket.expiry;
+
+import org.tics.ticket.SeatBlockHold;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Expiry engine keeping the holds ordered by expiry timestamp (ties broken by hold id) in a skip list.
+ * Scheduling and cancellation are O(log n); expired holds are always at the head of the index.
+ */
+public class SkipListExpiryEngine extends AbstractHoldExpiryEngine {
+
+    private static final Comparator<SeatBlockHold> EXPIRY_ORDER =
+            Comparator.comparingLong(SeatBlockHold::getExpiryMillis).thenComparingInt(SeatBlockHold::getHoldId);
+
+    private final ConcurrentSkipListSet<SeatBlockHold> expiryIndex;
+
+    public SkipListExpiryEngine(long sweepInterval) {
+        super(sweepInterval);
+        this.expiryIndex = new ConcurrentSkipListSet<>(EXPIRY_ORDER);
+    }
+
+    @Override
+    public void schedule(SeatBlockHold hold) {
+        expiryIndex.add(hold);
+    }
+
+    @Override
+    public boolean cancel(SeatBlockHold hold) {
+        return expiryIndex.remove(hold);
+    }
+
+    @Override
+    public void advance(long nowMillis) {
+        List<SeatBlockHold> expired = new ArrayList<>();
+        Iterator<SeatBlockHold> it = expiryIndex.iterator();
+        while(it.hasNext()) {
+            SeatBlockHold hold = it.next();
+            if(hold.getExpiryMillis() >= nowMillis)
+                break;
+            if(expiryIndex.remove(hold))
+                expired.add(hold);
+        }
+        fireExpired(expired);
+    }
+}
@@ -0,0 +1,184 @@
+package org.tics.ticket.expiry;
+
+import org.tics.ticket.SeatBlockHold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Hashed timing wheel expiry engine.
+ * The wheel is an array of buckets, each covering one tick (the sweep interval). A hold lands in the bucket of its
+ * expiry tick along with the number of full wheel rotations left before it is due. Scheduling and cancellation are
+ * O(1): producers only enqueue the entry (or flag it cancelled) and the advancing thread links/unlinks it from its
+ * bucket. A hold is expired at most one tick after its expiry timestamp, independent of the hold period.
+ */
+public class TimingWheelExpiryEngine extends AbstractHoldExpiryEngine {
+
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long tickDuration;
+    private final long startTime;
+    private long tick;
+
+    private final Queue<Entry> pending;
+    private final Queue<Entry> cancelled;
+
+    public TimingWheelExpiryEngine(long sweepInterval) {
+        this(sweepInterval, DEFAULT_WHEEL_SIZE);
+    }
+
+    public TimingWheelExpiryEngine(long sweepInterval, int wheelSize) {
+        this(sweepInterval, wheelSize, System.currentTimeMillis());
+    }
+
+    public TimingWheelExpiryEngine(long sweepInterval, int wheelSize, long startTime) {
+        super(sweepInterval);
+        if(wheelSize <= 0 || Integer.bitCount(wheelSize) != 1)
+            throw new IllegalArgumentException("wheelSize has to be a power of two");
+        this.wheel = new Bucket[wheelSize];
+        for(int i = 0; i < wheelSize; i++)
+            wheel[i] = new Bucket();
+        this.mask = wheelSize - 1;
+        this.tickDuration = sweepInterval;
+        this.startTime = startTime;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public void schedule(SeatBlockHold hold) {
+        Entry entry = new Entry(hold);
+        hold.setExpiryHandle(entry);
+        pending.add(entry);
+    }
+
+    @Override
+    public boolean cancel(SeatBlockHold hold) {
+        Object handle = hold.getExpiryHandle();
+        if(!(handle instanceof Entry))
+            return false;
+        Entry entry = (Entry) handle;
+        if(!entry.transition(Entry.ACTIVE, Entry.CANCELLED))
+            return false;
+        cancelled.add(entry);
+        return true;
+    }
+
+    @Override
+    public void advance(long nowMillis) {
+        List<SeatBlockHold> expired = new ArrayList<>();
+        synchronized (this) {
+            //a tick is processed only once it has fully elapsed so every entry in its bucket is due
+            long lastTick = Math.floorDiv(nowMillis - startTime, tickDuration) - 1;
+            transferPending();
+            removeCancelled();
+            while(tick <= lastTick) {
+                wheel[(int) (tick & mask)].expire(expired);
+                tick++;
+            }
+        }
+        fireExpired(expired);
+    }
+
+    private void transferPending() {
+        Entry entry;
+        while((entry = pending.poll()) != null) {
+            if(entry.state != Entry.ACTIVE)
+                continue;
+            long expiryTick = Math.floorDiv(entry.hold.getExpiryMillis() - startTime, tickDuration);
+            //entries already due go to the current tick
+            long targetTick = Math.max(expiryTick, tick);
+            entry.remainingRounds = (targetTick - tick) / wheel.length;
+            wheel[(int) (targetTick & mask)].add(entry);
+        }
+    }
+
+    private void removeCancelled() {
+        Entry entry;
+        while((entry = cancelled.poll()) != null) {
+            if(entry.bucket != null)
+                entry.bucket.remove(entry);
+        }
+    }
+
+    /**
+     * Wheel entry for a scheduled hold; linked into the bucket of its expiry tick.
+     */
+    static final class Entry {
+        static final int ACTIVE = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Entry> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        final SeatBlockHold hold;
+        volatile int state;
+        long remainingRounds;
+        Bucket bucket;
+        Entry prev;
+        Entry next;
+
+        Entry(SeatBlockHold hold) {
+            this.hold = hold;
+        }
+
+        boolean transition(int from, int to) {
+            return STATE.compareAndSet(this, from, to);
+        }
+    }
+
+    /**
+     * Doubly linked list of the entries hashed to a wheel slot. Only touched by the advancing thread.
+     */
+    static final class Bucket {
+        private Entry head;
+        private Entry tail;
+
+        void add(Entry entry) {
+            entry.bucket = this;
+            if(head == null) {
+                head = tail = entry;
+            } else {
+                tail.next = entry;
+                entry.prev = tail;
+                tail = entry;
+            }
+        }
+
+        void remove(Entry entry) {
+            if(entry.prev != null)
+                entry.prev.next = entry.next;
+            else
+                head = entry.next;
+            if(entry.next != null)
+                entry.next.prev = entry.prev;
+            else
+                tail = entry.prev;
+            entry.prev = entry.next = null;
+            entry.bucket = null;
+        }
+
+        void expire(List<SeatBlockHold> expired) {
+            Entry entry = head;
+            while(entry != null) {
+                Entry next = entry.next;
+                if(entry.state != Entry.ACTIVE) {
+                    remove(entry);
+                } else if(entry.remainingRounds <= 0) {
+                    remove(entry);
+                    if(entry.transition(Entry.ACTIVE, Entry.EXPIRED))
+                        expired.add(entry.hold);
+                } else {
+                    entry.remainingRounds--;
+                }
+                entry = next;
+            }
+        }
+    }
+}
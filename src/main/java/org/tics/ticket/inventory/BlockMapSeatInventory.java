@@ -0,0 +1,205 @@
+package org.tics.ticket.inventory;
+
+import org.tics.ticket.SeatBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seat inventory storing the available seats as a map of block size to seat blocks.
+ * For example a venue layout of 2 X 5, will store the available blocks as 5 : (Row 1, starting col 1), (Row 2, starting col 1).
+ * <p>
+ * The allocation picks the first available block of seats that are adjacent to each other.
+ * If it couldn't find a contiguous block, it tries to split into multiple blocks starting the next lowest number than requested.
+ * If required seats could not be allocated, they would be released. Released blocks are not merged with their neighbours.
+ * Allocation and release take the inventory's monitor, as they move blocks between the lists of the map.
+ * <p>
+ * The map only keeps the block sizes with blocks available, so the next higher block is a single skip list lookup and
+ * the largest block is the last key. A request for more seats than are free is rejected up front on the free seat
+ * count, without touching the map; any other request is bound to be served, split if no block is large enough.
+ */
+public class BlockMapSeatInventory implements SeatInventory {
+
+    private final int rows;
+    private final int seatsInRow;
+    private AtomicInteger freeSeats;
+    //(Map of block size to available seat blocks)
+    private ConcurrentSkipListMap<Integer, List<SeatBlock>> availMap;
+
+    public BlockMapSeatInventory(int rows, int seatsInRow) {
+        this.rows = rows;
+        this.seatsInRow = seatsInRow;
+        this.availMap = new ConcurrentSkipListMap<>();
+        List<SeatBlock> seatBlocks = new CopyOnWriteArrayList<>();
+        for(int i=1;i<=rows;i++) {
+            seatBlocks.add(new SeatBlock(i, 1));
+        }
+        this.availMap.put(seatsInRow, seatBlocks);
+        this.freeSeats = new AtomicInteger(rows * seatsInRow);
+    }
+
+    @Override
+    public int numSeatsAvailable() {
+        return freeSeats.intValue();
+    }
+
+    @Override
+    public synchronized List<SeatBlock> allocate(int numSeats) {
+        if(numSeats <= 0 || freeSeats.get() < numSeats)
+            return null;
+        SeatBlock seatBlock = null;
+        List<SeatBlock> seatBlocks = new ArrayList<>();
+
+        //find seats from available pool.
+        //1. find a block with same size as requested number of seats
+        //2. if not found, chop a slice of next higher block
+        //3. if not found, split requested number of seats into small number of blocks
+        List<SeatBlock> list = availMap.get(numSeats);
+        if(list == null || list.isEmpty()) {
+            //Couldn't find a block size same as requested; searching for next higher seat block
+            Map.Entry<Integer, List<SeatBlock>> seatEntry = null;
+            int k =  numSeats;
+            do {
+                seatEntry = availMap.higherEntry(k++);
+                if(seatEntry == null)
+                    break;
+                list = seatEntry.getValue();
+                if (list != null && !list.isEmpty()) {
+                    SeatBlock removedBlock = takeBlock(seatEntry.getKey(), list);
+                    putBlock(seatEntry.getKey() - numSeats, new SeatBlock(removedBlock.getRow(), removedBlock.getCol() + numSeats));
+                    seatBlock = removedBlock;
+                    seatBlock.setLength(numSeats);
+                    seatBlocks.add(seatBlock);
+                    break;
+                }
+            } while(seatEntry != null);
+            //couldn't find a single contiguous block of seats
+            //split the requested num and find seatBlocks
+            if(seatEntry == null) {
+                int numRem = numSeats;
+                k = numRem;
+                do {
+                    seatEntry = availMap.lowerEntry(k--);
+                    if(seatEntry == null)
+                        break;
+                    list = seatEntry.getValue();
+                    if (list != null) {
+                        while(!list.isEmpty() && numRem > 0) {
+                            SeatBlock removedBlock = takeBlock(seatEntry.getKey(), list);
+                            if(numRem < seatEntry.getKey()) {
+                                //take a slice of the block and return the remainder to the pool
+                                putBlock(seatEntry.getKey() - numRem, new SeatBlock(removedBlock.getRow(), removedBlock.getCol() + numRem));
+                                seatBlock = removedBlock;
+                                seatBlock.setLength(numRem);
+                                seatBlocks.add(seatBlock);
+                                numRem = 0;
+                            } else {
+                                removedBlock.setLength(seatEntry.getKey());
+                                seatBlocks.add(removedBlock);
+                                numRem -= seatEntry.getKey();
+                            }
+                        }
+                    }
+                } while(seatEntry != null && numRem > 0);
+            }
+        } else {
+            seatBlock = takeBlock(numSeats, list);
+            seatBlock.setLength(numSeats);
+            seatBlocks.add(seatBlock);
+        }
+
+        int k = 0;
+        for(SeatBlock tmpSeatBlock : seatBlocks) {
+            k += tmpSeatBlock.getLength();
+        }
+        //if we could not find requested number of seats, release them to availability pool
+        if(k != numSeats) {
+            for(SeatBlock seatBlockInternal : seatBlocks) {
+                putBlock(seatBlockInternal.getLength(), new SeatBlock(seatBlockInternal.getRow(), seatBlockInternal.getCol()));
+            }
+            return null;
+        }
+        freeSeats.updateAndGet((x) -> x - numSeats);
+        return seatBlocks;
+    }
+
+    /**
+     * Allocates the batch within a single hold of the inventory monitor.
+     */
+    @Override
+    public synchronized List<List<SeatBlock>> allocateAll(int[] numSeats) {
+        List<List<SeatBlock>> allocations = new ArrayList<>(numSeats.length);
+        for(int seats : numSeats) {
+            allocations.add(allocate(seats));
+        }
+        return allocations;
+    }
+
+    @Override
+    public synchronized void release(List<SeatBlock> seatBlocks) {
+        for(SeatBlock seatBlock : seatBlocks) {
+            putBlock(seatBlock.getLength(), new SeatBlock(seatBlock.getRow(), seatBlock.getCol()));
+            freeSeats.updateAndGet((x) -> x + seatBlock.getLength());
+        }
+    }
+
+    /**
+     * Claims the seats by rebuilding the block map from the free runs left once the seats are taken out.
+     * Meant for bulk claims such as recovery, not for the hot path.
+     */
+    @Override
+    public synchronized void claim(List<SeatBlock> seatBlocks) {
+        RowBitmap[] free = new RowBitmap[rows];
+        for(int i = 0; i < rows; i++) {
+            free[i] = new RowBitmap(seatsInRow);
+            free[i].clear(0, seatsInRow);
+        }
+        for(Map.Entry<Integer, List<SeatBlock>> entry : availMap.entrySet()) {
+            for(SeatBlock seatBlock : entry.getValue()) {
+                free[seatBlock.getRow() - 1].set(seatBlock.getCol() - 1, seatBlock.getCol() - 1 + entry.getKey());
+            }
+        }
+        for(SeatBlock seatBlock : seatBlocks) {
+            free[seatBlock.getRow() - 1].clear(seatBlock.getCol() - 1, seatBlock.getCol() - 1 + seatBlock.getLength());
+        }
+        availMap.clear();
+        int freeCount = 0;
+        for(int i = 0; i < rows; i++) {
+            RowBitmap row = free[i];
+            int start = row.nextFree(0);
+            while(start >= 0) {
+                int end = row.nextTaken(start);
+                putBlock(end - start, new SeatBlock(i + 1, start + 1));
+                start = row.nextFree(end);
+            }
+            freeCount += row.freeCount();
+        }
+        freeSeats.set(freeCount);
+    }
+
+    /**
+     * Largest block in the map; as blocks are not merged, adjacent free blocks count separately.
+     */
+    @Override
+    public int largestFreeRun() {
+        Map.Entry<Integer, List<SeatBlock>> largest = availMap.lastEntry();
+        return largest != null ? largest.getKey() : 0;
+    }
+
+    //removes the first block of the list, and the list from the map once empty
+    private SeatBlock takeBlock(int length, List<SeatBlock> list) {
+        SeatBlock seatBlock = list.remove(0);
+        if(list.isEmpty())
+            availMap.remove(length);
+        return seatBlock;
+    }
+
+    private void putBlock(int length, SeatBlock seatBlock) {
+        availMap.putIfAbsent(length, new CopyOnWriteArrayList<>());
+        availMap.get(length).add(seatBlock);
+    }
+}
@@ -0,0 +1,94 @@
+package org.tics.ticket.inventory;
+
+/**
+ * Segment tree over the longest free run of each row of a block of rows. It gives the longest run of the block in
+ * constant time and the first row, at or after a given one, with a run of at least n seats in O(log rows), so
+ * requests that no row can hold contiguously are turned away without visiting the rows. Not thread safe.
+ */
+public class FreeRunIndex {
+
+    private final int rows;
+    //leaves from size on; padding leaves hold 0
+    private final int size;
+    private final int[] maxRun;
+
+    /**
+     * Creates the index of rows that are all free.
+     *
+     * @param rows       the number of rows
+     * @param seatsInRow the longest run of every row
+     */
+    public FreeRunIndex(int rows, int seatsInRow) {
+        int size = 1;
+        while(size < rows)
+            size <<= 1;
+        this.rows = rows;
+        this.size = size;
+        this.maxRun = new int[2 * size];
+        for(int i = 0; i < rows; i++) {
+            maxRun[size + i] = seatsInRow;
+        }
+        for(int i = size - 1; i > 0; i--) {
+            maxRun[i] = Math.max(maxRun[2 * i], maxRun[2 * i + 1]);
+        }
+    }
+
+    /**
+     * @param row        the row index, 0 based
+     * @param largestRun the new longest run of free seats of the row
+     */
+    public void update(int row, int largestRun) {
+        int i = size + row;
+        if(maxRun[i] == largestRun)
+            return;
+        maxRun[i] = largestRun;
+        for(i >>= 1; i > 0; i >>= 1) {
+            int max = Math.max(maxRun[2 * i], maxRun[2 * i + 1]);
+            if(maxRun[i] == max)
+                break;
+            maxRun[i] = max;
+        }
+    }
+
+    /**
+     * @return the longest run of free seats of all the rows
+     */
+    public int largestRun() {
+        return maxRun[1];
+    }
+
+    /**
+     * @param row the row index, 0 based
+     * @return the longest run of free seats of the row
+     */
+    public int largestRun(int row) {
+        return maxRun[size + row];
+    }
+
+    /**
+     * @param fromRow the row index to start searching at
+     * @param minRun  the number of adjacent free seats required, at least 1
+     * @return the index of the first row at or after fromRow with a run of free seats that long, or -1 if none
+     */
+    public int nextRow(int fromRow, int minRun) {
+        if(fromRow >= rows || maxRun[1] < minRun)
+            return -1;
+        int i = size + fromRow;
+        //move right to the next subtree until one holds a long enough run
+        while(maxRun[i] < minRun) {
+            while((i & 1) == 1) {
+                i >>= 1;
+                if(i == 0)
+                    return -1;
+            }
+            i++;
+        }
+        //then down to its first row that does
+        while(i < size) {
+            i <<= 1;
+            if(maxRun[i] < minRun)
+                i++;
+        }
+        return i - size;
+    }
+}
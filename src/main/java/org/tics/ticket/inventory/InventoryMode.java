@@ -0,0 +1,13 @@
+package org.tics.ticket.inventory;
+
+/**
+ * Selectable seat inventory implementations.
+ */
+public enum InventoryMode {
+    /** Map of block size to available seat blocks ({@link BlockMapSeatInventory}). */
+    BLOCK_MAP,
+    /** Per row bitsets of free seats coalescing released seats ({@link RowBitmapSeatInventory}). */
+    ROW_BITMAP,
+    /** Row bitsets partitioned into row stripes with a lock each, for concurrent allocation ({@link RowBitmapSeatInventory}). */
+    STRIPED_ROW_BITMAP
+}
@@ -0,0 +1,144 @@
+package org.tics.ticket.inventory;
+
+/**
+ * Bitset of the free seats of a row, backed by 64 bit words. Bit i is set when seat i (0 based) is free.
+ * Runs of free seats are located a word at a time with trailing zero counts, and freeing seats next to a free run
+ * merges them with it by construction. Not thread safe.
+ */
+public class RowBitmap {
+
+    private static final int WORD_BITS = 64;
+    private static final long ALL_ONES = -1L;
+
+    private final long[] words;
+    private final int length;
+    private int freeCount;
+
+    /**
+     * Creates a row with all its seats free.
+     *
+     * @param length the number of seats in the row
+     */
+    public RowBitmap(int length) {
+        this.length = length;
+        this.words = new long[(length + WORD_BITS - 1) / WORD_BITS];
+        set(0, length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int freeCount() {
+        return freeCount;
+    }
+
+    public boolean isFree(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @param from the index to start searching at
+     * @return the index of the first free seat at or after from, or -1 if none
+     */
+    public int nextFree(int from) {
+        if(from >= length)
+            return -1;
+        int u = from >>> 6;
+        long word = words[u] & (ALL_ONES << from);
+        while(true) {
+            if(word != 0)
+                return u * WORD_BITS + Long.numberOfTrailingZeros(word);
+            if(++u == words.length)
+                return -1;
+            word = words[u];
+        }
+    }
+
+    /**
+     * @param from the index to start searching at
+     * @return the index of the first taken seat at or after from, or the row length if none
+     */
+    public int nextTaken(int from) {
+        if(from >= length)
+            return length;
+        int u = from >>> 6;
+        long word = ~words[u] & (ALL_ONES << from);
+        while(true) {
+            if(word != 0)
+                return Math.min(length, u * WORD_BITS + Long.numberOfTrailingZeros(word));
+            if(++u == words.length)
+                return length;
+            word = ~words[u];
+        }
+    }
+
+    /**
+     * Finds the first run of free seats long enough to hold the requested seats.
+     *
+     * @param numSeats the number of adjacent seats required
+     * @return the start index of the run, or -1 if none
+     */
+    public int findRun(int numSeats) {
+        if(numSeats > freeCount)
+            return -1;
+        int start = nextFree(0);
+        while(start >= 0 && length - start >= numSeats) {
+            int end = nextTaken(start);
+            if(end - start >= numSeats)
+                return start;
+            start = nextFree(end);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the length of the longest run of free seats
+     */
+    public int largestRun() {
+        int largest = 0;
+        int start = nextFree(0);
+        while(start >= 0 && length - start > largest) {
+            int end = nextTaken(start);
+            largest = Math.max(largest, end - start);
+            start = nextFree(end);
+        }
+        return largest;
+    }
+
+    /**
+     * Marks the seats [from, to) free.
+     */
+    public void set(int from, int to) {
+        freeCount += update(from, to, true);
+    }
+
+    /**
+     * Marks the seats [from, to) taken.
+     */
+    public void clear(int from, int to) {
+        freeCount -= update(from, to, false);
+    }
+
+    //returns the number of bits flipped
+    private int update(int from, int to, boolean free) {
+        if(from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException("seats [" + from + ", " + to + ") out of row of " + length);
+        int flipped = 0;
+        if(from == to)
+            return flipped;
+        int startWord = from >>> 6;
+        int endWord = (to - 1) >>> 6;
+        for(int u = startWord; u <= endWord; u++) {
+            long mask = ALL_ONES;
+            if(u == startWord)
+                mask &= ALL_ONES << from;
+            if(u == endWord)
+                mask &= ALL_ONES >>> -to;
+            long before = words[u];
+            words[u] = free ? before | mask : before & ~mask;
+            flipped += Long.bitCount(before ^ words[u]);
+        }
+        return flipped;
+    }
+}
@@ -0,0 +1,307 @@
+package org.tics.ticket.inventory;
+
+import org.tics.ticket.SeatBlock;
+import org.tics.ticket.allocation.FirstFitStrategy;
+import org.tics.ticket.allocation.SeatAllocationStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Seat inventory keeping a {@link RowBitmap} of free seats per row.
+ * The allocation places the request in a run of free seats long enough for it. If no row has one,
+ * the request is split across the first free runs in row order. Released seats coalesce with their free neighbours,
+ * so churn of holds never fragments a row that is physically empty.
+ * <p>
+ * The rows are partitioned into stripes of adjacent rows, each guarded by its own lock. Requests first try the stripes
+ * in row order without blocking, skipping the ones held by other requests, so concurrent requests landing in different
+ * stripes proceed in parallel. The seats of a request are counted off the free seat counter before any stripe is
+ * searched, which makes rejection lock free and guarantees that the seats counted off can always be found.
+ * <p>
+ * Each stripe indexes the longest free run of its rows in a {@link FreeRunIndex}. A stripe whose longest run is too
+ * short for a request is skipped without taking its lock, and within a stripe the search jumps from one row able to
+ * hold the request to the next in O(log rows), so a request no row can hold contiguously goes straight to the split
+ * and the sold out rows are never scanned.
+ * <p>
+ * Contiguous seats are placed by a {@link SeatAllocationStrategy} (default: first fit) using a row score table
+ * computed once for the venue. With several stripes, the best placement is chosen within the first stripe, in row
+ * order, able to hold the request.
+ */
+public class RowBitmapSeatInventory implements SeatInventory {
+
+    //requests of a batch allocated under one acquisition of the stripe locks
+    public static final int LOCKED_CHUNK = 16;
+
+    private final RowBitmap[] rows;
+    private final int seatsInRow;
+    private final SeatAllocationStrategy strategy;
+    private final long[] rowScores;
+    private final Stripe[] stripes;
+    private final AtomicInteger freeSeats;
+
+    public RowBitmapSeatInventory(int rows, int seatsInRow) {
+        this(rows, seatsInRow, 1);
+    }
+
+    public RowBitmapSeatInventory(int rows, int seatsInRow, int stripeCount) {
+        this(rows, seatsInRow, stripeCount, new FirstFitStrategy());
+    }
+
+    public RowBitmapSeatInventory(int rows, int seatsInRow, int stripeCount, SeatAllocationStrategy strategy) {
+        if(stripeCount <= 0)
+            throw new IllegalArgumentException("stripeCount has to be valid non-zero number");
+        this.rows = new RowBitmap[rows];
+        this.rowScores = new long[rows];
+        for(int i = 0; i < rows; i++) {
+            this.rows[i] = new RowBitmap(seatsInRow);
+            this.rowScores[i] = strategy.rowScore(i, rows, seatsInRow);
+        }
+        this.seatsInRow = seatsInRow;
+        this.strategy = strategy;
+        stripeCount = Math.min(stripeCount, rows);
+        this.stripes = new Stripe[stripeCount];
+        for(int i = 0; i < stripeCount; i++) {
+            int firstRow = (int) ((long) i * rows / stripeCount);
+            int lastRow = (int) ((long) (i + 1) * rows / stripeCount);
+            this.stripes[i] = new Stripe(firstRow, lastRow, (lastRow - firstRow) * seatsInRow);
+        }
+        this.freeSeats = new AtomicInteger(rows * seatsInRow);
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    @Override
+    public int numSeatsAvailable() {
+        return freeSeats.get();
+    }
+
+    @Override
+    public List<SeatBlock> allocate(int numSeats) {
+        if(numSeats <= 0 || !countOff(numSeats))
+            return null;
+        List<SeatBlock> seatBlocks = new ArrayList<>();
+        //1. first row with a contiguous run of free seats; busy stripes are skipped then retried
+        boolean[] skipped = new boolean[stripes.length];
+        for(int pass = 0; pass < 2; pass++) {
+            for(int s = 0; s < stripes.length; s++) {
+                Stripe stripe = stripes[s];
+                if(stripe.largestRun < numSeats || (pass == 1 && !skipped[s]))
+                    continue;
+                if(pass == 0 && !stripe.lock.tryLock()) {
+                    skipped[s] = true;
+                    continue;
+                }
+                if(pass == 1)
+                    stripe.lock.lock();
+                try {
+                    SeatBlock seatBlock = stripe.takeRun(numSeats);
+                    if(seatBlock != null) {
+                        seatBlocks.add(seatBlock);
+                        return seatBlocks;
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+        }
+        //2. split over the free runs in row order; the seats counted off are bound to be free
+        int numRem = numSeats;
+        while(numRem > 0) {
+            for(int s = 0; s < stripes.length && numRem > 0; s++) {
+                Stripe stripe = stripes[s];
+                if(stripe.freeCount == 0)
+                    continue;
+                stripe.lock.lock();
+                try {
+                    numRem = stripe.takeAny(numRem, seatBlocks);
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+        }
+        return seatBlocks;
+    }
+
+    /**
+     * Allocates the batch in chunks of up to {@link #LOCKED_CHUNK} requests, holding every stripe lock for a chunk,
+     * so the locks are taken once per chunk instead of once per request. The locks are let go between chunks, so the
+     * releases and single requests waiting on a stripe are held up by one chunk at most.
+     */
+    @Override
+    public List<List<SeatBlock>> allocateAll(int[] numSeats) {
+        List<List<SeatBlock>> allocations = new ArrayList<>(numSeats.length);
+        for(int from = 0; from < numSeats.length; from += LOCKED_CHUNK) {
+            int to = Math.min(numSeats.length, from + LOCKED_CHUNK);
+            //stripes are always locked in ascending order
+            for(Stripe stripe : stripes)
+                stripe.lock.lock();
+            try {
+                for(int i = from; i < to; i++) {
+                    allocations.add(allocate(numSeats[i]));
+                }
+            } finally {
+                for(int s = stripes.length - 1; s >= 0; s--)
+                    stripes[s].lock.unlock();
+            }
+        }
+        return allocations;
+    }
+
+    @Override
+    public void release(List<SeatBlock> seatBlocks) {
+        int released = 0;
+        for(SeatBlock seatBlock : seatBlocks) {
+            Stripe stripe = stripeOf(seatBlock.getRow() - 1);
+            stripe.lock.lock();
+            try {
+                stripe.free(seatBlock.getRow() - 1, seatBlock.getCol() - 1, seatBlock.getLength());
+            } finally {
+                stripe.lock.unlock();
+            }
+            released += seatBlock.getLength();
+        }
+        freeSeats.addAndGet(released);
+    }
+
+    @Override
+    public void claim(List<SeatBlock> seatBlocks) {
+        int claimed = 0;
+        for(SeatBlock seatBlock : seatBlocks) {
+            Stripe stripe = stripeOf(seatBlock.getRow() - 1);
+            stripe.lock.lock();
+            try {
+                stripe.take(seatBlock.getRow() - 1, seatBlock.getCol() - 1, seatBlock.getLength());
+            } finally {
+                stripe.lock.unlock();
+            }
+            claimed += seatBlock.getLength();
+        }
+        freeSeats.addAndGet(-claimed);
+    }
+
+    @Override
+    public int largestFreeRun() {
+        int largest = 0;
+        for(Stripe stripe : stripes) {
+            largest = Math.max(largest, stripe.largestRun);
+        }
+        return largest;
+    }
+
+    private boolean countOff(int numSeats) {
+        int free;
+        do {
+            free = freeSeats.get();
+            if(free < numSeats)
+                return false;
+        } while(!freeSeats.compareAndSet(free, free - numSeats));
+        return true;
+    }
+
+    private Stripe stripeOf(int rowIndex) {
+        //stripes are balanced, so the guess is off by at most one stripe
+        int s = (int) ((long) rowIndex * stripes.length / rows.length);
+        while(rowIndex < stripes[s].firstRow)
+            s--;
+        while(rowIndex >= stripes[s].lastRow)
+            s++;
+        return stripes[s];
+    }
+
+    /**
+     * Group of adjacent rows sharing a lock. The free count and the longest free run are written under the lock and
+     * read without it to skip stripes that cannot serve a request.
+     */
+    private final class Stripe {
+        final int firstRow;
+        final int lastRow;
+        final ReentrantLock lock;
+        final FreeRunIndex runIndex;
+        volatile int freeCount;
+        volatile int largestRun;
+
+        Stripe(int firstRow, int lastRow, int freeCount) {
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.lock = new ReentrantLock();
+            this.runIndex = new FreeRunIndex(lastRow - firstRow, seatsInRow);
+            this.freeCount = freeCount;
+            this.largestRun = lastRow > firstRow ? seatsInRow : 0;
+        }
+
+        //first row at or after rowIndex with a free run of minRun seats, or -1
+        int nextRow(int rowIndex, int minRun) {
+            int row = runIndex.nextRow(rowIndex - firstRow, minRun);
+            return row >= 0 ? firstRow + row : -1;
+        }
+
+        SeatBlock takeRun(int numSeats) {
+            long bestScore = Long.MAX_VALUE;
+            int bestRow = -1;
+            int bestStart = -1;
+            int candidateRows = 0;
+            //only the rows able to hold the request are visited
+            for(int i = nextRow(firstRow, numSeats); i >= 0 && rowScores[i] < bestScore; i = nextRow(i + 1, numSeats)) {
+                RowBitmap row = rows[i];
+                int runStart = row.nextFree(0);
+                while(runStart >= 0 && seatsInRow - runStart >= numSeats) {
+                    int runEnd = row.nextTaken(runStart);
+                    if(runEnd - runStart >= numSeats) {
+                        int start = strategy.place(runStart, runEnd, numSeats, seatsInRow);
+                        long placementScore = strategy.placementScore(start, runEnd - runStart, numSeats, seatsInRow);
+                        if(rowScores[i] + placementScore < bestScore) {
+                            bestScore = rowScores[i] + placementScore;
+                            bestRow = i;
+                            bestStart = start;
+                        }
+                        if(placementScore == 0)
+                            break;
+                    }
+                    runStart = row.nextFree(runEnd);
+                }
+                if(++candidateRows >= strategy.maxCandidateRows())
+                    break;
+            }
+            return bestRow >= 0 ? take(bestRow, bestStart, numSeats) : null;
+        }
+
+        //returns the number of seats still to be found
+        int takeAny(int numRem, List<SeatBlock> seatBlocks) {
+            for(int i = nextRow(firstRow, 1); i >= 0 && numRem > 0; i = nextRow(i + 1, 1)) {
+                RowBitmap row = rows[i];
+                int start = row.nextFree(0);
+                while(start >= 0 && numRem > 0) {
+                    int runLength = Math.min(numRem, row.nextTaken(start) - start);
+                    seatBlocks.add(take(i, start, runLength));
+                    numRem -= runLength;
+                    start = row.nextFree(start + runLength);
+                }
+            }
+            return numRem;
+        }
+
+        SeatBlock take(int rowIndex, int start, int length) {
+            rows[rowIndex].clear(start, start + length);
+            freeCount -= length;
+            updateRun(rowIndex);
+            SeatBlock seatBlock = new SeatBlock(rowIndex + 1, start + 1);
+            seatBlock.setLength(length);
+            return seatBlock;
+        }
+
+        void free(int rowIndex, int start, int length) {
+            rows[rowIndex].set(start, start + length);
+            freeCount += length;
+            updateRun(rowIndex);
+        }
+
+        private void updateRun(int rowIndex) {
+            runIndex.update(rowIndex - firstRow, rows[rowIndex].largestRun());
+            largestRun = runIndex.largestRun();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.tics.ticket.inventory;
+
+import org.tics.ticket.SeatBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pool of the available seats of a venue.
+ */
+public interface SeatInventory {
+
+    /**
+     * @return the number of seats currently available
+     */
+    int numSeatsAvailable();
+
+    /**
+     * Takes the requested number of seats out of the pool, as one contiguous block when possible.
+     *
+     * @param numSeats the number of seats to allocate
+     * @return the allocated seat blocks, or null if the seats could not be allocated (the pool is left unchanged)
+     */
+    List<SeatBlock> allocate(int numSeats);
+
+    /**
+     * Takes the requested number of seats out of a zone of the venue, a section or a tier, searching that zone only.
+     * Only supported by the inventories of a sectioned venue ({@link SectionedSeatInventory}).
+     *
+     * @param numSeats the number of seats to allocate
+     * @param zone     the section or tier name
+     * @return the allocated seat blocks, or null if the seats could not be allocated in the zone
+     */
+    default List<SeatBlock> allocate(int numSeats, String zone) {
+        throw new IllegalArgumentException("zone " + zone + " is not in the venue");
+    }
+
+    /**
+     * @param zone the section or tier name
+     * @return the number of seats currently available in the zone
+     */
+    default int numSeatsAvailable(String zone) {
+        throw new IllegalArgumentException("zone " + zone + " is not in the venue");
+    }
+
+    /**
+     * Allocates a batch of requests in one pass over the pool. Each request succeeds or fails on its own, as if
+     * allocated one after the other.
+     *
+     * @param numSeats the number of seats of each request
+     * @return the allocated seat blocks per request, null for the requests that could not be allocated
+     */
+    default List<List<SeatBlock>> allocateAll(int[] numSeats) {
+        List<List<SeatBlock>> allocations = new ArrayList<>(numSeats.length);
+        for(int seats : numSeats) {
+            allocations.add(allocate(seats));
+        }
+        return allocations;
+    }
+
+    /**
+     * Returns previously allocated seat blocks to the pool.
+     *
+     * @param seatBlocks the seat blocks to release
+     */
+    void release(List<SeatBlock> seatBlocks);
+
+    /**
+     * Takes the given seats out of the pool, e.g. to restore the holds and reservations recovered on restart.
+     *
+     * @param seatBlocks the seat blocks to take, expected to be available
+     */
+    void claim(List<SeatBlock> seatBlocks);
+
+    /**
+     * @return the length of the longest block of adjacent free seats the inventory can allocate at once
+     */
+    int largestFreeRun();
+
+}
@@ -0,0 +1,179 @@
+package org.tics.ticket.inventory;
+
+import org.tics.ticket.SeatBlock;
+import org.tics.ticket.venue.Section;
+import org.tics.ticket.venue.VenueLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Seat inventory of a venue made of sections, keeping a separate inventory per section.
+ * <p>
+ * Each section inventory covers the section's rows only, as wide as its longest row, with the seats past the end of
+ * the shorter rows and the blocked seats claimed up front. The section inventories number their rows from 1; the
+ * seat blocks going in and out of this inventory carry venue rows, translated on the way.
+ * <p>
+ * A request is placed within a single section, trying the sections of the zone it targets (the whole venue by
+ * default) in layout order, and skipping without locking the ones with too few seats left. The sections share no
+ * lock, so requests landing in different sections allocate in parallel, and a request for a section or tier never
+ * searches the rest of the venue.
+ */
+public class SectionedSeatInventory implements SeatInventory {
+
+    private final VenueLayout layout;
+    private final SeatInventory[] sections;
+
+    /**
+     * @param layout    the venue layout
+     * @param inventory creates the empty inventory of a section, sized to its rows and longest row
+     */
+    public SectionedSeatInventory(VenueLayout layout, Function<Section, SeatInventory> inventory) {
+        this.layout = layout;
+        this.sections = new SeatInventory[layout.getSections().size()];
+        for(Section section : layout.getSections()) {
+            SeatInventory sectionInventory = inventory.apply(section);
+            if(!section.getBlockedSeats().isEmpty())
+                sectionInventory.claim(section.getBlockedSeats());
+            sections[section.getIndex()] = sectionInventory;
+        }
+    }
+
+    public VenueLayout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public int numSeatsAvailable() {
+        int available = 0;
+        for(SeatInventory section : sections) {
+            available += section.numSeatsAvailable();
+        }
+        return available;
+    }
+
+    @Override
+    public int numSeatsAvailable(String zone) {
+        int available = 0;
+        for(Section section : layout.getZone(zone)) {
+            available += sections[section.getIndex()].numSeatsAvailable();
+        }
+        return available;
+    }
+
+    @Override
+    public List<SeatBlock> allocate(int numSeats) {
+        return allocate(numSeats, layout.getSections());
+    }
+
+    @Override
+    public List<SeatBlock> allocate(int numSeats, String zone) {
+        return allocate(numSeats, layout.getZone(zone));
+    }
+
+    private List<SeatBlock> allocate(int numSeats, List<Section> zone) {
+        if(numSeats <= 0)
+            return null;
+        for(Section section : zone) {
+            SeatInventory inventory = sections[section.getIndex()];
+            if(inventory.numSeatsAvailable() < numSeats)
+                continue;
+            List<SeatBlock> seatBlocks = inventory.allocate(numSeats);
+            if(seatBlocks != null)
+                return translate(seatBlocks, section.getFirstRow() - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Allocates the batch section by section, in layout order: each section inventory gets the requests the sections
+     * before it could not place as one batch. As the sections share no seats, every request ends up where it would
+     * have been placed on its own.
+     */
+    @Override
+    public List<List<SeatBlock>> allocateAll(int[] numSeats) {
+        List<List<SeatBlock>> allocations = new ArrayList<>(numSeats.length);
+        int[] pending = new int[numSeats.length];
+        int pendingCount = 0;
+        for(int i = 0; i < numSeats.length; i++) {
+            allocations.add(null);
+            if(numSeats[i] > 0)
+                pending[pendingCount++] = i;
+        }
+        for(Section section : layout.getSections()) {
+            if(pendingCount == 0)
+                break;
+            SeatInventory inventory = sections[section.getIndex()];
+            int[] batch = new int[pendingCount];
+            for(int i = 0; i < pendingCount; i++) {
+                batch[i] = numSeats[pending[i]];
+            }
+            List<List<SeatBlock>> placed = inventory.allocateAll(batch);
+            int left = 0;
+            for(int i = 0; i < pendingCount; i++) {
+                if(placed.get(i) != null)
+                    allocations.set(pending[i], translate(placed.get(i), section.getFirstRow() - 1));
+                else
+                    pending[left++] = pending[i];
+            }
+            pendingCount = left;
+        }
+        return allocations;
+    }
+
+    @Override
+    public void release(List<SeatBlock> seatBlocks) {
+        forEachSection(seatBlocks, SeatInventory::release);
+    }
+
+    @Override
+    public void claim(List<SeatBlock> seatBlocks) {
+        forEachSection(seatBlocks, SeatInventory::claim);
+    }
+
+    @Override
+    public int largestFreeRun() {
+        int largest = 0;
+        for(SeatInventory section : sections) {
+            largest = Math.max(largest, section.largestFreeRun());
+        }
+        return largest;
+    }
+
+    //hands the blocks of each section to its inventory, in section rows
+    private void forEachSection(List<SeatBlock> seatBlocks, BiConsumer<SeatInventory, List<SeatBlock>> action) {
+        List<List<SeatBlock>> bySection = new ArrayList<>(sections.length);
+        for(int i = 0; i < sections.length; i++) {
+            bySection.add(null);
+        }
+        for(SeatBlock seatBlock : seatBlocks) {
+            Section section = layout.getSectionOfRow(seatBlock.getRow());
+            List<SeatBlock> blocks = bySection.get(section.getIndex());
+            if(blocks == null) {
+                blocks = new ArrayList<>();
+                bySection.set(section.getIndex(), blocks);
+            }
+            blocks.add(translate(seatBlock, 1 - section.getFirstRow()));
+        }
+        for(int i = 0; i < sections.length; i++) {
+            if(bySection.get(i) != null)
+                action.accept(sections[i], bySection.get(i));
+        }
+    }
+
+    private static List<SeatBlock> translate(List<SeatBlock> seatBlocks, int rowOffset) {
+        List<SeatBlock> translated = new ArrayList<>(seatBlocks.size());
+        for(SeatBlock seatBlock : seatBlocks) {
+            translated.add(translate(seatBlock, rowOffset));
+        }
+        return translated;
+    }
+
+    private static SeatBlock translate(SeatBlock seatBlock, int rowOffset) {
+        SeatBlock translated = new SeatBlock(seatBlock.getRow() + rowOffset, seatBlock.getCol());
+        translated.setLength(seatBlock.getLength());
+        return translated;
+    }
+}
@@ -0,0 +1,624 @@
+package org.tics.ticket.journal;
+
+import org.tics.ticket.SeatBlock;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append only binary journal of the hold, reserve, expire, extend and release events.
+ * <p>
+ * Events are framed as (length, crc32, payload) records and buffered in memory on append. The buffer is written to
+ * the current segment file and forced to disk by group commit: the first caller waiting for durability writes and
+ * forces everything appended so far on behalf of all the waiting callers, and a background flusher does the same
+ * every commit interval for the events nobody waits for. A single fsync thus covers every event of the interval.
+ * <p>
+ * Every snapshot interval events, the journal rolls over to a new segment and writes a snapshot of the state as of
+ * the roll over, then deletes the older segments and snapshots. Recovery loads the latest snapshot and replays the
+ * segments written after it, stopping at the first torn or corrupt record.
+ * <p>
+ * A failure to write or force the journal fails it for good: the events not yet on disk are lost, so every caller
+ * waiting for them, and every later one, gets the failure instead of a durability it cannot have. Appends go on
+ * without being buffered. A failed background commit or roll over fails the journal the same way and is handed to
+ * the error handler. A snapshot that cannot be written or cleaned up after a roll over only goes to the error handler:
+ * the journal stays live, and recovery falls back on the previous snapshot and the segments after it.
+ */
+public class HoldJournal implements Closeable {
+
+    static final byte HOLD = 1;
+    static final byte RESERVE = 2;
+    static final byte EXPIRE = 3;
+    static final byte EXTEND = 4;
+    static final byte RELEASE = 5;
+
+    private static final int SNAPSHOT_MAGIC = 0x54494353;//TICS
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+    private final long snapshotInterval;
+    private final JournalState state;
+    private final JournalState recoveredState;
+
+    private final ReentrantLock lock;
+    private final Condition flushed;
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean flushing;
+    private long eventsSinceSnapshot;
+
+    private FileChannel channel;
+    private long segment;
+    private ScheduledExecutorService flusher;
+    private volatile boolean closed;
+    //the write failure the journal failed with, if any
+    private volatile UncheckedIOException failure;
+    private volatile Consumer<Throwable> errorHandler;
+
+    private HoldJournal(Path directory, long snapshotInterval, JournalState state, long segment) {
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        this.state = state;
+        this.recoveredState = state.copy();
+        this.segment = segment;
+        this.lock = new ReentrantLock();
+        this.flushed = lock.newCondition();
+        this.pending = ByteBuffer.allocate(64 * 1024);
+        this.spare = ByteBuffer.allocate(64 * 1024);
+    }
+
+    /**
+     * Opens the journal in the directory, recovering the state journaled by a previous run if any.
+     * The recovered state is compacted into a fresh snapshot before new events are journaled.
+     *
+     * @param directory the journal directory, created if missing
+     * @param commitInterval the interval at which appended events are forced to disk, in milliseconds
+     * @param snapshotInterval the number of events after which a snapshot is taken
+     * @return the journal, ready for appends
+     */
+    public static HoldJournal open(Path directory, long commitInterval, long snapshotInterval) throws IOException {
+        if(commitInterval <= 0 || snapshotInterval <= 0)
+            throw new IllegalArgumentException("commitInterval/snapshotInterval has to be valid non-zero number");
+        Files.createDirectories(directory);
+        JournalState state = new JournalState();
+        long snapshotSegment = latestSnapshot(directory);
+        if(snapshotSegment >= 0)
+            readSnapshot(snapshotFile(directory, snapshotSegment), state);
+        long lastSegment = snapshotSegment;
+        for(long segment : segments(directory)) {
+            if(segment >= Math.max(snapshotSegment, 0)) {
+                replaySegment(segmentFile(directory, segment), state);
+                lastSegment = Math.max(lastSegment, segment);
+            }
+        }
+        HoldJournal journal = new HoldJournal(directory, snapshotInterval, state, lastSegment + 1);
+        journal.writeSnapshot(journal.segment, state);
+        journal.channel = openSegment(directory, journal.segment);
+        journal.deleteBefore(journal.segment);
+        journal.startFlusher(commitInterval);
+        return journal;
+    }
+
+    /**
+     * @return the state recovered when the journal was opened
+     */
+    public JournalState getRecoveredState() {
+        return recoveredState;
+    }
+
+    public long appendHold(int holdId, String customerEmail, long expiryMillis, List<SeatBlock> seatBlocks) {
+        int[] seatRuns = toSeatRuns(seatBlocks);
+        //a null email is framed with a negative length
+        byte[] email = customerEmail != null ? customerEmail.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer payload = ByteBuffer.allocate(1 + 4 + 2 + email.length + 8 + 4 + seatRuns.length * 4);
+        payload.put(HOLD).putInt(holdId).putShort((short) (customerEmail != null ? email.length : -1)).put(email)
+                .putLong(expiryMillis).putInt(seatRuns.length);
+        for(int value : seatRuns)
+            payload.putInt(value);
+        lock.lock();
+        try {
+            state.applyHold(holdId, customerEmail, expiryMillis, seatRuns);
+            return append(payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendReserve(int holdId, String reservationId) {
+        byte[] resId = reservationId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 4 + 2 + resId.length);
+        payload.put(RESERVE).putInt(holdId).putShort((short) resId.length).put(resId);
+        lock.lock();
+        try {
+            state.applyReserve(holdId, reservationId);
+            return append(payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendExpire(int holdId) {
+        ByteBuffer payload = ByteBuffer.allocate(1 + 4);
+        payload.put(EXPIRE).putInt(holdId);
+        lock.lock();
+        try {
+            state.applyExpire(holdId);
+            return append(payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendExtend(int holdId, long expiryMillis) {
+        ByteBuffer payload = ByteBuffer.allocate(1 + 4 + 8);
+        payload.put(EXTEND).putInt(holdId).putLong(expiryMillis);
+        lock.lock();
+        try {
+            state.applyExtend(holdId, expiryMillis);
+            return append(payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param seatBlocks the seats the hold keeps after giving up some of them
+     */
+    public long appendRelease(int holdId, List<SeatBlock> seatBlocks) {
+        int[] seatRuns = toSeatRuns(seatBlocks);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 4 + 4 + seatRuns.length * 4);
+        payload.put(RELEASE).putInt(holdId).putInt(seatRuns.length);
+        for(int value : seatRuns)
+            payload.putInt(value);
+        lock.lock();
+        try {
+            state.applyRelease(holdId, seatRuns);
+            return append(payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int[] toSeatRuns(List<SeatBlock> seatBlocks) {
+        int[] seatRuns = new int[seatBlocks.size() * 3];
+        int i = 0;
+        for(SeatBlock seatBlock : seatBlocks) {
+            seatRuns[i++] = seatBlock.getRow();
+            seatRuns[i++] = seatBlock.getCol();
+            seatRuns[i++] = seatBlock.getLength();
+        }
+        return seatRuns;
+    }
+
+    //caller holds the lock
+    private long append(ByteBuffer payload) {
+        if(closed)
+            throw new IllegalStateException("journal is closed");
+        if(failure != null)
+            return ++appendedSeq;
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payload.limit());
+        int frameSize = 8 + payload.limit();
+        if(pending.remaining() < frameSize) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + frameSize));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        pending.putInt(payload.limit()).putInt((int) crc.getValue()).put(payload);
+        eventsSinceSnapshot++;
+        return ++appendedSeq;
+    }
+
+    /**
+     * Blocks until the event with the given sequence and all the events before it are on disk.
+     *
+     * @param seq the sequence returned by an append
+     * @throws UncheckedIOException if the journal failed before the event was on disk
+     */
+    public void sync(long seq) {
+        lock.lock();
+        try {
+            while(durableSeq < seq) {
+                if(failure != null)
+                    throw failure;
+                if(flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                //become the leader and commit the whole group appended so far
+                flushing = true;
+                ByteBuffer group = pending;
+                long groupSeq = appendedSeq;
+                pending = spare;
+                lock.unlock();
+                boolean written = false;
+                try {
+                    write(group);
+                    written = true;
+                } finally {
+                    lock.lock();
+                    group.clear();
+                    spare = group;
+                    if(written)
+                        durableSeq = Math.max(durableSeq, groupSeq);
+                    flushing = false;
+                    flushed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rolls the journal over to a new segment and snapshots the state as of the roll over. Older segments and
+     * snapshots are deleted once the snapshot is on disk. A failure past the roll over is handed to the error handler
+     * and leaves the journal live.
+     */
+    public void snapshot() {
+        JournalState snapshotState;
+        long snapshotSegment;
+        lock.lock();
+        try {
+            while(flushing)
+                flushed.awaitUninterruptibly();
+            if(failure != null)
+                throw failure;
+            write(pending);
+            pending.clear();
+            durableSeq = appendedSeq;
+            channel.close();
+            snapshotSegment = ++segment;
+            channel = openSegment(directory, snapshotSegment);
+            snapshotState = state.copy();
+            eventsSinceSnapshot = 0;
+        } catch (IOException e) {
+            //no segment to append to
+            failure = new UncheckedIOException("journal roll over failed", e);
+            throw failure;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writeSnapshot(snapshotSegment, snapshotState);
+            deleteBefore(snapshotSegment);
+        } catch (IOException e) {
+            //the events are all in the segments, the next snapshot retries
+            onError(new UncheckedIOException("journal snapshot failed", e));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(flusher != null) {
+            //no interrupt: interrupting a thread writing to a file channel closes the channel
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            if(closed)
+                return;
+            while(flushing)
+                flushed.awaitUninterruptibly();
+            closed = true;
+            try {
+                if(failure == null) {
+                    write(pending);
+                    pending.clear();
+                    durableSeq = appendedSeq;
+                }
+            } finally {
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the handler of the failure of a background commit or snapshot (default: the uncaught exception handler of
+     * the failing thread). The journal is failed by then, and the flusher stops, unless only writing or cleaning up
+     * the snapshot failed.
+     */
+    public void setErrorHandler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @return the failure the journal failed with, or null if it did not fail
+     */
+    public UncheckedIOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Closes the current segment under the journal, so that its next write fails.
+     */
+    void closeSegment() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //fails the journal on a write or force error
+    private void write(ByteBuffer group) {
+        group.flip();
+        try {
+            while(group.hasRemaining())
+                channel.write(group);
+            channel.force(false);
+        } catch (IOException e) {
+            failure = new UncheckedIOException("journal write failed", e);
+            throw failure;
+        }
+    }
+
+    private void startFlusher(long commitInterval) {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                long seq;
+                boolean snapshotDue;
+                lock.lock();
+                try {
+                    if(closed || failure != null)
+                        return;
+                    seq = appendedSeq;
+                    snapshotDue = eventsSinceSnapshot >= snapshotInterval;
+                } finally {
+                    lock.unlock();
+                }
+                if(snapshotDue)
+                    snapshot();
+                else
+                    sync(seq);
+            } catch (RuntimeException e) {
+                fail(e);
+                onError(e);
+            }
+        }, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+    }
+
+    //fails the journal, unless it already failed, and wakes up the callers waiting for a commit
+    private void fail(RuntimeException e) {
+        lock.lock();
+        try {
+            if(failure == null) {
+                failure = e instanceof UncheckedIOException ?
+                        (UncheckedIOException) e :
+                        new UncheckedIOException("journal flush failed", new IOException(e));
+            }
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onError(Throwable e) {
+        Consumer<Throwable> handler = errorHandler;
+        if(handler != null) {
+            handler.accept(e);
+        } else {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private static FileChannel openSegment(Path directory, long segment) throws IOException {
+        return FileChannel.open(segmentFile(directory, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void deleteBefore(long segment) throws IOException {
+        for(long older : segments(directory)) {
+            if(older < segment)
+                Files.deleteIfExists(segmentFile(directory, older));
+        }
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for(Path file : files) {
+                if(sequenceOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < segment)
+                    Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void writeSnapshot(long snapshotSegment, JournalState snapshotState) throws IOException {
+        Path file = snapshotFile(directory, snapshotSegment);
+        Path tmp = directory.resolve(file.getFileName() + ".tmp");
+        try(FileOutputStream fileOut = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(snapshotState.getHolds().size());
+            for(JournalState.HeldSeats hold : snapshotState.getHolds()) {
+                writeHeldSeats(out, hold);
+            }
+            out.writeInt(snapshotState.getReservations().size());
+            for(Map.Entry<String, JournalState.HeldSeats> reservation : snapshotState.getReservations().entrySet()) {
+                out.writeUTF(reservation.getKey());
+                writeHeldSeats(out, reservation.getValue());
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeHeldSeats(DataOutputStream out, JournalState.HeldSeats seats) throws IOException {
+        out.writeInt(seats.getHoldId());
+        out.writeBoolean(seats.getCustomerEmail() != null);
+        if(seats.getCustomerEmail() != null)
+            out.writeUTF(seats.getCustomerEmail());
+        out.writeLong(seats.getExpiryMillis());
+        out.writeInt(seats.getSeatRuns().length);
+        for(int value : seats.getSeatRuns())
+            out.writeInt(value);
+    }
+
+    private static void readSnapshot(Path file, JournalState state) throws IOException {
+        try(InputStream fileIn = new BufferedInputStream(Files.newInputStream(file))) {
+            CheckedInputStream checked = new CheckedInputStream(fileIn, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if(in.readInt() != SNAPSHOT_MAGIC)
+                throw new IOException("not a journal snapshot: " + file);
+            int holds = in.readInt();
+            for(int i = 0; i < holds; i++) {
+                JournalState.HeldSeats hold = readHeldSeats(in);
+                state.applyHold(hold.getHoldId(), hold.getCustomerEmail(), hold.getExpiryMillis(), hold.getSeatRuns());
+            }
+            int reservations = in.readInt();
+            for(int i = 0; i < reservations; i++) {
+                String reservationId = in.readUTF();
+                state.addReservation(reservationId, readHeldSeats(in));
+            }
+            long checksum = checked.getChecksum().getValue();
+            if(new DataInputStream(fileIn).readLong() != checksum)
+                throw new IOException("corrupt journal snapshot: " + file);
+        }
+    }
+
+    private static JournalState.HeldSeats readHeldSeats(DataInputStream in) throws IOException {
+        int holdId = in.readInt();
+        String customerEmail = in.readBoolean() ? in.readUTF() : null;
+        long expiryMillis = in.readLong();
+        int[] seatRuns = new int[in.readInt()];
+        for(int i = 0; i < seatRuns.length; i++)
+            seatRuns[i] = in.readInt();
+        return new JournalState.HeldSeats(holdId, customerEmail, expiryMillis, seatRuns);
+    }
+
+    private static void replaySegment(Path file, JournalState state) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while(true) {
+                byte[] payload;
+                int crc;
+                try {
+                    int length = in.readInt();
+                    crc = in.readInt();
+                    if(length <= 0)
+                        return;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    //end of segment or torn last record
+                    return;
+                }
+                CRC32 check = new CRC32();
+                check.update(payload, 0, payload.length);
+                if((int) check.getValue() != crc)
+                    return;
+                apply(ByteBuffer.wrap(payload), state);
+            }
+        }
+    }
+
+    private static void apply(ByteBuffer record, JournalState state) {
+        byte type = record.get();
+        int holdId = record.getInt();
+        switch(type) {
+            case HOLD:
+                String customerEmail = null;
+                short emailLength = record.getShort();
+                if(emailLength >= 0) {
+                    byte[] email = new byte[emailLength];
+                    record.get(email);
+                    customerEmail = new String(email, StandardCharsets.UTF_8);
+                }
+                long expiryMillis = record.getLong();
+                int[] seatRuns = new int[record.getInt()];
+                for(int i = 0; i < seatRuns.length; i++)
+                    seatRuns[i] = record.getInt();
+                state.applyHold(holdId, customerEmail, expiryMillis, seatRuns);
+                break;
+            case RESERVE:
+                byte[] resId = new byte[record.getShort()];
+                record.get(resId);
+                state.applyReserve(holdId, new String(resId, StandardCharsets.UTF_8));
+                break;
+            case EXPIRE:
+                state.applyExpire(holdId);
+                break;
+            case EXTEND:
+                state.applyExtend(holdId, record.getLong());
+                break;
+            case RELEASE:
+                int[] keptRuns = new int[record.getInt()];
+                for(int i = 0; i < keptRuns.length; i++)
+                    keptRuns[i] = record.getInt();
+                state.applyRelease(holdId, keptRuns);
+                break;
+            default:
+                //unknown record types are skipped
+        }
+    }
+
+    private static long latestSnapshot(Path directory) throws IOException {
+        long latest = -1;
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for(Path file : files) {
+                latest = Math.max(latest, sequenceOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+            }
+        }
+        return latest;
+    }
+
+    private static List<Long> segments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for(Path file : files) {
+                segments.add(sequenceOf(file, SEGMENT_PREFIX, SEGMENT_SUFFIX));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long sequenceOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static Path snapshotFile(Path directory, long segment) {
+        return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX));
+    }
+}
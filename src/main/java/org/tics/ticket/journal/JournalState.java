@@ -0,0 +1,109 @@
+package org.tics.ticket.journal;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * State of the holds and reservations as recorded by the journal.
+ * It is rebuilt on recovery by applying the snapshot and the journal events in order, and kept up to date while
+ * journaling so that snapshots capture exactly the events journaled before them. Applying an event is idempotent.
+ * Not thread safe.
+ */
+public class JournalState {
+
+    private final Map<Integer, HeldSeats> holds;
+    private final Map<String, HeldSeats> reservations;
+
+    public JournalState() {
+        this.holds = new HashMap<>();
+        this.reservations = new LinkedHashMap<>();
+    }
+
+    private JournalState(JournalState state) {
+        this.holds = new HashMap<>(state.holds);
+        this.reservations = new LinkedHashMap<>(state.reservations);
+    }
+
+    void applyHold(int holdId, String customerEmail, long expiryMillis, int[] seatRuns) {
+        holds.putIfAbsent(holdId, new HeldSeats(holdId, customerEmail, expiryMillis, seatRuns));
+    }
+
+    void applyReserve(int holdId, String reservationId) {
+        HeldSeats hold = holds.remove(holdId);
+        if(hold != null)
+            reservations.put(reservationId, hold);
+    }
+
+    void applyExpire(int holdId) {
+        holds.remove(holdId);
+    }
+
+    void applyExtend(int holdId, long expiryMillis) {
+        HeldSeats hold = holds.get(holdId);
+        if(hold != null)
+            holds.put(holdId, new HeldSeats(holdId, hold.getCustomerEmail(), expiryMillis, hold.getSeatRuns()));
+    }
+
+    void applyRelease(int holdId, int[] seatRuns) {
+        HeldSeats hold = holds.get(holdId);
+        if(hold != null)
+            holds.put(holdId, new HeldSeats(holdId, hold.getCustomerEmail(), hold.getExpiryMillis(), seatRuns));
+    }
+
+    void addReservation(String reservationId, HeldSeats seats) {
+        reservations.put(reservationId, seats);
+    }
+
+    JournalState copy() {
+        return new JournalState(this);
+    }
+
+    /**
+     * @return the holds neither reserved nor expired
+     */
+    public Collection<HeldSeats> getHolds() {
+        return holds.values();
+    }
+
+    /**
+     * @return the reserved seats by reservation id, in reservation order
+     */
+    public Map<String, HeldSeats> getReservations() {
+        return reservations;
+    }
+
+    /**
+     * Seats of a hold, packed as (row, startCol, length) triples, and the email of the customer the hold is bound to.
+     */
+    public static class HeldSeats {
+        private final int holdId;
+        private final String customerEmail;
+        private final long expiryMillis;
+        private final int[] seatRuns;
+
+        public HeldSeats(int holdId, String customerEmail, long expiryMillis, int[] seatRuns) {
+            this.holdId = holdId;
+            this.customerEmail = customerEmail;
+            this.expiryMillis = expiryMillis;
+            this.seatRuns = seatRuns;
+        }
+
+        public int getHoldId() {
+            return holdId;
+        }
+
+        public String getCustomerEmail() {
+            return customerEmail;
+        }
+
+        public long getExpiryMillis() {
+            return expiryMillis;
+        }
+
+        public int[] getSeatRuns() {
+            return seatRuns;
+        }
+    }
+}
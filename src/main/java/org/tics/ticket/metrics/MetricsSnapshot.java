@@ -0,0 +1,163 @@
+package org.tics.ticket.metrics;
+
+/**
+ * Point in time view of the ticket service metrics. Rates are computed between two snapshots.
+ */
+public class MetricsSnapshot {
+
+    private final long timestamp;//milliseconds, on the clock of the service
+    private final long holds;
+    private final long rejected;
+    private final long reserves;
+    private final long reserveMisses;
+    private final long expired;
+    private final int activeHolds;
+    private final int waitingRequests;
+    private final int availableSeats;
+    private final int largestFreeRun;
+    private final LatencyHistogram.Snapshot holdLatency;
+    private final LatencyHistogram.Snapshot reserveLatency;
+    private final LatencyHistogram.Snapshot expiryLag;
+
+    MetricsSnapshot(long timestamp, long holds, long rejected, long reserves, long reserveMisses, long expired,
+                    int activeHolds, int waitingRequests, int availableSeats, int largestFreeRun,
+                    LatencyHistogram.Snapshot holdLatency,
+                    LatencyHistogram.Snapshot reserveLatency,
+                    LatencyHistogram.Snapshot expiryLag) {
+        this.timestamp = timestamp;
+        this.holds = holds;
+        this.rejected = rejected;
+        this.reserves = reserves;
+        this.reserveMisses = reserveMisses;
+        this.expired = expired;
+        this.activeHolds = activeHolds;
+        this.waitingRequests = waitingRequests;
+        this.availableSeats = availableSeats;
+        this.largestFreeRun = largestFreeRun;
+        this.holdLatency = holdLatency;
+        this.reserveLatency = reserveLatency;
+        this.expiryLag = expiryLag;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the number of holds placed
+     */
+    public long getHolds() {
+        return holds;
+    }
+
+    /**
+     * @return the number of hold requests rejected as NOT_AVAILABLE
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getReserves() {
+        return reserves;
+    }
+
+    /**
+     * @return the number of reservations of unknown, reserved or expired holds
+     */
+    public long getReserveMisses() {
+        return reserveMisses;
+    }
+
+    public long getExpired() {
+        return expired;
+    }
+
+    /**
+     * @return the number of holds waiting to be reserved or expired
+     */
+    public int getActiveHolds() {
+        return activeHolds;
+    }
+
+    /**
+     * @return the number of hold requests queued on the waitlist for seats
+     */
+    public int getWaitingRequests() {
+        return waitingRequests;
+    }
+
+    public int getAvailableSeats() {
+        return availableSeats;
+    }
+
+    public int getLargestFreeRun() {
+        return largestFreeRun;
+    }
+
+    /**
+     * @return the share of the available seats outside the largest free run, from 0 (one run) to 1
+     */
+    public double getFragmentation() {
+        return availableSeats == 0 ? 0 : 1 - (double) largestFreeRun / availableSeats;
+    }
+
+    /**
+     * @return the hold latency, in nanoseconds
+     */
+    public LatencyHistogram.Snapshot getHoldLatency() {
+        return holdLatency;
+    }
+
+    /**
+     * @return the reserve latency, in nanoseconds
+     */
+    public LatencyHistogram.Snapshot getReserveLatency() {
+        return reserveLatency;
+    }
+
+    /**
+     * @return the time from the expiry of a hold to the release of its seats, in milliseconds
+     */
+    public LatencyHistogram.Snapshot getExpiryLag() {
+        return expiryLag;
+    }
+
+    public double holdRate(MetricsSnapshot earlier) {
+        return perSecond(holds - earlier.holds, earlier);
+    }
+
+    public double reserveRate(MetricsSnapshot earlier) {
+        return perSecond(reserves - earlier.reserves, earlier);
+    }
+
+    public double expireRate(MetricsSnapshot earlier) {
+        return perSecond(expired - earlier.expired, earlier);
+    }
+
+    public double rejectRate(MetricsSnapshot earlier) {
+        return perSecond(rejected - earlier.rejected, earlier);
+    }
+
+    private double perSecond(long delta, MetricsSnapshot earlier) {
+        long elapsed = timestamp - earlier.timestamp;
+        return elapsed <= 0 ? 0 : delta * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{" +
+                "holds=" + holds +
+                ", rejected=" + rejected +
+                ", reserves=" + reserves +
+                ", reserveMisses=" + reserveMisses +
+                ", expired=" + expired +
+                ", activeHolds=" + activeHolds +
+                ", waitingRequests=" + waitingRequests +
+                ", availableSeats=" + availableSeats +
+                ", largestFreeRun=" + largestFreeRun +
+                ", holdLatency=" + holdLatency +
+                ", reserveLatency=" + reserveLatency +
+                ", expiryLag=" + expiryLag +
+                '}';
+    }
+}
@@ -0,0 +1,196 @@
+package org.tics.ticket.metrics;
+
+import org.tics.util.TimeSource;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics of a ticket service. The hot path only bumps striped counters and histogram buckets; the gauges (active
+ * holds, waiting requests, available seats, largest free run) are read from the service when a snapshot is taken.
+ */
+public class TicketServiceMetrics implements TicketServiceMetricsMXBean {
+
+    private final LongAdder holds = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder reserves = new LongAdder();
+    private final LongAdder reserveMisses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LatencyHistogram holdLatency = new LatencyHistogram();//nanoseconds
+    private final LatencyHistogram reserveLatency = new LatencyHistogram();//nanoseconds
+    private final LatencyHistogram expiryLag = new LatencyHistogram();//milliseconds
+
+    private final TimeSource timeSource;
+    private final IntSupplier activeHolds;
+    private final IntSupplier waitingRequests;
+    private final IntSupplier availableSeats;
+    private final IntSupplier largestFreeRun;
+
+    private ObjectName objectName;
+
+    /**
+     * @param timeSource      the clock of the service, which timestamps the snapshots
+     * @param activeHolds     the number of holds waiting to be reserved or expired
+     * @param waitingRequests the number of hold requests queued for seats
+     * @param availableSeats  the number of available seats
+     * @param largestFreeRun  the largest run of available seats
+     */
+    public TicketServiceMetrics(TimeSource timeSource, IntSupplier activeHolds, IntSupplier waitingRequests,
+                                IntSupplier availableSeats, IntSupplier largestFreeRun) {
+        this.timeSource = timeSource;
+        this.activeHolds = activeHolds;
+        this.waitingRequests = waitingRequests;
+        this.availableSeats = availableSeats;
+        this.largestFreeRun = largestFreeRun;
+    }
+
+    /**
+     * @param placed       the number of holds placed
+     * @param rejections   the number of hold requests rejected
+     * @param elapsedNanos the time taken, or a negative number not to record it (e.g. for a batch)
+     */
+    public void recordHolds(int placed, int rejections, long elapsedNanos) {
+        if(placed > 0)
+            holds.add(placed);
+        if(rejections > 0)
+            rejected.add(rejections);
+        if(elapsedNanos >= 0)
+            holdLatency.record(elapsedNanos);
+    }
+
+    /**
+     * @param reserved     whether the hold was reserved
+     * @param elapsedNanos the time taken, or a negative number not to record it (e.g. for a batch)
+     */
+    public void recordReserve(boolean reserved, long elapsedNanos) {
+        if(reserved)
+            reserves.increment();
+        else
+            reserveMisses.increment();
+        if(elapsedNanos >= 0)
+            reserveLatency.record(elapsedNanos);
+    }
+
+    /**
+     * @param lagMillis the time from the hold expiry to the release of its seats
+     */
+    public void recordExpired(long lagMillis) {
+        expired.increment();
+        expiryLag.record(lagMillis);
+    }
+
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(timeSource.currentTimeMillis(),
+                holds.sum(), rejected.sum(), reserves.sum(), reserveMisses.sum(), expired.sum(),
+                activeHolds.getAsInt(), waitingRequests.getAsInt(), availableSeats.getAsInt(), largestFreeRun.getAsInt(),
+                holdLatency.snapshot(), reserveLatency.snapshot(), expiryLag.snapshot());
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @param name the object name, e.g. org.tics:type=TicketService,name=venue
+     */
+    public synchronized void register(String name) {
+        try {
+            ObjectName registered = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+            objectName = registered;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("could not register the metrics as " + name, e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if(objectName == null)
+            return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if(server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            //already gone
+        }
+        objectName = null;
+    }
+
+    @Override
+    public long getHoldCount() {
+        return holds.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getReserveCount() {
+        return reserves.sum();
+    }
+
+    @Override
+    public long getReserveMissCount() {
+        return reserveMisses.sum();
+    }
+
+    @Override
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    @Override
+    public int getActiveHolds() {
+        return activeHolds.getAsInt();
+    }
+
+    @Override
+    public int getWaitingRequests() {
+        return waitingRequests.getAsInt();
+    }
+
+    @Override
+    public int getAvailableSeats() {
+        return availableSeats.getAsInt();
+    }
+
+    @Override
+    public int getLargestFreeRun() {
+        return largestFreeRun.getAsInt();
+    }
+
+    @Override
+    public long getHoldLatencyP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(holdLatency.snapshot().getValueAtPercentile(50));
+    }
+
+    @Override
+    public long getHoldLatencyP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(holdLatency.snapshot().getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getReserveLatencyP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(reserveLatency.snapshot().getValueAtPercentile(50));
+    }
+
+    @Override
+    public long getReserveLatencyP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(reserveLatency.snapshot().getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getExpiryLagP99Millis() {
+        return expiryLag.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getExpiryLagMaxMillis() {
+        return expiryLag.snapshot().getMax();
+    }
+}
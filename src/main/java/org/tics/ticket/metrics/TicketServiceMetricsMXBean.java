@@ -0,0 +1,37 @@
+package org.tics.ticket.metrics;
+
+/**
+ * JMX view of the ticket service metrics. Counts are cumulative; monitoring tools derive the rates from them.
+ */
+public interface TicketServiceMetricsMXBean {
+
+    long getHoldCount();
+
+    long getRejectedCount();
+
+    long getReserveCount();
+
+    long getReserveMissCount();
+
+    long getExpiredCount();
+
+    int getActiveHolds();
+
+    int getWaitingRequests();
+
+    int getAvailableSeats();
+
+    int getLargestFreeRun();
+
+    long getHoldLatencyP50Micros();
+
+    long getHoldLatencyP99Micros();
+
+    long getReserveLatencyP50Micros();
+
+    long getReserveLatencyP99Micros();
+
+    long getExpiryLagP99Millis();
+
+    long getExpiryLagMaxMillis();
+}
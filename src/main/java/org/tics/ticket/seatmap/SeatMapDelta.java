@@ -0,0 +1,74 @@
+package org.tics.ticket.seatmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Changes of the seat map between two versions: the full bitmap of every row that changed, to be applied over the
+ * client's copy of the older version.
+ */
+public final class SeatMapDelta {
+
+    private final long fromVersion;
+    private final long toVersion;
+    //changed rows, from 1, and their bitmaps at toVersion
+    private final int[] rows;
+    private final long[][] bitmaps;
+
+    SeatMapDelta(long fromVersion, long toVersion, int[] rows, long[][] bitmaps) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.rows = rows;
+        this.bitmaps = bitmaps;
+    }
+
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    /**
+     * @return the number of rows that changed
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * @param i the index of the change, below {@link #size()}
+     * @return the row that changed, from 1
+     */
+    public int getRow(int i) {
+        return rows[i];
+    }
+
+    /**
+     * @param i the index of the change, below {@link #size()}
+     * @return a copy of the availability bitmap of the row at the new version
+     */
+    public long[] getBitmap(int i) {
+        return bitmaps[i].clone();
+    }
+
+    /**
+     * Encodes the delta for the wire: both versions and the number of rows, then each row and its bitmap words.
+     */
+    public byte[] encode() {
+        int words = rows.length > 0 ? bitmaps[0].length : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(20 + (4 + 8 * words) * rows.length);
+        buffer.putLong(fromVersion).putLong(toVersion).putInt(rows.length);
+        for(int i = 0; i < rows.length; i++) {
+            buffer.putInt(rows[i]);
+            for(long word : bitmaps[i])
+                buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public String toString() {
+        return "SeatMapDelta{" + fromVersion + " -> " + toVersion + ", rows=" + rows.length + '}';
+    }
+}
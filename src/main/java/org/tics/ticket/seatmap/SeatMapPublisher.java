@@ -0,0 +1,240 @@
+package org.tics.ticket.seatmap;
+
+import org.tics.ticket.SeatBlock;
+import org.tics.ticket.inventory.SeatInventory;
+import org.tics.util.TimeSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Seat inventory decorator publishing versioned {@link SeatMapSnapshot}s of the seat map for high rate reads.
+ * <p>
+ * The inventory operations are forwarded as is; the seats they take or free are queued as changes, without any lock.
+ * Freed seats are queued before they go back to the inventory and taken seats once the inventory handed them out, so
+ * the changes of a seat are queued in the order they happened. The changes are folded into a new snapshot, copying
+ * only the rows they touch, at most once per publish interval: by the first reader finding the current snapshot
+ * older than that, or by a writer once a venue's worth of changes is pending. Publishing never waits for the publish
+ * lock; whoever does not get it serves or leaves the current snapshot. Readers therefore never block writers nor each
+ * other, and see a consistent map at most one publish interval (plus a publish) old.
+ * <p>
+ * The last {@link #DEFAULT_HISTORY} snapshots are kept to answer {@link #changesSince(long)}, sharing the rows that did
+ * not change.
+ */
+public class SeatMapPublisher implements SeatInventory {
+
+    public static final int DEFAULT_PUBLISH_INTERVAL = 50;//milliseconds
+    public static final int DEFAULT_HISTORY = 64;//snapshots
+
+    private final SeatInventory inventory;
+    private final TimeSource timeSource;
+    private final int publishInterval;
+    private final int maxPending;
+
+    private final ConcurrentLinkedQueue<Change> changes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ReentrantLock publishLock = new ReentrantLock();
+    //snapshot of each version, by version modulo the history length; written under the publish lock
+    private final AtomicReferenceArray<SeatMapSnapshot> history;
+    private volatile SeatMapSnapshot current;
+
+    /**
+     * @param inventory       the inventory, in its initial state
+     * @param rows            the number of rows of the venue
+     * @param seatsInRow      the number of seats in a row
+     * @param unavailable     the seats already taken out of the inventory, e.g. blocked seats
+     * @param publishInterval the minimum time between two snapshots, in milliseconds
+     * @param timeSource      the clock timing the snapshots
+     */
+    public SeatMapPublisher(SeatInventory inventory, int rows, int seatsInRow, List<SeatBlock> unavailable,
+                            int publishInterval, TimeSource timeSource) {
+        if(publishInterval < 0)
+            throw new IllegalArgumentException("publishInterval has to be valid number");
+        this.inventory = inventory;
+        this.timeSource = timeSource;
+        this.publishInterval = publishInterval;
+        this.maxPending = rows * seatsInRow;
+        this.history = new AtomicReferenceArray<>(DEFAULT_HISTORY);
+
+        long[][] bitmaps = new long[rows][];
+        long[] full = SeatMapSnapshot.fullRow(seatsInRow);
+        int available = rows * seatsInRow;
+        for(int i = 0; i < rows; i++) {
+            bitmaps[i] = full.clone();
+        }
+        for(SeatBlock seatBlock : unavailable) {
+            available -= apply(bitmaps[seatBlock.getRow() - 1], seatBlock.getCol() - 1, seatBlock.getLength(), false);
+        }
+        publish(new SeatMapSnapshot(0, timeSource.currentTimeMillis(), seatsInRow, bitmaps, available));
+    }
+
+    /**
+     * @return the latest snapshot, published first if it is older than the publish interval and seats changed since
+     */
+    public SeatMapSnapshot snapshot() {
+        SeatMapSnapshot snapshot = current;
+        if(pending.get() > 0 && timeSource.currentTimeMillis() - snapshot.getPublishedMillis() >= publishInterval)
+            snapshot = tryPublish();
+        return snapshot;
+    }
+
+    /**
+     * @param version a version of the seat map, typically that of the client's last snapshot
+     * @return the rows changed between the version and the latest snapshot, or null if the version is unknown or too
+     * old to be kept, in which case the client takes a full snapshot
+     */
+    public SeatMapDelta changesSince(long version) {
+        SeatMapSnapshot latest = snapshot();
+        if(version == latest.getVersion())
+            return new SeatMapDelta(version, version, new int[0], new long[0][]);
+        if(version < 0 || version > latest.getVersion() || latest.getVersion() - version >= history.length())
+            return null;
+        SeatMapSnapshot since = history.get((int) (version % history.length()));
+        //overwritten by a newer version in the meantime
+        if(since == null || since.getVersion() != version)
+            return null;
+        long[][] from = since.rows();
+        long[][] to = latest.rows();
+        List<Integer> changed = new ArrayList<>();
+        for(int i = 0; i < to.length; i++) {
+            if(from[i] != to[i])
+                changed.add(i);
+        }
+        int[] rows = new int[changed.size()];
+        long[][] bitmaps = new long[changed.size()][];
+        for(int i = 0; i < rows.length; i++) {
+            rows[i] = changed.get(i) + 1;
+            bitmaps[i] = to[changed.get(i)];
+        }
+        return new SeatMapDelta(version, latest.getVersion(), rows, bitmaps);
+    }
+
+    @Override
+    public int numSeatsAvailable() {
+        return inventory.numSeatsAvailable();
+    }
+
+    @Override
+    public int numSeatsAvailable(String zone) {
+        return inventory.numSeatsAvailable(zone);
+    }
+
+    @Override
+    public List<SeatBlock> allocate(int numSeats) {
+        return taken(inventory.allocate(numSeats));
+    }
+
+    @Override
+    public List<SeatBlock> allocate(int numSeats, String zone) {
+        return taken(inventory.allocate(numSeats, zone));
+    }
+
+    @Override
+    public List<List<SeatBlock>> allocateAll(int[] numSeats) {
+        List<List<SeatBlock>> allocations = inventory.allocateAll(numSeats);
+        for(List<SeatBlock> seatBlocks : allocations) {
+            taken(seatBlocks);
+        }
+        return allocations;
+    }
+
+    @Override
+    public void release(List<SeatBlock> seatBlocks) {
+        record(seatBlocks, true);
+        inventory.release(seatBlocks);
+    }
+
+    @Override
+    public void claim(List<SeatBlock> seatBlocks) {
+        inventory.claim(seatBlocks);
+        record(seatBlocks, false);
+    }
+
+    @Override
+    public int largestFreeRun() {
+        return inventory.largestFreeRun();
+    }
+
+    private List<SeatBlock> taken(List<SeatBlock> seatBlocks) {
+        if(seatBlocks != null)
+            record(seatBlocks, false);
+        return seatBlocks;
+    }
+
+    private void record(List<SeatBlock> seatBlocks, boolean free) {
+        for(SeatBlock seatBlock : seatBlocks) {
+            changes.add(new Change(seatBlock.getRow(), seatBlock.getCol(), seatBlock.getLength(), free));
+        }
+        if(pending.addAndGet(seatBlocks.size()) >= maxPending)
+            tryPublish();
+    }
+
+    //folds the pending changes into a new snapshot unless another thread is at it
+    private SeatMapSnapshot tryPublish() {
+        if(!publishLock.tryLock())
+            return current;
+        try {
+            SeatMapSnapshot latest = current;
+            long[][] rows = latest.rows().clone();
+            boolean[] copied = new boolean[rows.length];
+            int available = latest.getNumSeatsAvailable();
+            int applied = 0;
+            Change change;
+            while((change = changes.poll()) != null) {
+                int row = change.row - 1;
+                if(!copied[row]) {
+                    rows[row] = rows[row].clone();
+                    copied[row] = true;
+                }
+                int flipped = apply(rows[row], change.col - 1, change.length, change.free);
+                available += change.free ? flipped : -flipped;
+                applied++;
+            }
+            pending.addAndGet(-applied);
+            if(applied == 0)
+                return latest;
+            return publish(new SeatMapSnapshot(latest.getVersion() + 1, timeSource.currentTimeMillis(),
+                    latest.getSeatsInRow(), rows, available));
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    private SeatMapSnapshot publish(SeatMapSnapshot snapshot) {
+        history.set((int) (snapshot.getVersion() % history.length()), snapshot);
+        current = snapshot;
+        return snapshot;
+    }
+
+    //sets or clears the seats [from, from + length) of a row bitmap; returns the number of bits flipped
+    private static int apply(long[] row, int from, int length, boolean free) {
+        int flipped = 0;
+        for(int seat = from; seat < from + length; seat++) {
+            long bit = 1L << seat;
+            int word = seat >>> 6;
+            if(((row[word] & bit) != 0) != free) {
+                row[word] ^= bit;
+                flipped++;
+            }
+        }
+        return flipped;
+    }
+
+    private static final class Change {
+        private final int row;
+        private final int col;
+        private final int length;
+        private final boolean free;
+
+        Change(int row, int col, int length, boolean free) {
+            this.row = row;
+            this.col = col;
+            this.length = length;
+            this.free = free;
+        }
+    }
+}
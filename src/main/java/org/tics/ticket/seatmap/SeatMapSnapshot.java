@@ -0,0 +1,106 @@
+package org.tics.ticket.seatmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable availability map of every seat of a venue at a version of the seat map, as a bitmap per row: bit
+ * (col - 1) of a row is set when the seat is available.
+ * <p>
+ * Successive snapshots share the bitmaps of the rows that did not change between them, so publishing a snapshot
+ * copies the changed rows only, and comparing the row references of two snapshots gives the rows that changed.
+ */
+public final class SeatMapSnapshot {
+
+    private static final int WORD_BITS = 64;
+
+    private final long version;
+    private final long publishedMillis;
+    private final int seatsInRow;
+    private final long[][] rows;
+    private final int numSeatsAvailable;
+
+    SeatMapSnapshot(long version, long publishedMillis, int seatsInRow, long[][] rows, int numSeatsAvailable) {
+        this.version = version;
+        this.publishedMillis = publishedMillis;
+        this.seatsInRow = seatsInRow;
+        this.rows = rows;
+        this.numSeatsAvailable = numSeatsAvailable;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the time the snapshot was published, in epoch milliseconds
+     */
+    public long getPublishedMillis() {
+        return publishedMillis;
+    }
+
+    public int getRows() {
+        return rows.length;
+    }
+
+    public int getSeatsInRow() {
+        return seatsInRow;
+    }
+
+    public int getNumSeatsAvailable() {
+        return numSeatsAvailable;
+    }
+
+    /**
+     * @param row the row, from 1
+     * @param col the seat in the row, from 1
+     * @return whether the seat was available at this version
+     */
+    public boolean isAvailable(int row, int col) {
+        if(row < 1 || row > rows.length || col < 1 || col > seatsInRow)
+            throw new IllegalArgumentException("seat " + row + ":" + col + " is not in the venue");
+        return (rows[row - 1][(col - 1) >>> 6] & (1L << (col - 1))) != 0;
+    }
+
+    /**
+     * @param row the row, from 1
+     * @return a copy of the availability bitmap of the row, 64 seats per word
+     */
+    public long[] getRow(int row) {
+        return rows[row - 1].clone();
+    }
+
+    long[][] rows() {
+        return rows;
+    }
+
+    /**
+     * Encodes the snapshot for the wire: version, rows and seats in row, then the words of every row bitmap.
+     *
+     * @return the encoded snapshot, 16 bytes plus 8 bytes per 64 seats of every row
+     */
+    public byte[] encode() {
+        int words = (seatsInRow + WORD_BITS - 1) / WORD_BITS;
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 8 * words * rows.length);
+        buffer.putLong(version).putInt(rows.length).putInt(seatsInRow);
+        for(long[] row : rows) {
+            for(long word : row)
+                buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    static long[] fullRow(int seatsInRow) {
+        long[] row = new long[(seatsInRow + WORD_BITS - 1) / WORD_BITS];
+        for(int i = 0; i < row.length; i++) {
+            int bits = Math.min(WORD_BITS, seatsInRow - i * WORD_BITS);
+            row[i] = bits == WORD_BITS ? -1L : (1L << bits) - 1;
+        }
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return "SeatMapSnapshot{version=" + version + ", rows=" + rows.length + ", seatsInRow=" + seatsInRow +
+                ", available=" + numSeatsAvailable + '}';
+    }
+}
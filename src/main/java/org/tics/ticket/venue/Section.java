@@ -0,0 +1,142 @@
+package org.tics.ticket.venue;
+
+import org.tics.ticket.SeatBlock;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Section of a venue: rows of possibly uneven length, some of whose seats may be blocked (aisles, pillars, sound
+ * desk...), in a price tier. Rows and seats are numbered from 1 within the section; a row is as wide as the longest
+ * one, the seats past a shorter row's end being blocked.
+ */
+public class Section {
+
+    private final String name;
+    private final String tier;
+    private final int[] rowLengths;
+    private final int seatsInRow;
+    //blocked seats as disjoint runs, in row then column order
+    private final List<SeatBlock> blockedSeats;
+    private final int numSeats;
+
+    private int index;
+    private int firstRow;//first venue row, from 1
+
+    /**
+     * @param name         the section name
+     * @param tier         the price tier, or null
+     * @param rowLengths   the number of seats of each row
+     * @param blockedSeats the seats that cannot be sold, as (row, col, length) blocks; may overlap
+     */
+    public Section(String name, String tier, int[] rowLengths, List<SeatBlock> blockedSeats) {
+        if(name == null || rowLengths == null || rowLengths.length == 0)
+            throw new IllegalArgumentException("name/rowLengths has to be provided");
+        int width = 0;
+        for(int length : rowLengths) {
+            if(length <= 0)
+                throw new IllegalArgumentException("row length has to be valid non-zero number");
+            width = Math.max(width, length);
+        }
+        this.name = name;
+        this.tier = tier;
+        this.rowLengths = rowLengths.clone();
+        this.seatsInRow = width;
+
+        BitSet[] blocked = new BitSet[rowLengths.length];
+        for(int i = 0; i < rowLengths.length; i++) {
+            blocked[i] = new BitSet(width);
+            blocked[i].set(rowLengths[i], width);
+        }
+        for(SeatBlock seatBlock : blockedSeats) {
+            int row = seatBlock.getRow();
+            int col = seatBlock.getCol();
+            if(row < 1 || row > rowLengths.length || col < 1 || seatBlock.getLength() <= 0 ||
+                    col - 1 + seatBlock.getLength() > width)
+                throw new IllegalArgumentException("blocked seats " + row + ":" + col + " are outside section " + name);
+            blocked[row - 1].set(col - 1, col - 1 + seatBlock.getLength());
+        }
+        List<SeatBlock> runs = new ArrayList<>();
+        int numBlocked = 0;
+        for(int i = 0; i < blocked.length; i++) {
+            int start = blocked[i].nextSetBit(0);
+            while(start >= 0) {
+                int end = blocked[i].nextClearBit(start);
+                SeatBlock run = new SeatBlock(i + 1, start + 1);
+                run.setLength(end - start);
+                runs.add(run);
+                numBlocked += end - start;
+                start = blocked[i].nextSetBit(end);
+            }
+        }
+        this.blockedSeats = Collections.unmodifiableList(runs);
+        this.numSeats = rowLengths.length * width - numBlocked;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public int getRows() {
+        return rowLengths.length;
+    }
+
+    /**
+     * @return the length of the longest row
+     */
+    public int getSeatsInRow() {
+        return seatsInRow;
+    }
+
+    /**
+     * @param row the row, from 1
+     * @return the number of seats of the row, blocked ones included
+     */
+    public int getRowLength(int row) {
+        return rowLengths[row - 1];
+    }
+
+    /**
+     * @return the seats that cannot be sold, including the ends of the short rows, as disjoint runs
+     */
+    public List<SeatBlock> getBlockedSeats() {
+        return blockedSeats;
+    }
+
+    /**
+     * @return the number of seats that can be sold
+     */
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    /**
+     * @return the position of the section in its venue, from 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the venue row of the section's first row, from 1
+     */
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    void place(int index, int firstRow) {
+        this.index = index;
+        this.firstRow = firstRow;
+    }
+
+    @Override
+    public String toString() {
+        return "Section{" + name + ", tier=" + tier + ", rows=" + rowLengths.length + ", seats=" + numSeats + '}';
+    }
+}
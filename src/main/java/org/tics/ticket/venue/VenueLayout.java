@@ -0,0 +1,247 @@
+package org.tics.ticket.venue;
+
+import org.tics.ticket.SeatBlock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layout of a venue made of sections, stacked one after the other: the venue rows are the rows of the first section,
+ * then those of the second one, and so on, so a seat keeps a single (row, col) identity across the venue.
+ * <p>
+ * A zone names the part of the venue a request can target: a section by its name, or all the sections of a tier by
+ * the tier's name, in layout order. Section and tier names therefore share one namespace.
+ * <p>
+ * ### Layout file:-
+ * One directive per line; blank lines and text after '#' are ignored.
+ * <pre>
+ * section orchestra tier premium   # starts a section, the tier is optional
+ * rows 10x30                       # 10 rows of 30 seats
+ * rows 4x26                        # followed by 4 rows of 26 seats
+ * aisle 15                         # seat 15 of every row is an aisle (also 15-16)
+ * blocked 1:1-4 12:7               # seats 1 to 4 of row 1 and seat 7 of row 12 are not sold
+ * section balcony tier standard
+ * rows 8x40
+ * </pre>
+ */
+public class VenueLayout {
+
+    private final List<Section> sections;
+    private final Map<String, List<Section>> zones;
+    //section of each venue row
+    private final Section[] rowSections;
+    private final int seatsInRow;
+    private final int numSeats;
+
+    public VenueLayout(List<Section> sections) {
+        if(sections == null || sections.isEmpty())
+            throw new IllegalArgumentException("sections has to be provided");
+        this.sections = Collections.unmodifiableList(new ArrayList<>(sections));
+        this.zones = new HashMap<>();
+        int rows = 0, width = 0, seats = 0;
+        for(Section section : sections) {
+            if(zones.containsKey(section.getName()))
+                throw new IllegalArgumentException("section " + section.getName() + " is defined twice");
+            zones.put(section.getName(), Collections.singletonList(section));
+            rows += section.getRows();
+            width = Math.max(width, section.getSeatsInRow());
+            seats += section.getNumSeats();
+        }
+        for(Section section : sections) {
+            if(section.getTier() == null)
+                continue;
+            List<Section> tier = zones.get(section.getTier());
+            if(tier != null && tier.size() == 1 && tier.get(0).getName().equals(section.getTier()))
+                throw new IllegalArgumentException("tier " + section.getTier() + " is also a section name");
+            zones.computeIfAbsent(section.getTier(), t -> new ArrayList<>()).add(section);
+        }
+        this.rowSections = new Section[rows];
+        int firstRow = 1;
+        for(int i = 0; i < sections.size(); i++) {
+            Section section = sections.get(i);
+            section.place(i, firstRow);
+            for(int row = 0; row < section.getRows(); row++) {
+                rowSections[firstRow - 1 + row] = section;
+            }
+            firstRow += section.getRows();
+        }
+        this.seatsInRow = width;
+        this.numSeats = seats;
+    }
+
+    public List<Section> getSections() {
+        return sections;
+    }
+
+    /**
+     * @return the number of rows of the venue, all sections included
+     */
+    public int getRows() {
+        return rowSections.length;
+    }
+
+    /**
+     * @return the length of the longest row of the venue
+     */
+    public int getSeatsInRow() {
+        return seatsInRow;
+    }
+
+    /**
+     * @return the number of seats that can be sold
+     */
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    /**
+     * @return the seats of all the sections that cannot be sold, in venue rows
+     */
+    public List<SeatBlock> getBlockedSeats() {
+        List<SeatBlock> blocked = new ArrayList<>();
+        for(Section section : sections) {
+            for(SeatBlock seatBlock : section.getBlockedSeats()) {
+                SeatBlock venueBlock = new SeatBlock(section.getFirstRow() - 1 + seatBlock.getRow(), seatBlock.getCol());
+                venueBlock.setLength(seatBlock.getLength());
+                blocked.add(venueBlock);
+            }
+        }
+        return blocked;
+    }
+
+    /**
+     * @param row the venue row, from 1
+     * @return the section holding the row
+     */
+    public Section getSectionOfRow(int row) {
+        if(row < 1 || row > rowSections.length)
+            throw new IllegalArgumentException("row " + row + " is not in the venue");
+        return rowSections[row - 1];
+    }
+
+    /**
+     * @param zone a section or tier name
+     * @return the sections of the zone, in layout order
+     */
+    public List<Section> getZone(String zone) {
+        List<Section> zoneSections = zone != null ? zones.get(zone) : null;
+        if(zoneSections == null)
+            throw new IllegalArgumentException("zone " + zone + " is not in the venue");
+        return zoneSections;
+    }
+
+    public static VenueLayout load(Path file) throws IOException {
+        return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param layout the layout, in the layout file format
+     * @return the venue layout
+     */
+    public static VenueLayout parse(String layout) {
+        List<Section> sections = new ArrayList<>();
+        String name = null, tier = null;
+        List<Integer> rowLengths = new ArrayList<>();
+        List<int[]> aisles = new ArrayList<>();
+        List<SeatBlock> blocked = new ArrayList<>();
+        String[] lines = layout.split("\r?\n");
+        for(int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int comment = line.indexOf('#');
+            String[] tokens = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+            if(tokens[0].isEmpty())
+                continue;
+            try {
+                switch(tokens[0]) {
+                    case "section":
+                        if(name != null)
+                            sections.add(section(name, tier, rowLengths, aisles, blocked));
+                        if(tokens.length != 2 && !(tokens.length == 4 && tokens[2].equals("tier")))
+                            throw new IllegalArgumentException("expected: section <name> [tier <tier>]");
+                        name = tokens[1];
+                        tier = tokens.length == 4 ? tokens[3] : null;
+                        rowLengths.clear();
+                        aisles.clear();
+                        blocked.clear();
+                        break;
+                    case "rows":
+                        requireSection(name, tokens);
+                        String[] size = tokens[1].split("x");
+                        if(size.length != 2)
+                            throw new IllegalArgumentException("expected: rows <count>x<length>");
+                        int count = Integer.parseInt(size[0]);
+                        if(count <= 0)
+                            throw new IllegalArgumentException("row count has to be valid non-zero number");
+                        for(int row = 0; row < count; row++)
+                            rowLengths.add(Integer.parseInt(size[1]));
+                        break;
+                    case "aisle":
+                        requireSection(name, tokens);
+                        aisles.add(range(tokens[1]));
+                        break;
+                    case "blocked":
+                        requireSection(name, tokens);
+                        for(int t = 1; t < tokens.length; t++) {
+                            String[] seat = tokens[t].split(":");
+                            if(seat.length != 2)
+                                throw new IllegalArgumentException("expected: blocked <row>:<col>[-<col>]...");
+                            int[] cols = range(seat[1]);
+                            SeatBlock seatBlock = new SeatBlock(Integer.parseInt(seat[0]), cols[0]);
+                            seatBlock.setLength(cols[1] - cols[0] + 1);
+                            blocked.add(seatBlock);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown directive " + tokens[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                //number format errors included
+                throw new IllegalArgumentException("line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        if(name != null)
+            sections.add(section(name, tier, rowLengths, aisles, blocked));
+        return new VenueLayout(sections);
+    }
+
+    private static void requireSection(String name, String[] tokens) {
+        if(name == null)
+            throw new IllegalArgumentException(tokens[0] + " before the first section");
+        if(tokens.length < 2)
+            throw new IllegalArgumentException(tokens[0] + " needs a value");
+    }
+
+    private static int[] range(String cols) {
+        int dash = cols.indexOf('-');
+        int from = Integer.parseInt(dash >= 0 ? cols.substring(0, dash) : cols);
+        int to = dash >= 0 ? Integer.parseInt(cols.substring(dash + 1)) : from;
+        if(from < 1 || to < from)
+            throw new IllegalArgumentException("invalid seat range " + cols);
+        return new int[]{from, to};
+    }
+
+    private static Section section(String name, String tier, List<Integer> rowLengths, List<int[]> aisles,
+                                   List<SeatBlock> blocked) {
+        if(rowLengths.isEmpty())
+            throw new IllegalArgumentException("section " + name + " has no rows");
+        int[] lengths = new int[rowLengths.size()];
+        for(int i = 0; i < lengths.length; i++)
+            lengths[i] = rowLengths.get(i);
+        List<SeatBlock> blockedSeats = new ArrayList<>(blocked);
+        for(int[] aisle : aisles) {
+            for(int row = 1; row <= lengths.length; row++) {
+                SeatBlock seatBlock = new SeatBlock(row, aisle[0]);
+                seatBlock.setLength(aisle[1] - aisle[0] + 1);
+                blockedSeats.add(seatBlock);
+            }
+        }
+        return new Section(name, tier, lengths, blockedSeats);
+    }
+}
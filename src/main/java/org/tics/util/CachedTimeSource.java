@@ -0,0 +1,57 @@
+package org.tics.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coarse clock: a daemon thread samples the system clock every resolution period and readers get the last sample,
+ * a single volatile read. The time read lags the system clock by less than the resolution and never goes back.
+ */
+public class CachedTimeSource extends TimeSource implements AutoCloseable {
+
+    public static final long DEFAULT_RESOLUTION = 1;//milliseconds
+
+    private static CachedTimeSource shared;
+
+    private final ScheduledExecutorService ticker;
+    private volatile long now;
+
+    /**
+     * @param resolution the sampling period, in milliseconds
+     */
+    public CachedTimeSource(long resolution) {
+        if(resolution <= 0)
+            throw new IllegalArgumentException("resolution has to be valid non-zero number");
+        this.now = System.currentTimeMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cached-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> now = Math.max(now, System.currentTimeMillis()),
+                resolution, resolution, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the clock shared by the services, with the default resolution
+     */
+    public static synchronized CachedTimeSource shared() {
+        if(shared == null)
+            shared = new CachedTimeSource(DEFAULT_RESOLUTION);
+        return shared;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * Stops sampling the system clock; the time read no longer moves.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
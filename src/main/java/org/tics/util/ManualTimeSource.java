@@ -0,0 +1,35 @@
+package org.tics.util;
+
+/**
+ * Clock that only moves when told to, for simulations and tests: hold expiry follows it at whatever pace the
+ * caller advances it.
+ */
+public class ManualTimeSource extends TimeSource {
+
+    private volatile long now;
+
+    public ManualTimeSource(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * @param nowMillis the new time, not before the current one
+     */
+    public synchronized void set(long nowMillis) {
+        if(nowMillis < now)
+            throw new IllegalArgumentException("time cannot go back");
+        this.now = nowMillis;
+    }
+
+    /**
+     * @param millis the time to move forward by
+     */
+    public synchronized void advance(long millis) {
+        set(now + millis);
+    }
+}
@@ -4,6 +4,7 @@ import java.util.UUID;
 
 /**
  * Generator for reservation id.
+ * The default ids are random UUIDs; see {@link SnowflakeIdGenerator} for compact, time ordered ids.
  */
 public class ReservationIdGenerator {
 
@@ -12,4 +13,13 @@ public class ReservationIdGenerator {
         return UUID.randomUUID().toString();
     }
 
-}
\ No newline at end of file
+    /**
+     * Makes sure the ids generated from now on come after the given id, e.g. the last id recovered on restart.
+     * Random ids are unordered, so the default does nothing.
+     *
+     * @param lastId an id generated earlier
+     */
+    public void resumeAfter(String lastId) {
+    }
+
+}
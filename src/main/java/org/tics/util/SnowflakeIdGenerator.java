@@ -0,0 +1,123 @@
+package org.tics.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reservation id generator producing 64-bit, time ordered ids rendered as 13 characters of Crockford base32.
+ * <p>
+ * An id is made of 41 bits of milliseconds since {@link #EPOCH}, a {@value #NODE_BITS}-bit node id and a
+ * {@value #SEQUENCE_BITS}-bit sequence within the millisecond. The timestamp and the sequence are kept in a single
+ * atomic long updated by compare-and-set, so generating an id takes no lock and no entropy. When more than 4096 ids
+ * are requested within a millisecond, or the clock goes backwards, the generator borrows from the next millisecond
+ * rather than waiting, so the ids stay unique and increasing.
+ * <p>
+ * The rendered ids sort in the order they were generated. Ids are unique across nodes as long as every node has its
+ * own node id, and across restarts as long as the clock does not go back past the last id issued
+ * (see {@link #resumeAfter(String)}).
+ */
+public class SnowflakeIdGenerator extends ReservationIdGenerator {
+
+    public static final long EPOCH = 1577836800000L;//2020-01-01T00:00:00Z
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LENGTH = 13;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long node;
+    //(milliseconds since epoch << SEQUENCE_BITS) | sequence of the last id
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(int nodeId) {
+        if(nodeId < 0 || nodeId > MAX_NODE_ID)
+            throw new IllegalArgumentException("nodeId has to be between 0 and " + MAX_NODE_ID);
+        this.node = nodeId;
+    }
+
+    @Override
+    public String nextId() {
+        return format(nextLongId());
+    }
+
+    /**
+     * @return the next id as a number
+     */
+    public long nextLongId() {
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long last, next;
+        do {
+            last = lastState.get();
+            next = now > last ? now : last + 1;
+        } while(!lastState.compareAndSet(last, next));
+        return toId(next);
+    }
+
+    /**
+     * Ids of another format (e.g. UUIDs issued before switching generators) are ignored.
+     */
+    @Override
+    public void resumeAfter(String lastId) {
+        long id = tryParse(lastId);
+        if(id < 0)
+            return;
+        long state = ((id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS) | (id & SEQUENCE_MASK);
+        lastState.accumulateAndGet(state, Math::max);
+    }
+
+    private long toId(long state) {
+        return ((state >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (state & SEQUENCE_MASK);
+    }
+
+    /**
+     * @return the id rendered as fixed width base32, most significant digit first
+     */
+    public static String format(long id) {
+        char[] chars = new char[LENGTH];
+        for(int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    public static long parse(String id) {
+        long value = tryParse(id);
+        if(value < 0)
+            throw new IllegalArgumentException("invalid id " + id);
+        return value;
+    }
+
+    private static long tryParse(String id) {
+        if(id == null || id.length() != LENGTH)
+            return -1;
+        long value = 0;
+        for(int i = 0; i < LENGTH; i++) {
+            int digit = digit(id.charAt(i));
+            if(digit < 0)
+                return -1;
+            value = (value << 5) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return the time the id was generated at, in milliseconds since the Unix epoch
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    private static int digit(char c) {
+        for(int i = 0; i < ALPHABET.length; i++) {
+            if(ALPHABET[i] == c)
+                return i;
+        }
+        return -1;
+    }
+}
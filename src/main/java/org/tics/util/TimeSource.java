@@ -0,0 +1,14 @@
+package org.tics.util;
+
+/**
+ * Source of the current time, in epoch milliseconds, for hold expiry.
+ * The default reads the system clock on every call; see {@link CachedTimeSource} for a coarse clock that is cheaper
+ * on the hot path and {@link ManualTimeSource} for simulations.
+ */
+public class TimeSource {
+
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+}
@@ -0,0 +1,118 @@
+package org.tics.ticket;
+
+import org.junit.Test;
+import org.tics.seat.SeatHold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncTicketServiceTest {
+
+    @Test
+    public void holdAndReserveManyRequests() throws Exception {
+        TicketServiceImpl impl = new TicketServiceImpl(100, 100, 60 * 1000);
+        try(AsyncTicketService service = new AsyncTicketService(impl)) {
+            List<CompletableFuture<String>> reservations = new ArrayList<>();
+            for(int i = 0; i < 2000; i++) {
+                reservations.add(service.findAndHoldSeats(5, "a@a.com")
+                        .thenCompose(hold -> service.reserveSeats(hold.getHoldId(), "a@a.com")));
+            }
+            for(CompletableFuture<String> reservation : reservations) {
+                assertNotNull(reservation.get());
+            }
+            assertEquals(0, service.numSeatsAvailable());
+            assertNotNull(service.findAndHoldSeats(1, "a@a.com").get().getErrorInfo());
+            assertNull(service.reserveSeats(12345, "a@a.com").get());
+        }
+    }
+
+    @Test
+    public void rejectWhenQueueIsFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TicketServiceImpl impl = new TicketServiceImpl(10, 10, 60 * 1000);
+        TicketService slow = new TicketService() {
+            @Override
+            public int numSeatsAvailable() {
+                return impl.numSeatsAvailable();
+            }
+
+            @Override
+            public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return impl.findAndHoldSeats(numSeats, customerEmail);
+            }
+
+            @Override
+            public String reserveSeats(int seatHoldId, String customerEmail) {
+                return impl.reserveSeats(seatHoldId, customerEmail);
+            }
+        };
+        try(AsyncTicketService service = new AsyncTicketService(slow, 2, 1, 0)) {
+            CompletableFuture<SeatHold> first = service.findAndHoldSeats(1, "a@a.com");
+            blocked.await();
+            CompletableFuture<SeatHold> second = service.findAndHoldSeats(1, "a@a.com");
+            CompletableFuture<String> third = service.reserveSeats(1, "a@a.com");
+            CompletableFuture<SeatHold> busy = service.findAndHoldSeats(1, "a@a.com");
+            CompletableFuture<String> busyReserve = service.reserveSeats(1, "a@a.com");
+
+            assertEquals("BUSY", busy.get().getErrorInfo().getErrorCode());
+            try {
+                busyReserve.get();
+                fail("reservation should be rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            assertEquals(2, service.getRejectedCount());
+            assertEquals(2, service.getQueueDepth());
+
+            release.countDown();
+            assertNull(first.get().getErrorInfo());
+            assertNull(second.get().getErrorInfo());
+            //served, though there is no such hold
+            assertNull(third.get());
+        }
+    }
+
+    @Test
+    public void closeWhileProducing() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for(int run = 0; run < 20; run++) {
+                TicketServiceImpl impl = new TicketServiceImpl(100, 100, 60 * 1000);
+                AsyncTicketService service = new AsyncTicketService(impl, 16, 8, 1);
+                List<Future<?>> producers = new ArrayList<>();
+                for(int t = 0; t < 4; t++) {
+                    producers.add(executor.submit(() -> {
+                        //every request is either served or turned down, none is left hanging
+                        for(int i = 0; i < 500; i++) {
+                            assertNotNull(service.findAndHoldSeats(1, "a@a.com").get(5, TimeUnit.SECONDS));
+                        }
+                        return null;
+                    }));
+                }
+                service.close();
+                for(Future<?> producer : producers) {
+                    producer.get(10, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
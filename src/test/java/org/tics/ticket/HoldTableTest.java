@@ -0,0 +1,84 @@
+package org.tics.ticket;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class HoldTableTest {
+
+    private static final String CUSTOMER = "a@a.com";
+
+    @Test
+    public void rejectStaleAndForgedIds() {
+        HoldTable table = new HoldTable(4, 0, 31);
+        SeatBlockHold hold = new SeatBlockHold();
+        int holdId = table.add(hold, CUSTOMER);
+        assertEquals(holdId, hold.getHoldId());
+        assertSame(hold, table.get(holdId));
+
+        assertNull(table.remove(holdId + 1, CUSTOMER));
+        assertNull(table.remove(holdId, "b@b.com"));
+        //same hash, other customer
+        assertEquals(HoldTable.customerHash("Aa@a.com"), HoldTable.customerHash("BB@a.com"));
+        SeatBlockHold other = new SeatBlockHold();
+        int otherId = table.add(other, "Aa@a.com");
+        assertNull(table.get(otherId, "BB@a.com"));
+        assertNull(table.remove(otherId, "BB@a.com"));
+        assertSame(other, table.remove(otherId, "Aa@a.com"));
+        assertSame(hold, table.remove(holdId, CUSTOMER));
+        assertNull(table.remove(holdId, CUSTOMER));
+
+        //the slot is reused under a new generation
+        SeatBlockHold next = new SeatBlockHold();
+        int nextId = table.add(next, CUSTOMER);
+        assertNotEquals(holdId, nextId);
+        assertNull(table.get(holdId));
+        assertFalse(table.remove(hold));
+        assertTrue(table.remove(next));
+        assertTrue(table.isEmpty());
+    }
+
+    @Test
+    public void fillToCapacity() {
+        HoldTable table = new HoldTable(5, 0, 31);
+        Set<Integer> ids = new HashSet<>();
+        for(int i = 0; i < 5; i++) {
+            ids.add(table.add(new SeatBlockHold(), CUSTOMER));
+        }
+        assertEquals(5, ids.size());
+        assertEquals(0, table.add(new SeatBlockHold(), CUSTOMER));
+        int released = ids.iterator().next();
+        assertNotNull(table.remove(released, CUSTOMER));
+        assertNotEquals(0, table.add(new SeatBlockHold(), CUSTOMER));
+    }
+
+    @Test
+    public void restoreKeepsIds() {
+        HoldTable table = new HoldTable(8, 1 << 20, 20);
+        SeatBlockHold first = new SeatBlockHold();
+        int firstId = table.add(first, CUSTOMER);
+
+        HoldTable restored = new HoldTable(8, 1 << 20, 20);
+        assertTrue(restored.restore(first, CUSTOMER));
+        assertFalse(restored.restore(first, CUSTOMER));
+        assertFalse(restored.restore(new SeatBlockHold(firstId & 0xFFFFF), CUSTOMER));
+        assertSame(first, restored.get(firstId));
+        Set<Integer> slots = new HashSet<>();
+        for(int i = 0; i < 7; i++) {
+            int holdId = restored.add(new SeatBlockHold(), CUSTOMER);
+            assertNotEquals(0, holdId);
+            assertEquals(1 << 20, holdId & ~0xFFFFF);
+            slots.add(holdId & 7);
+        }
+        assertFalse(slots.contains(firstId & 7));
+        assertEquals(0, restored.add(new SeatBlockHold(), CUSTOMER));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void idBitsTooSmall() {
+        new HoldTable(1 << 16, 0, 18);
+    }
+}
@@ -0,0 +1,38 @@
+package org.tics.ticket;
+
+import org.junit.Test;
+import org.tics.util.ManualTimeSource;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class IdempotencyCacheTest {
+
+    @Test
+    public void keepSuccessfulResultsForTtl() {
+        ManualTimeSource clock = new ManualTimeSource(0);
+        IdempotencyCache<String> cache = new IdempotencyCache<>(1000, 1000, clock);
+        AtomicInteger runs = new AtomicInteger();
+        assertEquals("r1", cache.execute("k", () -> "r" + runs.incrementAndGet(), r -> true));
+        assertEquals("r1", cache.execute("k", () -> "r" + runs.incrementAndGet(), r -> true));
+        assertEquals(1, runs.get());
+        clock.advance(1000);
+        assertEquals("r2", cache.execute("k", () -> "r" + runs.incrementAndGet(), r -> true));
+
+        //failed results are not kept
+        assertNull(cache.execute("f", () -> null, r -> r != null));
+        assertEquals("r3", cache.execute("f", () -> "r" + runs.incrementAndGet(), r -> r != null));
+    }
+
+    @Test
+    public void boundedSize() {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>(60 * 1000, 16 * 8, new ManualTimeSource(0));
+        for(int i = 0; i < 10_000; i++) {
+            int n = i;
+            cache.execute("k" + i, () -> n, r -> true);
+        }
+        assertTrue(cache.size() <= 16 * 8);
+        assertEquals(Integer.valueOf(9_999), cache.execute("k9999", () -> -1, r -> true));
+    }
+}
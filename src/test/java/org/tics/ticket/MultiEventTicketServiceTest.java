@@ -0,0 +1,143 @@
+package org.tics.ticket;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tics.seat.SeatHold;
+import org.tics.util.ManualTimeSource;
+
+import static org.junit.Assert.*;
+
+public class MultiEventTicketServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHoldAndReserveAcrossEvents() throws Exception {
+        try(MultiEventTicketService service = new MultiEventTicketService(1, 60_000)) {
+            service.registerEvent("concert", new TicketServiceConfig(2, 5, 10_000));
+            service.registerEvent("play", new TicketServiceConfig(3, 3, 10_000));
+            assertEquals(0, service.getActiveEventCount());
+
+            SeatHold concertHold = service.findAndHoldSeats("concert", 2, "a@a.com");
+            SeatHold playHold = service.forEvent("play").findAndHoldSeats(4, "b@b.com");
+            assertEquals(2, service.getActiveEventCount());
+            assertNotEquals(concertHold.getHoldId(), playHold.getHoldId());
+            assertNotEquals(MultiEventTicketService.eventSlotOf(concertHold.getHoldId()),
+                    MultiEventTicketService.eventSlotOf(playHold.getHoldId()));
+            assertEquals(8, service.numSeatsAvailable("concert"));
+            assertEquals(5, service.numSeatsAvailable("play"));
+
+            //an event scoped view only reserves its own holds
+            assertNull(service.forEvent("concert").reserveSeats(playHold.getHoldId(), "b@b.com"));
+            assertNotNull(service.reserveSeats(playHold.getHoldId(), "b@b.com"));
+            assertNotNull(service.forEvent("concert").reserveSeats(concertHold.getHoldId(), "a@a.com"));
+            assertNull(service.reserveSeats(concertHold.getHoldId(), "a@a.com"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateEvent() throws Exception {
+        try(MultiEventTicketService service = new MultiEventTicketService(1, 60_000)) {
+            service.registerEvent("concert", new TicketServiceConfig(2, 5));
+            service.registerEvent("concert", new TicketServiceConfig(2, 5));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEventTooLarge() throws Exception {
+        try(MultiEventTicketService service = new MultiEventTicketService(1, 60_000)) {
+            service.registerEvent("stadium", new TicketServiceConfig(400, 200));
+        }
+    }
+
+    @Test
+    public void testLargestEvent() throws Exception {
+        try(MultiEventTicketService service = new MultiEventTicketService(1, 60_000)) {
+            service.registerEvent("arena", new TicketServiceConfig(256, 256, 10_000));
+            SeatHold hold = service.findAndHoldSeats("arena", 2, "a@a.com");
+            assertNotNull(service.reserveSeats(hold.getHoldId(), "a@a.com"));
+        }
+    }
+
+    @Test
+    public void testEvictIdleEvent() throws Exception {
+        try(MultiEventTicketService service = new MultiEventTicketService(1, 60_000)) {
+            service.registerEvent("concert", new TicketServiceConfig(2, 5, 50));
+            SeatHold hold = service.findAndHoldSeats("concert", 2, "a@a.com");
+
+            //active holds keep the event in memory
+            service.evictIdle(System.currentTimeMillis() + 60_000);
+            assertEquals(1, service.getActiveEventCount());
+
+            Thread.sleep(300);
+            assertEquals(10, service.numSeatsAvailable("concert"));
+            service.evictIdle(System.currentTimeMillis() + 60_000);
+            assertEquals(0, service.getActiveEventCount());
+
+            //the hold ids of the evicted event are not valid in the recreated one
+            SeatHold next = service.findAndHoldSeats("concert", 2, "b@b.com");
+            assertNull(service.reserveSeats(hold.getHoldId(), "a@a.com"));
+            assertNotNull(service.reserveSeats(next.getHoldId(), "b@b.com"));
+
+            //a reservation kept in memory only pins the event
+            service.evictIdle(System.currentTimeMillis() + 60_000);
+            assertEquals(1, service.getActiveEventCount());
+        }
+    }
+
+    @Test
+    public void testEvictOnManualClock() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(1_000_000);
+        try(MultiEventTicketService service = new MultiEventTicketService(1, 60_000, clock)) {
+            service.registerEvent("concert", new TicketServiceConfig(2, 5, 10_000));
+            SeatHold hold = service.findAndHoldSeats("concert", 2, "a@a.com");
+            assertEquals(1_000_000 + 10_000, hold.getExpiryMillis());
+            assertNotNull(service.releaseSeats(hold.getHoldId(), "a@a.com", 2));
+
+            clock.advance(60_000 - 1);
+            service.evictIdle(clock.currentTimeMillis());
+            assertEquals(1, service.getActiveEventCount());
+            clock.advance(1);
+            service.evictIdle(clock.currentTimeMillis());
+            assertEquals(0, service.getActiveEventCount());
+        }
+    }
+
+    @Test
+    public void testEvictJournaledEvent() throws Exception {
+        try(MultiEventTicketService service = new MultiEventTicketService(1, 60_000)) {
+            TicketServiceConfig config = new TicketServiceConfig(2, 5, 10_000);
+            config.setJournalDirectory(folder.newFolder().toPath());
+            service.registerEvent("concert", config);
+            SeatHold hold = service.findAndHoldSeats("concert", 3, "a@a.com");
+            assertNotNull(service.reserveSeats(hold.getHoldId(), "a@a.com"));
+
+            service.evictIdle(System.currentTimeMillis() + 60_000);
+            assertEquals(0, service.getActiveEventCount());
+            assertEquals(7, service.numSeatsAvailable("concert"));
+            assertEquals(1, service.getActiveEventCount());
+        }
+    }
+
+    @Test
+    public void testRemoveEvent() throws Exception {
+        try(MultiEventTicketService service = new MultiEventTicketService(1, 60_000)) {
+            service.registerEvent("concert", new TicketServiceConfig(2, 5, 10_000));
+            TicketService concert = service.forEvent("concert");
+            SeatHold hold = service.findAndHoldSeats("concert", 2, "a@a.com");
+            assertTrue(service.removeEvent("concert"));
+            assertFalse(service.removeEvent("concert"));
+            assertNull(service.reserveSeats(hold.getHoldId(), "a@a.com"));
+
+            //requests for a removed event are answered with an error hold
+            assertEquals("UNKNOWN_EVENT", service.findAndHoldSeats("concert", 2, "a@a.com")
+                    .getErrorInfo().getErrorCode());
+            assertEquals("UNKNOWN_EVENT", concert.findAndHoldSeats(2, "a@a.com").getErrorInfo().getErrorCode());
+            //its holds are unknown
+            assertNull(service.extendHold(hold.getHoldId(), "a@a.com", 1000));
+            assertNull(service.releaseSeats(hold.getHoldId(), "a@a.com", 1));
+        }
+    }
+}
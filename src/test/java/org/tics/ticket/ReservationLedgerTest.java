@@ -0,0 +1,64 @@
+package org.tics.ticket;
+
+import org.junit.Test;
+import org.tics.seat.Reservation;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReservationLedgerTest {
+
+    private static List<SeatBlock> seats(int row, int col, int length) {
+        SeatBlock seatBlock = new SeatBlock(row, col);
+        seatBlock.setLength(length);
+        return Collections.singletonList(seatBlock);
+    }
+
+    @Test
+    public void lookUpByIdCustomerAndSeat() {
+        int rows = 100, seatsInRow = 50;
+        ReservationLedger ledger = new ReservationLedger(rows, seatsInRow);
+        //enough reservations and customers to grow the columns and tables a few times
+        for(int row = 1; row <= rows; row++) {
+            for(int col = 1; col <= seatsInRow; col += 5) {
+                int n = (row - 1) * seatsInRow + col;
+                ledger.add("res-" + n, n, "c" + (n % 500) + "@a.com", seats(row, col, 5));
+            }
+        }
+        assertEquals(1000, ledger.size());
+
+        Reservation reservation = ledger.get("res-611");
+        assertEquals(611, reservation.getHoldId());
+        assertEquals(5, reservation.getNumSeats());
+        assertEquals(13, reservation.getSeatRuns().getRow(0));
+        assertEquals(11, reservation.getSeatRuns().getStartCol(0));
+        assertNull(ledger.get("res-612"));
+
+        assertEquals("res-611", ledger.getBySeat(13, 15).getReservationId());
+        assertEquals("res-616", ledger.getBySeat(13, 16).getReservationId());
+        assertNull(ledger.getBySeat(101, 1));
+
+        //holds 111, 611, ..., 4611 share the customer
+        List<Reservation> customer = ledger.getByCustomer("c111@a.com");
+        assertEquals(10, customer.size());
+        assertEquals("res-111", customer.get(0).getReservationId());
+        assertEquals("res-611", customer.get(1).getReservationId());
+        assertEquals("res-4611", customer.get(9).getReservationId());
+        assertTrue(ledger.getByCustomer("nobody@a.com").isEmpty());
+
+        //same hash, other customer
+        ReservationLedger colliding = new ReservationLedger(2, 5);
+        colliding.add("res-aa", 1, "Aa@a.com", seats(1, 1, 2));
+        assertTrue(colliding.getByCustomer("BB@a.com").isEmpty());
+        assertEquals(1, colliding.getByCustomer("Aa@a.com").size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectDuplicateId() {
+        ReservationLedger ledger = new ReservationLedger(2, 5);
+        ledger.add("res", 1, "a@a.com", seats(1, 1, 2));
+        ledger.add("res", 2, "a@a.com", seats(2, 1, 2));
+    }
+}
@@ -0,0 +1,111 @@
+package org.tics.ticket;
+
+import org.junit.Test;
+import org.tics.seat.SeatHold;
+import org.tics.ticket.inventory.InventoryMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTicketServiceTest {
+
+    @Test
+    public void testHoldAndReserveSeats() throws Exception {
+        try(RingBufferTicketService service = new RingBufferTicketService(new TicketServiceConfig(2, 5, 10 * 1000), 8)) {
+            SeatHold hold = service.findAndHoldSeats(3, "a@a.com");
+            assertNull(hold.getErrorInfo());
+            assertEquals(3, hold.getSeats().size());
+            assertEquals(7, service.numSeatsAvailable());
+            assertNotNull(service.reserveSeats(hold.getHoldId(), "a@a.com"));
+            assertNull(service.reserveSeats(hold.getHoldId(), "a@a.com"));
+            assertNotNull(service.findAndHoldSeats(8, "a@a.com").getErrorInfo());
+            assertEquals(7, service.numSeatsAvailable());
+        }
+    }
+
+    @Test
+    public void testHoldExpiry() throws Exception {
+        try(RingBufferTicketService service = new RingBufferTicketService(new TicketServiceConfig(2, 5, 100))) {
+            SeatHold hold = service.findAndHoldSeats(4, "a@a.com");
+            assertEquals(6, service.numSeatsAvailable());
+            Thread.sleep(400);
+            assertEquals(10, service.numSeatsAvailable());
+            assertNull(service.reserveSeats(hold.getHoldId(), "a@a.com"));
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersWrapTheRing() throws Exception {
+        TicketServiceConfig config = new TicketServiceConfig(100, 100, 60 * 1000);
+        config.setInventoryMode(InventoryMode.ROW_BITMAP);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try(RingBufferTicketService service = new RingBufferTicketService(config, 64)) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for(int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    int reserved = 0;
+                    List<CompletableFuture<String>> reservations = new ArrayList<>();
+                    while(true) {
+                        SeatHold hold = service.findAndHoldSeatsAsync(4, "a@a.com").get();
+                        if(hold.getErrorInfo() != null)
+                            break;
+                        reservations.add(service.reserveSeatsAsync(hold.getHoldId(), "a@a.com"));
+                    }
+                    for(CompletableFuture<String> reservation : reservations) {
+                        if(reservation.get() != null)
+                            reserved += 4;
+                    }
+                    return reserved;
+                }));
+            }
+            int total = 0;
+            for(Future<Integer> result : results) {
+                total += result.get();
+            }
+            assertEquals(100 * 100, total);
+            assertEquals(0, service.numSeatsAvailable());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseWhileProducing() throws Exception {
+        TicketServiceConfig config = new TicketServiceConfig(100, 100, 60 * 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for(int run = 0; run < 20; run++) {
+                RingBufferTicketService service = new RingBufferTicketService(config, 8);
+                List<Future<?>> producers = new ArrayList<>();
+                for(int t = 0; t < 4; t++) {
+                    producers.add(executor.submit(() -> {
+                        //every request either completes or is rejected, none is left hanging
+                        for(int i = 0; i < 1000; i++) {
+                            try {
+                                service.findAndHoldSeatsAsync(1, "a@a.com").get(5, TimeUnit.SECONDS);
+                            } catch(ExecutionException e) {
+                                assertTrue(e.getCause() instanceof RejectedExecutionException);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                service.close();
+                for(Future<?> producer : producers) {
+                    producer.get(10, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
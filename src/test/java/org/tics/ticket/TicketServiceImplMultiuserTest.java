@@ -3,10 +3,14 @@ package org.tics.ticket;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.tics.seat.SeatHold;
+import org.tics.seat.SeatInfo;
+import org.tics.ticket.inventory.InventoryMode;
+import org.tics.util.ManualTimeSource;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -32,6 +36,9 @@ public class TicketServiceImplMultiuserTest {
                 for(int i=0;i<N*2;i++) {
                     SeatHold hold = impl.findAndHoldSeats(numPerRequest, "a@a.com");
                     assertNotNull(hold);
+                    //sold out
+                    if(hold.getErrorInfo() != null)
+                        continue;
                     assertNotNull(impl.reserveSeats(hold.getHoldId(), "a@a.com"));
                     reqCnt.updateAndGet(x -> x + numPerRequest);
                     holds.add(hold);
@@ -43,13 +50,9 @@ public class TicketServiceImplMultiuserTest {
                 }
             }));
         }
+        for(Future future : futures)
+            future.get();
         executor.shutdown();
-        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
-        try {
-            Thread.sleep(10 * 1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
         int holdCount = holds.stream().mapToInt( h -> h!= null ? h.getNumSeats() :0).sum();
         assertEquals(reqCnt.get(), holdCount);
         assertEquals(N * M - reqCnt.get(), impl.numSeatsAvailable());
@@ -59,7 +62,10 @@ public class TicketServiceImplMultiuserTest {
     @Test
     public void testReserveTicketsConcurrentRandom() throws Exception {
         int N = 20, M = 50;
-        TicketServiceImpl impl = new TicketServiceImpl(N, M);
+        ManualTimeSource clock = new ManualTimeSource(0);
+        TicketServiceConfig config = new TicketServiceConfig(N, M);
+        config.setTimeSource(clock);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
         assertEquals(N*M, impl.numSeatsAvailable());
 
         int threadCnt = 10;
@@ -75,7 +81,7 @@ public class TicketServiceImplMultiuserTest {
                     assertTrue(curRqCnt > 0 && curRqCnt <= 5);
                     SeatHold hold = impl.findAndHoldSeats(curRqCnt, "a@a.com");
                     assertNotNull(hold);
-                    if(curRqCnt % 2 == 0) {
+                    if(hold.getErrorInfo() == null && curRqCnt % 2 == 0) {
                         assertNotNull(impl.reserveSeats(hold.getHoldId(), "a@a.com"));
                         reqCnt.updateAndGet( x -> x + curRqCnt);
                         holds.add(hold);
@@ -83,15 +89,51 @@ public class TicketServiceImplMultiuserTest {
                 }
             }));
         }
-        try {
-            Thread.sleep(15* 1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-        while(executor.getCompletedTaskCount() != threadCnt);
+        for(Future future : futures)
+            future.get();
+        executor.shutdown();
+        //the holds left unreserved expire after the hold period
+        clock.advance(config.getHoldPeriod() + config.getSweepInterval());
+        impl.cleanExpiredHolds();
         assertEquals(N * M - reqCnt.get(), impl.numSeatsAvailable());
         int holdCount = holds.stream().mapToInt( h -> h!= null ? h.getNumSeats() :0).sum();
         assertEquals(reqCnt.get(), holdCount);
+        impl.close();
+    }
+
+    @Test
+    public void testHoldTicketsConcurrentStriped() throws Exception {
+        int N = 1000, M = 50;
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 60 * 1000);
+        config.setInventoryMode(InventoryMode.STRIPED_ROW_BITMAP);
+        config.setStripes(16);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+
+        int threadCnt = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCnt);
+        Set<String> seats = ConcurrentHashMap.newKeySet();
+        AtomicInteger heldCnt = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for(int j=0;j<threadCnt;j++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for(int i=0;i<2000;i++) {
+                    SeatHold hold = impl.findAndHoldSeats(random.nextInt(1, 10), "a@a.com");
+                    if(hold.getErrorInfo() != null)
+                        continue;
+                    heldCnt.addAndGet(hold.getNumSeats());
+                    for(SeatInfo seat : hold.getSeats()) {
+                        assertTrue(seats.add(seat.getRow() + ":" + seat.getCol()));
+                    }
+                }
+            }));
+        }
+        for(Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+        assertEquals(heldCnt.get(), seats.size());
+        assertEquals(N * M - heldCnt.get(), impl.numSeatsAvailable());
+        impl.turnOffSchedule();
     }
 
     @Ignore
@@ -1,13 +1,38 @@
 package org.tics.ticket;
 
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tics.seat.HoldRequest;
+import org.tics.seat.Reservation;
+import org.tics.seat.ReserveRequest;
 import org.tics.seat.SeatHold;
+import org.tics.seat.SeatInfo;
+import org.tics.seat.SeatRuns;
+import org.tics.ticket.expiry.SkipListExpiryEngine;
+import org.tics.ticket.inventory.InventoryMode;
+import org.tics.ticket.journal.HoldJournalTest;
+import org.tics.ticket.metrics.MetricsSnapshot;
+import org.tics.ticket.seatmap.SeatMapSnapshot;
+import org.tics.ticket.venue.VenueLayout;
+import org.tics.util.ManualTimeSource;
+import org.tics.util.SnowflakeIdGenerator;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
 public class TicketServiceImplTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testHoldAndReserveSeats() throws Exception {
         int N = 2, M = 5;
@@ -82,6 +107,48 @@ public class TicketServiceImplTest {
         assertEquals(N*M, impl.numSeatsAvailable());
     }
 
+    @Test
+    public void expireOnManualClock() throws Exception {
+        int N = 2, M = 5;
+        for(boolean skipList : new boolean[]{false, true}) {
+            ManualTimeSource clock = new ManualTimeSource(1_000_000);
+            TicketServiceConfig config = new TicketServiceConfig(N, M, 60*60*1000);
+            config.setTimeSource(clock);
+            if(skipList)
+                config.setExpiryEngine(new SkipListExpiryEngine(config.getSweepInterval()));
+            TicketServiceImpl impl = new TicketServiceImpl(config);
+            SeatHold hold = impl.findAndHoldSeats(2, "a@a.com");
+            assertEquals(1_000_000 + 60*60*1000, hold.getExpiryMillis());
+            clock.advance(60*60*1000 - 1);
+            impl.cleanExpiredHolds();
+            assertEquals(N*M-2, impl.numSeatsAvailable());
+            clock.advance(config.getSweepInterval() + 1);
+            impl.cleanExpiredHolds();
+            assertEquals(N*M, impl.numSeatsAvailable());
+            assertNull(impl.reserveSeats(hold.getHoldId(), "a@a.com"));
+            impl.close();
+        }
+    }
+
+    @Test
+    public void configureSuppliedExpiryEngine() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(1_000_000);
+        TicketServiceConfig config = new TicketServiceConfig(2, 5, 1000);
+        config.setTimeSource(clock);
+        config.setExpiryEngine(new SkipListExpiryEngine(10));
+        config.setJournalDirectory(folder.getRoot().toPath());
+        CountDownLatch failed = new CountDownLatch(1);
+        config.setErrorHandler(e -> failed.countDown());
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        impl.findAndHoldSeats(2, "a@a.com");
+        impl.getJournal().close();
+        //the engine sweeps on the manual clock and reports the failed expiry to the configured handler
+        clock.advance(1000 + 1);
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertEquals(10, impl.numSeatsAvailable());
+        impl.close();
+    }
+
     @Test
     public void findAndHoldSeatsOverTheLimit() throws Exception {
         int N = 2, M = 5;
@@ -92,6 +159,220 @@ public class TicketServiceImplTest {
         assertEquals(N*M, impl.numSeatsAvailable());
     }
 
+    @Test
+    public void reserveManyHoldsOutOfOrder() throws Exception {
+        int N = 20, M = 50;
+        TicketServiceImpl impl = new TicketServiceImpl(N, M, 60*1000);
+        SeatHold[] holds = new SeatHold[N];
+        for(int i=0;i<N;i++) {
+            holds[i] = impl.findAndHoldSeats(M, "a@a.com");
+            assertNull(holds[i].getErrorInfo());
+        }
+        assertEquals(0, impl.numSeatsAvailable());
+        for(int i=N-1;i>=0;i--) {
+            assertNotNull(impl.reserveSeats(holds[i].getHoldId(), "a@a.com"));
+            assertNull(impl.reserveSeats(holds[i].getHoldId(), "a@a.com"));
+        }
+        assertEquals(0, impl.numSeatsAvailable());
+    }
+
+    @Test
+    public void findAndHoldSeatsRowBitmapCoalesced() throws Exception {
+        int N = 1, M = 50;
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 1*1000);
+        config.setInventoryMode(InventoryMode.ROW_BITMAP);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        for(int i=0;i<M;i++) {
+            assertNull(impl.findAndHoldSeats(1, "a@a.com").getErrorInfo());
+        }
+        assertEquals(0, impl.numSeatsAvailable());
+        Thread.sleep(3*1000);
+        assertEquals(N*M, impl.numSeatsAvailable());
+        SeatHold hold = impl.findAndHoldSeats(M, "a@a.com");
+        assertNull(hold.getErrorInfo());
+        assertEquals(M, hold.getSeats().size());
+    }
+
+    @Test
+    public void findAndHoldSeatsAsRuns() throws Exception {
+        int N = 2, M = 5;
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 1*1000);
+        config.setInventoryMode(InventoryMode.ROW_BITMAP);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        impl.findAndHoldSeats(3, "a@a.com");
+        impl.findAndHoldSeats(3, "a@a.com");
+        //2 seats left in row 1 and 2 in row 2
+        SeatHold hold = impl.findAndHoldSeats(3, "a@a.com");
+        SeatRuns runs = hold.getSeatRuns();
+        assertEquals(2, runs.size());
+        assertEquals(3, runs.getNumSeats());
+        assertEquals(1, runs.getRow(0));
+        assertEquals(4, runs.getStartCol(0));
+        assertEquals(2, runs.getLength(0));
+        List<SeatInfo> seats = hold.getSeats();
+        assertEquals(3, seats.size());
+        assertEquals(5, seats.get(1).getCol());
+        assertEquals(2, seats.get(2).getRow());
+        assertEquals(4, seats.get(2).getCol());
+    }
+
+    @Test
+    public void findAndHoldSeatsBatch() throws Exception {
+        int N = 2, M = 5;
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 1*1000);
+        config.setInventoryMode(InventoryMode.STRIPED_ROW_BITMAP);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        List<SeatHold> holds = impl.findAndHoldSeatsBatch(Arrays.asList(
+                new HoldRequest(4, "a@a.com"),
+                new HoldRequest(20, "b@b.com"),
+                new HoldRequest(5, "c@c.com"),
+                new HoldRequest(2, "d@d.com")));
+        assertEquals(4, holds.size());
+        assertNull(holds.get(0).getErrorInfo());
+        assertEquals("NOT_AVAILABLE", holds.get(1).getErrorInfo().getErrorCode());
+        assertNull(holds.get(2).getErrorInfo());
+        assertEquals("NOT_AVAILABLE", holds.get(3).getErrorInfo().getErrorCode());
+        assertEquals(holds.get(0).getExpirationTime(), holds.get(2).getExpirationTime());
+        assertEquals(1, impl.numSeatsAvailable());
+        assertNotNull(impl.reserveSeats(holds.get(2).getHoldId(), "c@c.com"));
+    }
+
+    @Test
+    public void recoverFromJournalOnRestart() throws Exception {
+        int N = 2, M = 5;
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 60*1000);
+        config.setJournalDirectory(folder.getRoot().toPath());
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        SeatHold reserved = impl.findAndHoldSeats(3, "a@a.com");
+        assertNotNull(impl.reserveSeats(reserved.getHoldId(), "a@a.com"));
+        SeatHold held = impl.findAndHoldSeats(4, "b@b.com");
+        impl.close();
+
+        impl = new TicketServiceImpl(config);
+        assertEquals(N*M-7, impl.numSeatsAvailable());
+        assertNull(impl.reserveSeats(reserved.getHoldId(), "a@a.com"));
+        assertNotNull(impl.reserveSeats(held.getHoldId(), "b@b.com"));
+        SeatHold next = impl.findAndHoldSeats(3, "c@c.com");
+        assertNotEquals(held.getHoldId(), next.getHoldId());
+        assertEquals(0, impl.numSeatsAvailable());
+        impl.close();
+    }
+
+    @Test
+    public void lookUpReservations() throws Exception {
+        TicketServiceConfig config = new TicketServiceConfig(2, 5, 60*1000);
+        config.setJournalDirectory(folder.getRoot().toPath());
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        SeatHold first = impl.findAndHoldSeats(3, "a@a.com");
+        String firstId = impl.reserveSeats(first.getHoldId(), "a@a.com");
+        SeatHold other = impl.findAndHoldSeats(2, "b@b.com");
+        String otherId = impl.reserveSeats(other.getHoldId(), "b@b.com");
+        SeatHold second = impl.findAndHoldSeats(4, "a@a.com");
+        String secondId = impl.reserveSeatsBatch(Arrays.asList(new ReserveRequest(second.getHoldId(), "a@a.com")))
+                .get(0);
+        SeatHold colliding = impl.findAndHoldSeats(1, "Aa@a.com");
+        assertEquals(2, impl.getReservations("a@a.com").size());
+        impl.close();
+
+        //recovered from the journal
+        impl = new TicketServiceImpl(config);
+        assertEquals(3, impl.getReservationCount());
+        List<Reservation> reservations = impl.getReservations("a@a.com");
+        assertEquals(2, reservations.size());
+        assertEquals(firstId, reservations.get(0).getReservationId());
+        assertEquals(secondId, reservations.get(1).getReservationId());
+        assertEquals(4, reservations.get(1).getNumSeats());
+        assertEquals(second.getHoldId(), impl.getReservation(secondId).getHoldId());
+        SeatInfo seat = other.getSeats().get(1);
+        assertEquals(otherId, impl.getReservation(seat.getRow(), seat.getCol()).getReservationId());
+        assertTrue(impl.getReservations("c@c.com").isEmpty());
+        assertNull(impl.getReservation("unknown"));
+
+        //"BB@a.com" hashes like "Aa@a.com" but does not own its hold
+        assertNull(impl.extendHold(colliding.getHoldId(), "BB@a.com", 1000));
+        assertNull(impl.releaseSeats(colliding.getHoldId(), "BB@a.com", 1));
+        assertNull(impl.reserveSeats(colliding.getHoldId(), "BB@a.com"));
+        assertNotNull(impl.reserveSeats(colliding.getHoldId(), "Aa@a.com"));
+        assertTrue(impl.getReservations("BB@a.com").isEmpty());
+        impl.close();
+    }
+
+    @Test
+    public void reserveBatchWithJournal() throws Exception {
+        int N = 2, M = 5;
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 60*1000);
+        config.setJournalDirectory(folder.getRoot().toPath());
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        SeatHold first = impl.findAndHoldSeats(3, "a@a.com");
+        SeatHold second = impl.findAndHoldSeats(4, "b@b.com");
+        List<String> reservations = impl.reserveSeatsBatch(Arrays.asList(
+                new ReserveRequest(first.getHoldId(), "a@a.com"),
+                new ReserveRequest(-1, "a@a.com"),
+                new ReserveRequest(second.getHoldId(), "b@b.com")));
+        assertNotNull(reservations.get(0));
+        assertNull(reservations.get(1));
+        assertNotNull(reservations.get(2));
+        impl.close();
+
+        impl = new TicketServiceImpl(config);
+        assertEquals(N*M-7, impl.numSeatsAvailable());
+        assertEquals(2, impl.getReservationCount());
+        impl.close();
+    }
+
+    @Test
+    public void extendHold() throws Exception {
+        int N = 2, M = 5;
+        TicketServiceImpl impl = new TicketServiceImpl(N, M, 1*1000);
+        SeatHold hold = impl.findAndHoldSeats(2, "a@a.com");
+        assertNull(impl.extendHold(hold.getHoldId(), "b@b.com", 10*1000));
+        SeatHold extended = impl.extendHold(hold.getHoldId(), "a@a.com", 10*1000);
+        assertEquals(hold.getExpirationTime().plusMillis(10*1000), extended.getExpirationTime());
+        assertEquals(2, extended.getSeatRuns().getNumSeats());
+        Thread.sleep(3*1000);
+        assertEquals(N*M-2, impl.numSeatsAvailable());
+        assertNotNull(impl.reserveSeats(hold.getHoldId(), "a@a.com"));
+        assertNull(impl.extendHold(hold.getHoldId(), "a@a.com", 10*1000));
+    }
+
+    @Test
+    public void releaseSomeSeatsOfHold() throws Exception {
+        int N = 2, M = 5;
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 60*1000);
+        config.setInventoryMode(InventoryMode.ROW_BITMAP);
+        config.setJournalDirectory(folder.getRoot().toPath());
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        SeatHold hold = impl.findAndHoldSeats(7, "a@a.com");
+        SeatHold kept = impl.releaseSeats(hold.getHoldId(), "a@a.com", 3);
+        assertEquals(4, kept.getSeatRuns().getNumSeats());
+        assertEquals(1, kept.getSeatRuns().size());
+        assertEquals(N*M-4, impl.numSeatsAvailable());
+        //the released seats are contiguous with the free ones of row 2
+        assertNull(impl.findAndHoldSeats(5, "b@b.com").getErrorInfo());
+        SeatHold extended = impl.extendHold(hold.getHoldId(), "a@a.com", 60*1000);
+        impl.close();
+
+        impl = new TicketServiceImpl(config);
+        assertEquals(1, impl.numSeatsAvailable());
+        kept = impl.releaseSeats(hold.getHoldId(), "a@a.com", 4);
+        assertEquals(0, kept.getSeatRuns().getNumSeats());
+        assertEquals(extended.getExpirationTime().toEpochMilli(), kept.getExpirationTime().toEpochMilli());
+        assertEquals(5, impl.numSeatsAvailable());
+        assertNull(impl.reserveSeats(hold.getHoldId(), "a@a.com"));
+        impl.close();
+    }
+
+    @Test
+    public void reserveWithAnotherCustomer() throws Exception {
+        int N = 2, M = 5;
+        TicketServiceImpl impl = new TicketServiceImpl(N, M, 10*1000);
+        SeatHold hold = impl.findAndHoldSeats(2, "a@a.com");
+        assertNull(impl.reserveSeats(hold.getHoldId(), "b@b.com"));
+        assertNull(impl.reserveSeats(hold.getHoldId() + 1, "a@a.com"));
+        assertNotNull(impl.reserveSeats(hold.getHoldId(), "a@a.com"));
+        assertEquals(N*M-2, impl.numSeatsAvailable());
+    }
+
     @Test
     public void reserveWithNullHoldId() throws Exception {
         int N = 2, M = 5;
@@ -100,4 +381,338 @@ public class TicketServiceImplTest {
         assertEquals(N*M, impl.numSeatsAvailable());
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void reserveWithSnowflakeIds() throws Exception {
+        TicketServiceConfig config = new TicketServiceConfig(2, 5, 10 * 1000);
+        config.setReservationIdGenerator(new SnowflakeIdGenerator(3));
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        String first = impl.reserveSeats(impl.findAndHoldSeats(2, "a@a.com").getHoldId(), "a@a.com");
+        String second = impl.reserveSeats(impl.findAndHoldSeats(2, "a@a.com").getHoldId(), "a@a.com");
+        assertEquals(13, first.length());
+        assertTrue(second.compareTo(first) > 0);
+    }
+
+    @Test
+    public void recordMetrics() throws Exception {
+        TicketServiceConfig config = new TicketServiceConfig(2, 5, 100);
+        config.setInventoryMode(InventoryMode.ROW_BITMAP);
+        config.setMetricsEnabled(true);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        assertNull(new TicketServiceImpl(2, 5).getMetrics());
+
+        SeatHold reserved = impl.findAndHoldSeats(3, "a@a.com");
+        impl.findAndHoldSeats(2, "a@a.com");
+        assertNotNull(impl.findAndHoldSeats(6, "a@a.com").getErrorInfo());
+        assertNotNull(impl.reserveSeats(reserved.getHoldId(), "a@a.com"));
+        assertNull(impl.reserveSeats(reserved.getHoldId(), "a@a.com"));
+
+        MetricsSnapshot snapshot = impl.getMetrics().snapshot();
+        assertEquals(2, snapshot.getHolds());
+        assertEquals(1, snapshot.getRejected());
+        assertEquals(1, snapshot.getReserves());
+        assertEquals(1, snapshot.getReserveMisses());
+        assertEquals(1, snapshot.getActiveHolds());
+        assertEquals(5, snapshot.getAvailableSeats());
+        assertEquals(5, snapshot.getLargestFreeRun());
+        assertEquals(3, snapshot.getHoldLatency().getCount());
+        assertEquals(2, snapshot.getReserveLatency().getCount());
+
+        Thread.sleep(400);
+        MetricsSnapshot expired = impl.getMetrics().snapshot();
+        assertEquals(1, expired.getExpired());
+        assertEquals(0, expired.getActiveHolds());
+        assertEquals(7, expired.getAvailableSeats());
+        assertEquals(5, expired.getLargestFreeRun());
+        assertEquals(2.0 / 7, expired.getFragmentation(), 0.001);
+        assertTrue(expired.getExpiryLag().getMax() >= 0);
+    }
+
+    @Test
+    public void recordBatchReservesPerRequest() {
+        TicketServiceConfig config = new TicketServiceConfig(2, 5, 60 * 1000);
+        config.setMetricsEnabled(true);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        SeatHold first = impl.findAndHoldSeats(2, "a@a.com");
+        SeatHold second = impl.findAndHoldSeats(2, "b@b.com");
+
+        impl.reserveSeatsBatch(Arrays.asList(new ReserveRequest(first.getHoldId(), "a@a.com"),
+                new ReserveRequest(second.getHoldId(), "b@b.com"),
+                new ReserveRequest(first.getHoldId(), "a@a.com")));
+
+        MetricsSnapshot snapshot = impl.getMetrics().snapshot();
+        assertEquals(2, snapshot.getReserves());
+        assertEquals(1, snapshot.getReserveMisses());
+        //no single request took as long as the batch
+        assertEquals(0, snapshot.getReserveLatency().getCount());
+    }
+
+    @Test
+    public void registerMetricsWithJmx() throws Exception {
+        TicketServiceConfig config = new TicketServiceConfig(2, 5);
+        config.setMetricsEnabled(true);
+        config.setMetricsObjectName("org.tics:type=TicketService,name=test");
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        impl.findAndHoldSeats(2, "a@a.com");
+        javax.management.ObjectName name = new javax.management.ObjectName("org.tics:type=TicketService,name=test");
+        javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        assertEquals(1L, server.getAttribute(name, "HoldCount"));
+        assertEquals(8, server.getAttribute(name, "AvailableSeats"));
+        impl.close();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void holdSeatsInZone() throws Exception {
+        VenueLayout layout = VenueLayout.parse(
+                "section floor tier standard\n" +
+                "rows 2x5\n" +
+                "section box tier premium\n" +
+                "rows 1x3\n");
+        for(InventoryMode inventoryMode : InventoryMode.values()) {
+            TicketServiceConfig config = new TicketServiceConfig(layout, 1000);
+            config.setInventoryMode(inventoryMode);
+            TicketServiceImpl impl = new TicketServiceImpl(config);
+            assertEquals(13, impl.numSeatsAvailable());
+            SeatHold box = impl.findAndHoldSeats(3, "a@a.com", "premium");
+            assertNull(box.getErrorInfo());
+            assertEquals(3, box.getSeats().get(0).getRow());
+            assertEquals(0, impl.numSeatsAvailable("box"));
+            assertNotNull(impl.findAndHoldSeats(1, "b@b.com", "box").getErrorInfo());
+            SeatHold floor = impl.findAndHoldSeats(4, "b@b.com");
+            assertTrue(floor.getSeats().get(0).getRow() <= 2);
+            assertEquals(6, impl.numSeatsAvailable("standard"));
+            assertNotNull(impl.reserveSeats(box.getHoldId(), "a@a.com"));
+            try {
+                impl.findAndHoldSeats(1, "c@c.com", "standing");
+                fail("unknown zone");
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+            impl.close();
+        }
+    }
+
+    @Test
+    public void publishSeatMap() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(0);
+        VenueLayout layout = VenueLayout.parse("section floor\nrows 2x4\nblocked 2:4\n");
+        TicketServiceConfig config = new TicketServiceConfig(layout, 1000);
+        config.setTimeSource(clock);
+        config.setSeatMapEnabled(true);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        assertEquals(7, impl.getSeatMap().snapshot().getNumSeatsAvailable());
+        SeatHold hold = impl.findAndHoldSeats(4, "a@a.com");
+        clock.advance(TicketServiceConfig.DEFAULT_HOLD_PERIOD);
+        SeatMapSnapshot snapshot = impl.getSeatMap().snapshot();
+        assertEquals(3, snapshot.getNumSeatsAvailable());
+        assertFalse(snapshot.isAvailable(hold.getSeats().get(0).getRow(), 1));
+        assertFalse(snapshot.isAvailable(2, 4));
+        assertNull(new TicketServiceImpl(2, 5).getSeatMap());
+        impl.close();
+    }
+
+    @Test
+    public void waitForExpiringSeats() throws Exception {
+        int N = 2, M = 5;
+        ManualTimeSource clock = new ManualTimeSource(0);
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 1000);
+        config.setTimeSource(clock);
+        config.setWaitlistEnabled(true);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        SeatHold full = impl.findAndHoldSeats(N*M, "a@a.com");
+        CompletableFuture<SeatHold> waiting = impl.findAndHoldSeatsOrWait(3, "b@b.com", 60*1000);
+        CompletableFuture<SeatHold> timedOut = impl.findAndHoldSeatsOrWait(4, "c@c.com", 10);
+        assertFalse(waiting.isDone());
+        assertEquals("NOT_AVAILABLE", timedOut.get(5, TimeUnit.SECONDS).getErrorInfo().getErrorCode());
+        assertEquals(1, impl.getWaitlistSize());
+
+        clock.advance(1000 + config.getSweepInterval());
+        impl.cleanExpiredHolds();
+        SeatHold hold = waiting.get(5, TimeUnit.SECONDS);
+        assertNull(hold.getErrorInfo());
+        assertEquals(3, hold.getNumSeats());
+        assertEquals(0, impl.getWaitlistSize());
+        assertEquals(N*M-3, impl.numSeatsAvailable());
+        assertNull(impl.reserveSeats(full.getHoldId(), "a@a.com"));
+        assertNotNull(impl.reserveSeats(hold.getHoldId(), "b@b.com"));
+
+        CompletableFuture<SeatHold> served = impl.findAndHoldSeatsOrWait(2, "d@d.com", 60*1000);
+        assertNull(served.get(5, TimeUnit.SECONDS).getErrorInfo());
+        impl.close();
+    }
+
+    @Test
+    public void reportWaitingRequests() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(1_000_000);
+        TicketServiceConfig config = new TicketServiceConfig(2, 5, 60*1000);
+        config.setTimeSource(clock);
+        config.setWaitlistEnabled(true);
+        config.setMetricsEnabled(true);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        MetricsSnapshot earlier = impl.getMetrics().snapshot();
+        assertEquals(1_000_000, earlier.getTimestamp());
+
+        impl.findAndHoldSeats(10, "a@a.com");
+        impl.findAndHoldSeatsOrWait(3, "b@b.com", 60*1000);
+        clock.advance(2000);
+        //snapshots are taken on the service clock
+        MetricsSnapshot later = impl.getMetrics().snapshot();
+        assertEquals(1_002_000, later.getTimestamp());
+        assertEquals(0.5, later.holdRate(earlier), 0.001);
+        assertEquals(1, later.getWaitingRequests());
+        assertEquals(1, impl.getMetrics().getWaitingRequests());
+        impl.close();
+    }
+
+    @Test
+    public void admitPerCustomer() throws Exception {
+        int N = 3, M = 5;
+        ManualTimeSource clock = new ManualTimeSource(0);
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 60*1000);
+        config.setTimeSource(clock);
+        config.setMaxHeldSeatsPerCustomer(4);
+        config.setHoldRatePerCustomer(1);
+        config.setHoldBurstPerCustomer(2);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        SeatHold hold = impl.findAndHoldSeats(3, "a@a.com");
+        assertNull(hold.getErrorInfo());
+        //turned away without taking a token
+        assertEquals("QUOTA_EXCEEDED", impl.findAndHoldSeats(2, "a@a.com").getErrorInfo().getErrorCode());
+        assertEquals(N*M-3, impl.numSeatsAvailable());
+        assertNotNull(impl.reserveSeats(hold.getHoldId(), "a@a.com"));
+        assertNull(impl.findAndHoldSeats(2, "a@a.com").getErrorInfo());
+        assertEquals("RATE_LIMITED", impl.findAndHoldSeats(1, "a@a.com").getErrorInfo().getErrorCode());
+        assertNull(impl.findAndHoldSeats(4, "b@b.com").getErrorInfo());
+        clock.advance(1000);
+        List<SeatHold> holds = impl.findAndHoldSeatsBatch(Arrays.asList(
+                new HoldRequest(2, "a@a.com"), new HoldRequest(1, "a@a.com"), new HoldRequest(1, "b@b.com")));
+        assertNull(holds.get(0).getErrorInfo());
+        assertEquals("RATE_LIMITED", holds.get(1).getErrorInfo().getErrorCode());
+        assertEquals("QUOTA_EXCEEDED", holds.get(2).getErrorInfo().getErrorCode());
+        assertEquals(N*M-3-2-4-2, impl.numSeatsAvailable());
+        impl.close();
+    }
+
+    @Test
+    public void retryWithIdempotencyKey() throws Exception {
+        int N = 2, M = 5;
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 60*1000);
+        config.setIdempotencyTtl(60*1000);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        SeatHold hold = impl.findAndHoldSeats(3, "a@a.com", null, "hold-1");
+        SeatHold retried = impl.findAndHoldSeats(3, "a@a.com", null, "hold-1");
+        assertEquals(hold.getHoldId(), retried.getHoldId());
+        assertEquals(N*M-3, impl.numSeatsAvailable());
+        //the same key from another customer is another request
+        assertNotEquals(hold.getHoldId(), impl.findAndHoldSeats(3, "b@b.com", null, "hold-1").getHoldId());
+        assertEquals(N*M-6, impl.numSeatsAvailable());
+
+        String resId = impl.reserveSeats(hold.getHoldId(), "a@a.com", "reserve-1");
+        assertNotNull(resId);
+        assertEquals(resId, impl.reserveSeats(hold.getHoldId(), "a@a.com", "reserve-1"));
+        assertNull(impl.reserveSeats(hold.getHoldId(), "a@a.com", "reserve-2"));
+        assertEquals(1, impl.getReservationCount());
+        impl.close();
+    }
+
+    @Test
+    public void seatMapOfUnevenSections() throws Exception {
+        VenueLayout layout = VenueLayout.parse("section a\nrows 2x40\nsection b\nrows 1x30\nrows 1x20\n");
+        TicketServiceConfig config = new TicketServiceConfig(layout, 1000);
+        config.setSeatMapEnabled(true);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        assertEquals(130, impl.numSeatsAvailable());
+        SeatMapSnapshot snapshot = impl.getSeatMap().snapshot();
+        assertEquals(130, snapshot.getNumSeatsAvailable());
+        assertTrue(snapshot.isAvailable(2, 40));
+        assertTrue(snapshot.isAvailable(3, 30));
+        assertFalse(snapshot.isAvailable(3, 35));
+        assertTrue(snapshot.isAvailable(4, 20));
+        assertFalse(snapshot.isAvailable(4, 21));
+        impl.close();
+    }
+
+    @Test
+    public void releaseHoldsWhenTheJournalFails() throws Exception {
+        int N = 2, M = 5;
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 60*1000);
+        config.setJournalDirectory(folder.getRoot().toPath());
+        config.setJournalCommitInterval(60*1000);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        SeatHold hold = impl.findAndHoldSeats(3, "a@a.com");
+        SeatHold other = impl.findAndHoldSeats(2, "b@b.com");
+        HoldJournalTest.failChannel(impl.getJournal());
+        try {
+            impl.reserveSeats(hold.getHoldId(), "a@a.com");
+            fail("the reservation is not on disk");
+        } catch(UncheckedIOException e) {
+            //expected
+        }
+        try {
+            impl.reserveSeatsBatch(Arrays.asList(new ReserveRequest(other.getHoldId(), "b@b.com")));
+            fail("the reservation is not on disk");
+        } catch(UncheckedIOException e) {
+            //expected
+        }
+        //neither reserved nor leaked
+        assertEquals(0, impl.getReservationCount());
+        assertEquals(N*M, impl.numSeatsAvailable());
+        try {
+            impl.close();
+        } catch(UncheckedIOException e) {
+            //the journal cannot be closed cleanly
+        }
+    }
+
+    @Test
+    public void releaseEveryExpiredHoldDespiteFailures() throws Exception {
+        int N = 2, M = 5;
+        ManualTimeSource clock = new ManualTimeSource(0);
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 1000);
+        config.setTimeSource(clock);
+        config.setJournalDirectory(folder.getRoot().toPath());
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        impl.findAndHoldSeats(3, "a@a.com");
+        impl.findAndHoldSeats(2, "b@b.com");
+        impl.findAndHoldSeats(4, "c@c.com");
+        //every expiry fails to be journaled
+        impl.getJournal().close();
+        clock.advance(1000 + config.getSweepInterval());
+        try {
+            impl.cleanExpiredHolds();
+            fail("the expiries are not journaled");
+        } catch(IllegalStateException e) {
+            assertEquals(2, e.getSuppressed().length);
+        }
+        assertEquals(N*M, impl.numSeatsAvailable());
+        impl.close();
+    }
+
+    @Test
+    public void handOffWithinQuota() throws Exception {
+        int N = 2, M = 5;
+        ManualTimeSource clock = new ManualTimeSource(0);
+        TicketServiceConfig config = new TicketServiceConfig(N, M, 1000);
+        config.setTimeSource(clock);
+        config.setWaitlistEnabled(true);
+        config.setMaxHeldSeatsPerCustomer(4);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        assertNull(impl.findAndHoldSeats(4, "x@x.com").getErrorInfo());
+        clock.advance(500);
+        assertNull(impl.findAndHoldSeats(4, "y@y.com").getErrorInfo());
+        assertNull(impl.findAndHoldSeats(2, "a@a.com").getErrorInfo());
+        //each attempt gives its quota back while it waits
+        CompletableFuture<SeatHold> first = impl.findAndHoldSeatsOrWait(2, "a@a.com", 60*1000);
+        CompletableFuture<SeatHold> second = impl.findAndHoldSeatsOrWait(2, "a@a.com", 60*1000);
+        assertEquals(2, impl.getWaitlistSize());
+
+        //x's 4 seats are freed: enough for both waiters, but only one fits a's quota
+        clock.advance(500 + config.getSweepInterval());
+        impl.cleanExpiredHolds();
+        assertNull(first.get(5, TimeUnit.SECONDS).getErrorInfo());
+        assertEquals("QUOTA_EXCEEDED", second.get(5, TimeUnit.SECONDS).getErrorInfo().getErrorCode());
+        assertEquals(2, impl.numSeatsAvailable());
+        impl.close();
+    }
+}
@@ -0,0 +1,33 @@
+package org.tics.ticket;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WaitlistTest {
+
+    @Test
+    public void matchBestFitOldestFirst() {
+        Waitlist waitlist = new Waitlist();
+        Waitlist.Waiter a = new Waitlist.Waiter(2, "a@a.com");
+        Waitlist.Waiter b = new Waitlist.Waiter(4, "b@b.com");
+        Waitlist.Waiter c = new Waitlist.Waiter(2, "c@c.com");
+        Waitlist.Waiter d = new Waitlist.Waiter(8, "d@d.com");
+        for(Waitlist.Waiter waiter : Arrays.asList(a, b, c, d)) {
+            waitlist.add(waiter);
+        }
+        assertEquals(4, waitlist.size());
+        assertTrue(waitlist.match(1).isEmpty());
+        //4 seats go to b, then the 3 left to a
+        List<Waitlist.Waiter> served = waitlist.match(7);
+        assertEquals(Arrays.asList(b, a), served);
+        assertEquals(2, waitlist.size());
+        assertTrue(waitlist.remove(c));
+        assertFalse(waitlist.remove(c));
+        assertEquals(Arrays.asList(d), waitlist.clear());
+        assertEquals(0, waitlist.size());
+    }
+}
@@ -0,0 +1,68 @@
+package org.tics.ticket.admission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.tics.ticket.admission.CustomerAdmission.Verdict.*;
+
+public class CustomerAdmissionTest {
+
+    @Test
+    public void capHeldSeats() {
+        CustomerAdmission admission = new CustomerAdmission(6, 0, 0, 1000);
+        assertEquals(ADMITTED, admission.acquire(1, 4, 0));
+        assertEquals(QUOTA_EXCEEDED, admission.acquire(1, 3, 0));
+        assertEquals(ADMITTED, admission.acquire(2, 6, 0));
+        admission.release(1, 4);
+        assertEquals(0, admission.heldSeats(1));
+        assertEquals(ADMITTED, admission.acquire(1, 6, 0));
+        admission.charge(1, 1);
+        assertEquals(7, admission.heldSeats(1));
+    }
+
+    @Test
+    public void limitRequestRate() {
+        //2 requests per second, bursts of 3
+        CustomerAdmission admission = new CustomerAdmission(0, 2, 3, 1000);
+        for(int i = 0; i < 3; i++) {
+            assertEquals(ADMITTED, admission.acquire(1, 1, 0));
+        }
+        assertEquals(RATE_LIMITED, admission.acquire(1, 1, 0));
+        assertEquals(RATE_LIMITED, admission.acquire(1, 1, 499));
+        assertEquals(ADMITTED, admission.acquire(1, 1, 500));
+        assertEquals(RATE_LIMITED, admission.acquire(1, 1, 500));
+        assertEquals(ADMITTED, admission.acquire(2, 1, 500));
+    }
+
+    @Test
+    public void quotaRejectionTakesNoToken() {
+        CustomerAdmission admission = new CustomerAdmission(4, 1, 2, 1000);
+        assertEquals(ADMITTED, admission.acquire(1, 4, 0));
+        for(int i = 0; i < 5; i++) {
+            assertEquals(QUOTA_EXCEEDED, admission.acquire(1, 1, 0));
+        }
+        admission.release(1, 4);
+        assertEquals(ADMITTED, admission.acquire(1, 1, 0));
+        assertEquals(RATE_LIMITED, admission.acquire(1, 1, 0));
+        assertTrue(admission.tryCharge(1, 3));
+        assertFalse(admission.tryCharge(1, 1));
+        assertEquals(4, admission.heldSeats(1));
+    }
+
+    @Test
+    public void boundedTable() {
+        CustomerAdmission admission = new CustomerAdmission(0, 1, 1, 64 * 4);
+        for(int customer = 0; customer < 100_000; customer++) {
+            admission.acquire(customer, 1, 0);
+            admission.release(customer, 1);
+        }
+        assertTrue(admission.size() <= 64 * 4);
+        //customers holding seats are kept
+        admission.acquire(-1, 5, 0);
+        for(int customer = 0; customer < 100_000; customer++) {
+            admission.acquire(customer, 1, 0);
+            admission.release(customer, 1);
+        }
+        assertEquals(5, admission.heldSeats(-1));
+    }
+}
@@ -0,0 +1,110 @@
+package org.tics.ticket.expiry;
+
+import org.junit.Test;
+import org.tics.ticket.SeatBlockHold;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelExpiryEngineTest {
+
+    private static final long START = 1_000_000L;
+
+    private SeatBlockHold hold(int holdId, long expiryMillis) {
+        return new SeatBlockHold(holdId, Collections.emptyList(), expiryMillis);
+    }
+
+    @Test
+    public void testExpiresWithinOneTick() throws Exception {
+        TimingWheelExpiryEngine engine = new TimingWheelExpiryEngine(10, 8, START);
+        List<SeatBlockHold> expired = new ArrayList<>();
+        engine.setExpiryHandler(expired::addAll);
+        engine.schedule(hold(1, START + 25));
+        engine.schedule(hold(2, START + 55));
+
+        engine.advance(START + 20);
+        assertTrue(expired.isEmpty());
+        engine.advance(START + 30);
+        assertEquals(1, expired.size());
+        assertEquals(1, expired.get(0).getHoldId());
+        engine.advance(START + 60);
+        assertEquals(2, expired.size());
+        assertEquals(2, expired.get(1).getHoldId());
+    }
+
+    @Test
+    public void testExpiresAfterSeveralRotations() throws Exception {
+        TimingWheelExpiryEngine engine = new TimingWheelExpiryEngine(10, 8, START);
+        List<SeatBlockHold> expired = new ArrayList<>();
+        engine.setExpiryHandler(expired::addAll);
+        //8 buckets of 10ms - expiry is 3 rotations ahead
+        engine.schedule(hold(1, START + 245));
+
+        for(long now = START; now < START + 240; now += 10) {
+            engine.advance(now);
+            assertTrue(expired.isEmpty());
+        }
+        engine.advance(START + 250);
+        assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void testCancelledHoldDoesNotExpire() throws Exception {
+        TimingWheelExpiryEngine engine = new TimingWheelExpiryEngine(10, 8, START);
+        List<SeatBlockHold> expired = new ArrayList<>();
+        engine.setExpiryHandler(expired::addAll);
+        SeatBlockHold hold1 = hold(1, START + 15);
+        SeatBlockHold hold2 = hold(2, START + 15);
+        engine.schedule(hold1);
+        engine.schedule(hold2);
+        engine.advance(START);
+        assertTrue(engine.cancel(hold1));
+        assertFalse(engine.cancel(hold1));
+
+        engine.advance(START + 100);
+        assertEquals(1, expired.size());
+        assertEquals(2, expired.get(0).getHoldId());
+        assertFalse(engine.cancel(hold2));
+    }
+
+    @Test
+    public void testOverdueHoldExpiresOnNextAdvance() throws Exception {
+        TimingWheelExpiryEngine engine = new TimingWheelExpiryEngine(10, 8, START);
+        List<SeatBlockHold> expired = new ArrayList<>();
+        engine.setExpiryHandler(expired::addAll);
+        engine.advance(START + 500);
+        engine.schedule(hold(1, START + 100));
+        engine.advance(START + 510);
+        assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void testSweepFailureGoesToErrorHandler() throws Exception {
+        long now = System.currentTimeMillis();
+        TimingWheelExpiryEngine engine = new TimingWheelExpiryEngine(10, 8, now);
+        engine.setExpiryHandler(holds -> {
+            throw new IllegalStateException("expiry failed");
+        });
+        CountDownLatch failures = new CountDownLatch(2);
+        engine.setErrorHandler(e -> failures.countDown());
+        engine.schedule(hold(1, now));
+        engine.schedule(hold(2, now + 50));
+        engine.start();
+        try {
+            //the engine keeps sweeping after the first failure
+            assertTrue(failures.await(5, TimeUnit.SECONDS));
+        } finally {
+            engine.stop();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWheelSize() throws Exception {
+        new TimingWheelExpiryEngine(10, 6);
+    }
+}
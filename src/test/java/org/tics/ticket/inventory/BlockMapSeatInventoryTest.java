@@ -0,0 +1,33 @@
+package org.tics.ticket.inventory;
+
+import org.junit.Test;
+import org.tics.ticket.SeatBlock;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BlockMapSeatInventoryTest {
+
+    @Test
+    public void testSoldOutRejectionLeavesMapUnchanged() throws Exception {
+        BlockMapSeatInventory inventory = new BlockMapSeatInventory(3, 4);
+        inventory.allocate(3);
+        inventory.allocate(3);
+        List<SeatBlock> last = inventory.allocate(4);
+        //blocks of 1 in rows 1 and 2
+        assertEquals(1, inventory.largestFreeRun());
+        assertNull(inventory.allocate(3));
+        assertNull(inventory.allocate(0));
+        assertEquals(2, inventory.numSeatsAvailable());
+        List<SeatBlock> blocks = inventory.allocate(2);
+        assertEquals(2, blocks.size());
+        assertEquals(0, inventory.largestFreeRun());
+
+        inventory.release(last);
+        assertEquals(4, inventory.largestFreeRun());
+        blocks = inventory.allocate(4);
+        assertEquals(1, blocks.size());
+        assertEquals(3, blocks.get(0).getRow());
+    }
+}
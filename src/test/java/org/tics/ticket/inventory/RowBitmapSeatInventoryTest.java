@@ -0,0 +1,197 @@
+package org.tics.ticket.inventory;
+
+import org.junit.Test;
+import org.tics.ticket.SeatBlock;
+import org.tics.ticket.allocation.BestFitStrategy;
+import org.tics.ticket.allocation.CenterWeightedStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RowBitmapSeatInventoryTest {
+
+    @Test
+    public void testRowBitmapRuns() throws Exception {
+        RowBitmap row = new RowBitmap(150);
+        assertEquals(150, row.freeCount());
+        assertEquals(150, row.largestRun());
+        row.clear(60, 70);
+        row.clear(130, 131);
+        assertEquals(139, row.freeCount());
+        assertEquals(60, row.largestRun());
+        assertEquals(0, row.findRun(60));
+        row.clear(10, 20);
+        assertEquals(20, row.findRun(11));
+        assertEquals(70, row.findRun(41));
+        assertEquals(-1, row.findRun(61));
+        assertEquals(70, row.nextFree(60));
+        assertEquals(130, row.nextTaken(70));
+        assertEquals(150, row.nextTaken(131));
+        row.set(10, 20);
+        row.set(60, 70);
+        assertEquals(130, row.largestRun());
+        assertTrue(row.isFree(64));
+        assertFalse(row.isFree(130));
+    }
+
+    @Test
+    public void testAllocateContiguousBeforeSplit() throws Exception {
+        RowBitmapSeatInventory inventory = new RowBitmapSeatInventory(2, 5);
+        List<SeatBlock> blocks = inventory.allocate(3);
+        assertEquals(1, blocks.size());
+        assertEquals(1, blocks.get(0).getRow());
+        assertEquals(1, blocks.get(0).getCol());
+        blocks = inventory.allocate(4);
+        assertEquals(1, blocks.size());
+        assertEquals(2, blocks.get(0).getRow());
+        //2 left in row 1 and 1 left in row 2
+        blocks = inventory.allocate(3);
+        assertEquals(2, blocks.size());
+        assertEquals(0, inventory.numSeatsAvailable());
+        assertNull(inventory.allocate(1));
+    }
+
+    @Test
+    public void testReleasedSeatsCoalesce() throws Exception {
+        int M = 50;
+        RowBitmapSeatInventory inventory = new RowBitmapSeatInventory(1, M);
+        List<List<SeatBlock>> allocations = new ArrayList<>();
+        for(int i=0;i<M;i++) {
+            allocations.add(inventory.allocate(1));
+        }
+        assertEquals(0, inventory.numSeatsAvailable());
+        //release in an interleaved order
+        for(int i=0;i<M;i+=2)
+            inventory.release(allocations.get(i));
+        for(int i=1;i<M;i+=2)
+            inventory.release(allocations.get(i));
+        assertEquals(M, inventory.numSeatsAvailable());
+        assertEquals(M, inventory.largestFreeRun());
+        List<SeatBlock> blocks = inventory.allocate(M);
+        assertEquals(1, blocks.size());
+        assertEquals(M, blocks.get(0).getLength());
+    }
+
+    @Test
+    public void testStripedAllocationSplitsAcrossStripes() throws Exception {
+        RowBitmapSeatInventory inventory = new RowBitmapSeatInventory(4, 5, 4);
+        assertEquals(4, inventory.getStripeCount());
+        List<List<SeatBlock>> allocations = new ArrayList<>();
+        for(int i=0;i<4;i++) {
+            allocations.add(inventory.allocate(4));
+        }
+        //1 seat left in each row/stripe
+        List<SeatBlock> blocks = inventory.allocate(3);
+        assertEquals(3, blocks.size());
+        assertEquals(1, inventory.numSeatsAvailable());
+        inventory.release(blocks);
+        inventory.release(allocations.get(2));
+        assertEquals(5, inventory.largestFreeRun());
+        blocks = inventory.allocate(5);
+        assertEquals(1, blocks.size());
+        assertEquals(3, blocks.get(0).getRow());
+    }
+
+    @Test
+    public void testBestFitTakesSmallestRun() throws Exception {
+        RowBitmapSeatInventory inventory = new RowBitmapSeatInventory(3, 10, 1, new BestFitStrategy());
+        List<SeatBlock> row1 = inventory.allocate(10);
+        inventory.allocate(10);
+        inventory.allocate(10);
+        //row 1 gets a 10 seat run back, row 3 a 3 seat run
+        inventory.release(row1);
+        SeatBlock block = new SeatBlock(3, 5);
+        block.setLength(3);
+        List<SeatBlock> row3 = new ArrayList<>();
+        row3.add(block);
+        inventory.release(row3);
+
+        List<SeatBlock> blocks = inventory.allocate(3);
+        assertEquals(3, blocks.get(0).getRow());
+        assertEquals(5, blocks.get(0).getCol());
+        blocks = inventory.allocate(3);
+        assertEquals(1, blocks.get(0).getRow());
+    }
+
+    @Test
+    public void testCenterWeightedPrefersCenterOfFrontRows() throws Exception {
+        RowBitmapSeatInventory inventory = new RowBitmapSeatInventory(5, 20, 1, new CenterWeightedStrategy());
+        List<SeatBlock> blocks = inventory.allocate(4);
+        assertEquals(1, blocks.get(0).getRow());
+        assertEquals(9, blocks.get(0).getCol());
+        //center of row 1 is taken; the center of row 2 beats the seats 3 off center in row 1
+        blocks = inventory.allocate(2);
+        assertEquals(2, blocks.get(0).getRow());
+        assertEquals(10, blocks.get(0).getCol());
+        //no run of 10 in rows 1 and 2 anymore
+        blocks = inventory.allocate(10);
+        assertEquals(3, blocks.get(0).getRow());
+        assertEquals(6, blocks.get(0).getCol());
+        //the seats next to the center of row 1 beat the center of row 4
+        blocks = inventory.allocate(1);
+        assertEquals(1, blocks.get(0).getRow());
+        assertEquals(8, blocks.get(0).getCol());
+    }
+
+    @Test
+    public void testFailedAllocationLeavesPoolUnchanged() throws Exception {
+        RowBitmapSeatInventory inventory = new RowBitmapSeatInventory(2, 5);
+        assertNull(inventory.allocate(11));
+        assertNull(inventory.allocate(0));
+        assertEquals(10, inventory.numSeatsAvailable());
+        assertEquals(5, inventory.largestFreeRun());
+    }
+
+    @Test
+    public void testFreeRunIndex() throws Exception {
+        FreeRunIndex index = new FreeRunIndex(5, 10);
+        assertEquals(10, index.largestRun());
+        assertEquals(3, index.nextRow(3, 10));
+        index.update(0, 2);
+        index.update(1, 0);
+        index.update(3, 6);
+        index.update(4, 1);
+        //rows: 2, 0, 10, 6, 1
+        assertEquals(10, index.largestRun());
+        assertEquals(0, index.nextRow(0, 1));
+        assertEquals(2, index.nextRow(1, 1));
+        assertEquals(2, index.nextRow(0, 7));
+        assertEquals(3, index.nextRow(3, 6));
+        assertEquals(-1, index.nextRow(3, 7));
+        assertEquals(4, index.nextRow(4, 1));
+        assertEquals(-1, index.nextRow(5, 1));
+        index.update(2, 3);
+        assertEquals(6, index.largestRun());
+        assertEquals(-1, index.nextRow(0, 7));
+        assertEquals(3, index.largestRun(2));
+    }
+
+    @Test
+    public void testNoContiguousRunGoesStraightToSplit() throws Exception {
+        RowBitmapSeatInventory inventory = new RowBitmapSeatInventory(6, 4, 3);
+        for(int i = 0; i < 6; i++) {
+            inventory.allocate(4);
+        }
+        //rows 1, 3 and 5 sold out, 2 seats back in the others
+        for(int row = 2; row <= 6; row += 2) {
+            SeatBlock block = new SeatBlock(row, 2);
+            block.setLength(2);
+            List<SeatBlock> released = new ArrayList<>();
+            released.add(block);
+            inventory.release(released);
+        }
+        assertEquals(2, inventory.largestFreeRun());
+        List<SeatBlock> blocks = inventory.allocate(5);
+        assertEquals(3, blocks.size());
+        assertEquals(2, blocks.get(0).getRow());
+        assertEquals(4, blocks.get(1).getRow());
+        assertEquals(1, blocks.get(2).getLength());
+        assertEquals(1, inventory.numSeatsAvailable());
+        assertEquals(1, inventory.largestFreeRun());
+        assertNull(inventory.allocate(2));
+        inventory.release(blocks);
+        assertEquals(2, inventory.largestFreeRun());
+    }
+}
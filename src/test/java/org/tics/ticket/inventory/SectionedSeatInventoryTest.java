@@ -0,0 +1,97 @@
+package org.tics.ticket.inventory;
+
+import org.junit.Test;
+import org.tics.ticket.SeatBlock;
+import org.tics.ticket.venue.VenueLayout;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SectionedSeatInventoryTest {
+
+    private static final VenueLayout LAYOUT = VenueLayout.parse(
+            "section floor tier standard\n" +
+            "rows 2x6\n" +
+            "aisle 3\n" +
+            "section balcony tier standard\n" +
+            "rows 1x4\n" +
+            "section box tier premium\n" +
+            "rows 1x2\n");
+
+    @Test
+    public void testAllocateWithinSection() throws Exception {
+        for(InventoryMode mode : InventoryMode.values()) {
+            SectionedSeatInventory inventory = new SectionedSeatInventory(LAYOUT, section -> mode ==
+                    InventoryMode.BLOCK_MAP ?
+                    new BlockMapSeatInventory(section.getRows(), section.getSeatsInRow()) :
+                    new RowBitmapSeatInventory(section.getRows(), section.getSeatsInRow(), 2));
+            assertEquals(16, inventory.numSeatsAvailable());
+            assertEquals(10, inventory.numSeatsAvailable("floor"));
+            assertEquals(2, inventory.numSeatsAvailable("premium"));
+            //the aisle splits the floor rows into runs of 2 and 3
+            assertEquals(4, inventory.largestFreeRun());
+
+            List<SeatBlock> box = inventory.allocate(2, "premium");
+            assertEquals(1, box.size());
+            assertEquals(4, box.get(0).getRow());
+            assertNull(inventory.allocate(1, "box"));
+
+            List<SeatBlock> balcony = inventory.allocate(4, "balcony");
+            assertEquals(3, balcony.get(0).getRow());
+            assertEquals(4, balcony.get(0).getLength());
+            //contiguous seats of the first section with enough seats, past the aisle
+            List<SeatBlock> floor = inventory.allocate(3);
+            assertEquals(mode.toString(), 1, floor.size());
+            assertTrue(floor.get(0).getRow() <= 2);
+            assertEquals(4, floor.get(0).getCol());
+            assertNull(inventory.allocate(8));
+            assertEquals(7, inventory.numSeatsAvailable());
+
+            inventory.release(balcony);
+            inventory.release(box);
+            assertEquals(4, inventory.numSeatsAvailable("balcony"));
+            inventory.claim(Collections.singletonList(box.get(0)));
+            assertEquals(0, inventory.numSeatsAvailable("box"));
+            assertEquals(11, inventory.numSeatsAvailable());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZoneOfPlainInventory() throws Exception {
+        new RowBitmapSeatInventory(2, 5).allocate(1, "floor");
+    }
+
+    private static SeatInventory inventory(InventoryMode mode) {
+        return new SectionedSeatInventory(LAYOUT, section -> mode == InventoryMode.BLOCK_MAP ?
+                new BlockMapSeatInventory(section.getRows(), section.getSeatsInRow()) :
+                new RowBitmapSeatInventory(section.getRows(), section.getSeatsInRow(), 2));
+    }
+
+    private static String seats(List<SeatBlock> seatBlocks) {
+        if(seatBlocks == null)
+            return "none";
+        StringBuilder seats = new StringBuilder();
+        for(SeatBlock seatBlock : seatBlocks) {
+            seats.append(seatBlock.getRow()).append(':').append(seatBlock.getCol()).append('x')
+                    .append(seatBlock.getLength()).append(' ');
+        }
+        return seats.toString();
+    }
+
+    @Test
+    public void testAllocateBatchSectionBySection() throws Exception {
+        int[] numSeats = {5, 3, 0, 4, 2, 6, 1, 1};
+        for(InventoryMode mode : InventoryMode.values()) {
+            SeatInventory batched = inventory(mode);
+            SeatInventory oneByOne = inventory(mode);
+            List<List<SeatBlock>> allocations = batched.allocateAll(numSeats);
+            assertEquals(numSeats.length, allocations.size());
+            for(int i = 0; i < numSeats.length; i++) {
+                assertEquals(mode + " request " + i, seats(oneByOne.allocate(numSeats[i])), seats(allocations.get(i)));
+            }
+            assertEquals(oneByOne.numSeatsAvailable(), batched.numSeatsAvailable());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.tics.ticket.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tics.ticket.SeatBlock;
+
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class HoldJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<SeatBlock> block(int row, int col, int length) {
+        SeatBlock seatBlock = new SeatBlock(row, col);
+        seatBlock.setLength(length);
+        return Collections.singletonList(seatBlock);
+    }
+
+    private List<Path> files(Path dir, String suffix) throws Exception {
+        try(Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testReplayHoldsReservationsAndExpiries() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        HoldJournal journal = HoldJournal.open(dir, 1, 1000);
+        journal.appendHold(1, "a@a.com", 100L, block(1, 1, 2));
+        journal.appendHold(2, "a@a.com", 200L, block(1, 3, 2));
+        journal.appendHold(3, "a@a.com", 300L, block(2, 1, 4));
+        journal.sync(journal.appendReserve(1, "res-1"));
+        journal.appendExpire(2);
+        journal.close();
+
+        journal = HoldJournal.open(dir, 1, 1000);
+        JournalState state = journal.getRecoveredState();
+        assertEquals(1, state.getReservations().size());
+        assertArrayEquals(new int[]{1, 1, 2}, state.getReservations().get("res-1").getSeatRuns());
+        assertEquals(1, state.getHolds().size());
+        JournalState.HeldSeats hold = state.getHolds().iterator().next();
+        assertEquals(3, hold.getHoldId());
+        assertEquals(300L, hold.getExpiryMillis());
+        journal.close();
+    }
+
+    @Test
+    public void testReplayExtensionsAndReleases() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        HoldJournal journal = HoldJournal.open(dir, 1, 1000);
+        journal.appendHold(1, "b@b.com", 100L, block(1, 1, 4));
+        journal.appendExtend(1, 500L);
+        journal.appendRelease(1, block(1, 1, 2));
+        journal.appendExtend(2, 500L);
+        journal.close();
+
+        journal = HoldJournal.open(dir, 1, 1000);
+        JournalState state = journal.getRecoveredState();
+        assertEquals(1, state.getHolds().size());
+        JournalState.HeldSeats hold = state.getHolds().iterator().next();
+        assertEquals("b@b.com", hold.getCustomerEmail());
+        assertEquals(500L, hold.getExpiryMillis());
+        assertArrayEquals(new int[]{1, 1, 2}, hold.getSeatRuns());
+        journal.close();
+    }
+
+    @Test
+    public void testSnapshotBoundsReplay() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        HoldJournal journal = HoldJournal.open(dir, 1, 1000);
+        for(int i = 1; i <= 100; i++) {
+            journal.appendHold(i, "a@a.com", i, block(i, 1, 1));
+            journal.appendReserve(i, "res-" + i);
+        }
+        journal.snapshot();
+        journal.appendHold(101, "a@a.com", 101L, block(101, 1, 1));
+        journal.close();
+        //only the snapshot and the segment after it are kept
+        assertEquals(1, files(dir, ".snap").size());
+        assertEquals(1, files(dir, ".log").size());
+
+        journal = HoldJournal.open(dir, 1, 1000);
+        assertEquals(100, journal.getRecoveredState().getReservations().size());
+        assertEquals(1, journal.getRecoveredState().getHolds().size());
+        assertEquals(101, journal.getRecoveredState().getHolds().iterator().next().getHoldId());
+        journal.close();
+    }
+
+    @Test
+    public void testSnapshotFailureKeepsTheJournalLive() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        HoldJournal journal = HoldJournal.open(dir, 60 * 1000, 1000);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        journal.setErrorHandler(errors::add);
+        journal.sync(journal.appendHold(1, "a@a.com", 100L, block(1, 1, 2)));
+        //a directory in the way of the next snapshot file
+        String current = files(dir, ".snap").get(0).getFileName().toString();
+        long segment = Long.parseLong(current.substring("snapshot-".length(), current.length() - ".snap".length()));
+        Files.createDirectory(dir.resolve(String.format("snapshot-%016d.snap.tmp", segment + 1)));
+
+        journal.snapshot();
+        assertEquals(1, errors.size());
+        assertNull(journal.getFailure());
+        journal.sync(journal.appendHold(2, "a@a.com", 200L, block(1, 3, 2)));
+        journal.close();
+
+        //recovered from the previous snapshot and both segments
+        journal = HoldJournal.open(dir, 60 * 1000, 1000);
+        assertEquals(2, journal.getRecoveredState().getHolds().size());
+        journal.close();
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        HoldJournal journal = HoldJournal.open(dir, 1, 1000);
+        journal.appendHold(1, "a@a.com", 100L, block(1, 1, 2));
+        journal.sync(journal.appendHold(2, "a@a.com", 200L, block(1, 3, 2)));
+        journal.close();
+        //chop the last record in half
+        Path segment = files(dir, ".log").get(0);
+        try(RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 10);
+        }
+
+        journal = HoldJournal.open(dir, 1, 1000);
+        assertEquals(1, journal.getRecoveredState().getHolds().size());
+        assertEquals(1, journal.getRecoveredState().getHolds().iterator().next().getHoldId());
+        journal.close();
+    }
+
+    //closes the segment channel under the journal, so the next write fails
+    public static void failChannel(HoldJournal journal) throws Exception {
+        journal.closeSegment();
+    }
+
+    @Test
+    public void testWriteFailureFailsTheJournal() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        HoldJournal journal = HoldJournal.open(dir, 60 * 1000, 1000);
+        journal.sync(journal.appendHold(1, "a@a.com", 100L, block(1, 1, 2)));
+        long seq = journal.appendReserve(1, "r1");
+        failChannel(journal);
+        try {
+            journal.sync(seq);
+            fail("the reserve is not on disk");
+        } catch(UncheckedIOException e) {
+            assertSame(e, journal.getFailure());
+        }
+        //later events cannot be made durable either
+        try {
+            journal.sync(journal.appendExpire(1));
+            fail("the journal failed");
+        } catch(UncheckedIOException e) {
+            assertSame(e, journal.getFailure());
+        }
+        journal.close();
+
+        journal = HoldJournal.open(dir, 1, 1000);
+        assertEquals(1, journal.getRecoveredState().getHolds().size());
+        assertTrue(journal.getRecoveredState().getReservations().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void testFlusherFailureFailsTheJournal() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        HoldJournal journal = HoldJournal.open(dir, 10, 1000);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch failed = new CountDownLatch(1);
+        journal.setErrorHandler(e -> {
+            errors.add(e);
+            failed.countDown();
+        });
+        journal.sync(journal.appendHold(1, "a@a.com", 100L, block(1, 1, 2)));
+        failChannel(journal);
+        long seq = journal.appendReserve(1, "r1");
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertSame(errors.get(0), journal.getFailure());
+        try {
+            journal.sync(seq);
+            fail("the reserve is not on disk");
+        } catch(UncheckedIOException e) {
+            assertSame(e, journal.getFailure());
+        }
+        journal.close();
+        //the flusher stops once the journal failed
+        assertEquals(1, errors.size());
+    }
+}
@@ -0,0 +1,375 @@
+package org.tics.ticket.load;
+
+import org.tics.seat.SeatHold;
+import org.tics.seat.SeatInfo;
+import org.tics.ticket.TicketService;
+import org.tics.ticket.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.LongConsumer;
+
+/**
+ * Deterministic load generator for a {@link TicketService}.
+ * <p>
+ * The traffic of a {@link LoadProfile} is played as a discrete event simulation on virtual time, on the calling
+ * thread: customer arrivals, reservations and hold expiries are ordered by virtual time, and every random choice
+ * comes from the profile's seed, so a run is reproducible and hours of expiry run in seconds. The service's clock
+ * and hold expiry have to follow the virtual time (see {@link VirtualExpiryEngine}).
+ * <p>
+ * The generator keeps its own seat map from the holds it gets, and checks after every event that no seat is handed
+ * out twice, that expired holds cannot be reserved and that the seats available, held and reserved add up to the
+ * venue. The {@link Report} gives the real throughput and latency, the fill rate and the final fragmentation.
+ */
+public class LoadGenerator {
+
+    private static final int ARRIVE = 0;
+    private static final int RESERVE = 1;
+    private static final int LATE_RESERVE = 2;
+    private static final int MAX_VIOLATIONS = 10;
+
+    private final LoadProfile profile;
+
+    public LoadGenerator(LoadProfile profile) {
+        if(profile.getRows() <= 0 || profile.getSeatsInRow() <= 0 || profile.getCustomers() < 0 ||
+                profile.getMinSeats() <= 0 || profile.getMaxSeats() < profile.getMinSeats() ||
+                profile.getHoldPeriod() <= 0 || profile.getMeanArrivalInterval() < 0)
+            throw new IllegalArgumentException("profile has to be valid non-zero numbers");
+        if(profile.getReserveRatio() < 0 || profile.getAbandonRate() < 0 ||
+                profile.getReserveRatio() + profile.getAbandonRate() > 1)
+            throw new IllegalArgumentException("reserveRatio/abandonRate has to be valid ratios");
+        this.profile = profile;
+    }
+
+    /**
+     * Plays the profile against the service.
+     *
+     * @param service the service, sized to the profile's venue and initially empty
+     * @param expiry  moves the service's clock to the given virtual time and advances its hold expiry, e.g.
+     *                {@link VirtualExpiryEngine#advance(long)} after {@link org.tics.util.ManualTimeSource#set(long)}
+     * @return the report of the run
+     */
+    public Report run(TicketService service, LongConsumer expiry) {
+        Simulation simulation = new Simulation(service, expiry);
+        long start = System.nanoTime();
+        simulation.play();
+        simulation.report.elapsedNanos = System.nanoTime() - start;
+        simulation.finish();
+        return simulation.report;
+    }
+
+    private final class Simulation {
+
+        private final TicketService service;
+        private final LongConsumer expiry;
+        private final Random random = new Random(profile.getSeed());
+        private final int capacity = profile.getRows() * profile.getSeatsInRow();
+
+        private final PriorityQueue<Event> events = new PriorityQueue<>(
+                Comparator.comparingLong((Event event) -> event.timeMillis).thenComparingLong(event -> event.seq));
+        //holds made, by expiry time; reserved ones are skipped once due
+        private final PriorityQueue<Event> active = new PriorityQueue<>(
+                Comparator.comparingLong((Event event) -> event.dueMillis));
+        private final BitSet taken = new BitSet(capacity);
+        private final LatencyHistogram holdLatency = new LatencyHistogram();
+        private final LatencyHistogram reserveLatency = new LatencyHistogram();
+        private final Report report = new Report();
+
+        private long seq;
+        private int arrived;
+        private int takenSeats;
+
+        Simulation(TicketService service, LongConsumer expiry) {
+            this.service = service;
+            this.expiry = expiry;
+        }
+
+        void play() {
+            check(service.numSeatsAvailable() == capacity, "service does not start empty");
+            if(profile.getCustomers() > 0)
+                add(new Event(ARRIVE, 0));
+            Event event;
+            while((event = events.poll()) != null) {
+                advance(event.timeMillis);
+                switch(event.type) {
+                    case ARRIVE:
+                        arrive(event);
+                        break;
+                    case RESERVE:
+                    case LATE_RESERVE:
+                        reserve(event);
+                        break;
+                    default:
+                        break;
+                }
+                check(service.numSeatsAvailable() == capacity - takenSeats,
+                        "seats not conserved at " + event.timeMillis + ": " + service.numSeatsAvailable() +
+                                " available, " + takenSeats + " held or reserved");
+            }
+        }
+
+        void finish() {
+            advance(report.virtualMillis + profile.getHoldPeriod());
+            check(service.numSeatsAvailable() == capacity - report.reservedSeats,
+                    "seats not conserved after the last expiry: " + service.numSeatsAvailable() + " available, " +
+                            report.reservedSeats + " reserved");
+            report.holdLatency = holdLatency.snapshot();
+            report.reserveLatency = reserveLatency.snapshot();
+            report.capacity = capacity;
+            report.availableSeats = capacity - takenSeats;
+            report.largestFreeRun = largestFreeRun();
+        }
+
+        private void advance(long nowMillis) {
+            report.virtualMillis = nowMillis;
+            expiry.accept(nowMillis);
+            while(!active.isEmpty() && active.peek().dueMillis <= nowMillis) {
+                Event expired = active.poll();
+                if(expired.reserved)
+                    continue;
+                free(expired.seats);
+                report.expired++;
+            }
+        }
+
+        private void arrive(Event event) {
+            if(++arrived < profile.getCustomers()) {
+                double interval = -profile.getMeanArrivalInterval() * Math.log(1 - random.nextDouble());
+                add(new Event(ARRIVE, event.timeMillis + (long) interval));
+            }
+            int numSeats = profile.getMinSeats() + random.nextInt(profile.getMaxSeats() - profile.getMinSeats() + 1);
+            double fate = random.nextDouble();
+            long think = (long) (random.nextDouble() * profile.getHoldPeriod());
+            String customerEmail = "customer" + arrived + "@load.test";
+
+            long start = System.nanoTime();
+            SeatHold hold = service.findAndHoldSeats(numSeats, customerEmail);
+            holdLatency.record(System.nanoTime() - start);
+            report.holdRequests++;
+            if(hold == null || hold.getErrorInfo() != null) {
+                report.rejected++;
+                return;
+            }
+            report.holds++;
+            Event held = new Event(ARRIVE, event.timeMillis);
+            held.holdId = hold.getHoldId();
+            held.customerEmail = customerEmail;
+            held.dueMillis = event.timeMillis + profile.getHoldPeriod();
+            held.seats = take(hold);
+            check(held.seats.length == numSeats, "hold " + hold.getHoldId() + " got " + held.seats.length +
+                    " seats instead of " + numSeats);
+            active.add(held);
+
+            if(fate < profile.getReserveRatio()) {
+                held.type = RESERVE;
+                held.timeMillis += think;
+                add(held);
+            } else if(fate >= profile.getReserveRatio() + profile.getAbandonRate()) {
+                Event late = new Event(LATE_RESERVE, held.dueMillis + think);
+                late.holdId = held.holdId;
+                late.customerEmail = customerEmail;
+                add(late);
+            }
+        }
+
+        private void reserve(Event event) {
+            long start = System.nanoTime();
+            String reservationId = service.reserveSeats(event.holdId, event.customerEmail);
+            reserveLatency.record(System.nanoTime() - start);
+            report.reserveRequests++;
+            if(event.type == LATE_RESERVE) {
+                check(reservationId == null, "expired hold " + event.holdId + " was reserved");
+                return;
+            }
+            if(!check(reservationId != null, "active hold " + event.holdId + " could not be reserved"))
+                return;
+            event.reserved = true;
+            report.reservations++;
+            report.reservedSeats += event.seats.length;
+        }
+
+        private int[] take(SeatHold hold) {
+            List<SeatInfo> seats = hold.getSeats();
+            int[] indexes = new int[seats.size()];
+            for(int i = 0; i < indexes.length; i++) {
+                SeatInfo seat = seats.get(i);
+                int index = (seat.getRow() - 1) * profile.getSeatsInRow() + seat.getCol() - 1;
+                check(!taken.get(index), "seat " + seat.getRow() + ":" + seat.getCol() + " was handed out twice");
+                taken.set(index);
+                indexes[i] = index;
+            }
+            takenSeats += indexes.length;
+            return indexes;
+        }
+
+        private void free(int[] seats) {
+            for(int index : seats) {
+                taken.clear(index);
+            }
+            takenSeats -= seats.length;
+        }
+
+        private int largestFreeRun() {
+            int largest = 0;
+            for(int row = 0; row < profile.getRows(); row++) {
+                int from = row * profile.getSeatsInRow();
+                int end = from + profile.getSeatsInRow();
+                int start = taken.nextClearBit(from);
+                while(start < end) {
+                    int stop = Math.min(taken.nextSetBit(start) < 0 ? end : taken.nextSetBit(start), end);
+                    largest = Math.max(largest, stop - start);
+                    start = taken.nextClearBit(stop);
+                }
+            }
+            return largest;
+        }
+
+        private void add(Event event) {
+            event.seq = seq++;
+            events.add(event);
+        }
+
+        private boolean check(boolean condition, String violation) {
+            if(!condition) {
+                report.violationCount++;
+                if(report.violations.size() < MAX_VIOLATIONS)
+                    report.violations.add(violation);
+            }
+            return condition;
+        }
+    }
+
+    private static final class Event {
+        private int type;
+        private long timeMillis;
+        private long seq;
+        private int holdId;
+        private String customerEmail;
+        private long dueMillis;
+        private int[] seats;
+        private boolean reserved;
+
+        Event(int type, long timeMillis) {
+            this.type = type;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    /**
+     * Outcome of a run. Latencies are in real nanoseconds, times otherwise in virtual milliseconds.
+     */
+    public static class Report {
+        private long holdRequests;
+        private long holds;
+        private long rejected;
+        private long reserveRequests;
+        private long reservations;
+        private long reservedSeats;
+        private long expired;
+        private long virtualMillis;
+        private long elapsedNanos;
+        private int capacity;
+        private int availableSeats;
+        private int largestFreeRun;
+        private LatencyHistogram.Snapshot holdLatency;
+        private LatencyHistogram.Snapshot reserveLatency;
+        private long violationCount;
+        private final List<String> violations = new ArrayList<>();
+
+        public long getHoldRequests() {
+            return holdRequests;
+        }
+
+        public long getHolds() {
+            return holds;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getReservations() {
+            return reservations;
+        }
+
+        public long getReservedSeats() {
+            return reservedSeats;
+        }
+
+        public long getExpired() {
+            return expired;
+        }
+
+        public long getVirtualMillis() {
+            return virtualMillis;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the hold and reserve calls served per real second
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : (holdRequests + reserveRequests) * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return the share of the venue sold
+         */
+        public double getFillRate() {
+            return capacity == 0 ? 0 : (double) reservedSeats / capacity;
+        }
+
+        /**
+         * @return the share of the seats left available outside the largest free run, once all the holds expired
+         */
+        public double getFragmentation() {
+            return availableSeats == 0 ? 0 : 1 - (double) largestFreeRun / availableSeats;
+        }
+
+        public int getAvailableSeats() {
+            return availableSeats;
+        }
+
+        public int getLargestFreeRun() {
+            return largestFreeRun;
+        }
+
+        public LatencyHistogram.Snapshot getHoldLatency() {
+            return holdLatency;
+        }
+
+        public LatencyHistogram.Snapshot getReserveLatency() {
+            return reserveLatency;
+        }
+
+        public long getViolationCount() {
+            return violationCount;
+        }
+
+        /**
+         * @return the first violations found
+         */
+        public List<String> getViolations() {
+            return violations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Report{holds=%d/%d, rejected=%d, reservations=%d (%d seats), expired=%d, " +
+                            "virtual=%ds, elapsed=%dms, throughput=%.0f ops/s, hold p50/p99=%d/%dns, " +
+                            "reserve p50/p99=%d/%dns, fill=%.3f, fragmentation=%.3f, violations=%d %s}",
+                    holds, holdRequests, rejected, reservations, reservedSeats, expired,
+                    virtualMillis / 1000, elapsedNanos / 1_000_000, getThroughput(),
+                    holdLatency.getValueAtPercentile(50), holdLatency.getValueAtPercentile(99),
+                    reserveLatency.getValueAtPercentile(50), reserveLatency.getValueAtPercentile(99),
+                    getFillRate(), getFragmentation(), violationCount, violations);
+        }
+    }
+}
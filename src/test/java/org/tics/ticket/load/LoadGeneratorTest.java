@@ -0,0 +1,80 @@
+package org.tics.ticket.load;
+
+import org.junit.Test;
+import org.tics.ticket.TicketServiceConfig;
+import org.tics.ticket.TicketServiceImpl;
+import org.tics.ticket.inventory.InventoryMode;
+import org.tics.util.ManualTimeSource;
+
+import static org.junit.Assert.*;
+
+public class LoadGeneratorTest {
+
+    private LoadProfile profile(long seed) {
+        LoadProfile profile = new LoadProfile();
+        profile.setSeed(seed);
+        profile.setRows(100);
+        profile.setSeatsInRow(50);
+        profile.setCustomers(20_000);
+        profile.setReserveRatio(0.1);
+        profile.setAbandonRate(0.6);
+        profile.setHoldPeriod(5 * 60 * 1000);
+        profile.setMeanArrivalInterval(500);
+        return profile;
+    }
+
+    private LoadGenerator.Report run(LoadProfile profile, InventoryMode inventoryMode) {
+        ManualTimeSource clock = new ManualTimeSource(0);
+        VirtualExpiryEngine engine = new VirtualExpiryEngine();
+        TicketServiceConfig config = new TicketServiceConfig(profile.getRows(), profile.getSeatsInRow(),
+                (int) profile.getHoldPeriod());
+        config.setInventoryMode(inventoryMode);
+        config.setExpiryEngine(engine);
+        config.setTimeSource(clock);
+        TicketServiceImpl impl = new TicketServiceImpl(config);
+        try {
+            return new LoadGenerator(profile).run(impl, now -> {
+                clock.set(now);
+                engine.advance(now);
+            });
+        } finally {
+            impl.close();
+        }
+    }
+
+    @Test
+    public void soakConservesSeats() throws Exception {
+        for(InventoryMode inventoryMode : InventoryMode.values()) {
+            LoadGenerator.Report report = run(profile(42), inventoryMode);
+            String mode = inventoryMode.toString();
+            assertEquals(mode + " " + report.getViolations(), 0, report.getViolationCount());
+            //every request completed, either held or rejected
+            assertEquals(mode, 20_000, report.getHoldRequests());
+            assertEquals(mode, report.getHoldRequests(), report.getHolds() + report.getRejected());
+            assertEquals(mode, report.getHoldRequests(), report.getHoldLatency().getCount());
+            assertTrue(mode, report.getExpired() > 0);
+            assertTrue(mode, report.getReservations() > 0);
+            assertTrue(mode, report.getReservations() + report.getExpired() <= report.getHolds());
+            //reservations take 1 to 8 seats each
+            assertTrue(mode, report.getReservedSeats() >= report.getReservations());
+            assertTrue(mode, report.getReservedSeats() <= 8 * report.getReservations());
+            //hours of virtual time
+            assertTrue(mode, report.getVirtualMillis() > 2 * 60 * 60 * 1000);
+            //the seats are either reserved or back on sale once every hold expired
+            assertEquals(mode, 5000 - report.getReservedSeats(), report.getAvailableSeats());
+        }
+    }
+
+    @Test
+    public void sameSeedSameRun() throws Exception {
+        LoadGenerator.Report first = run(profile(7), InventoryMode.ROW_BITMAP);
+        LoadGenerator.Report second = run(profile(7), InventoryMode.ROW_BITMAP);
+        assertEquals(0, first.getViolationCount());
+        assertEquals(first.getHolds(), second.getHolds());
+        assertEquals(first.getRejected(), second.getRejected());
+        assertEquals(first.getReservedSeats(), second.getReservedSeats());
+        assertEquals(first.getExpired(), second.getExpired());
+        assertEquals(first.getVirtualMillis(), second.getVirtualMillis());
+        assertEquals(first.getLargestFreeRun(), second.getLargestFreeRun());
+    }
+}
@@ -0,0 +1,102 @@
+package org.tics.ticket.load;
+
+/**
+ * Traffic mix simulated by the {@link LoadGenerator}. Times are in virtual milliseconds.
+ * <p>
+ * Customers arrive one after the other, at exponentially distributed intervals, and each holds a uniformly
+ * distributed number of seats. A customer then either reserves within the hold period (reserve ratio), walks away
+ * and lets the hold expire (abandon rate), or comes back to reserve after the hold expired (the rest).
+ */
+public class LoadProfile {
+
+    private long seed = 1;
+    private int rows = 100;
+    private int seatsInRow = 50;
+    private int customers = 100_000;
+    private int minSeats = 1;
+    private int maxSeats = 8;
+    private double reserveRatio = 0.6;
+    private double abandonRate = 0.3;
+    private long holdPeriod = 5 * 60 * 1000;
+    private long meanArrivalInterval = 50;
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    public int getSeatsInRow() {
+        return seatsInRow;
+    }
+
+    public void setSeatsInRow(int seatsInRow) {
+        this.seatsInRow = seatsInRow;
+    }
+
+    public int getCustomers() {
+        return customers;
+    }
+
+    public void setCustomers(int customers) {
+        this.customers = customers;
+    }
+
+    public int getMinSeats() {
+        return minSeats;
+    }
+
+    public void setMinSeats(int minSeats) {
+        this.minSeats = minSeats;
+    }
+
+    public int getMaxSeats() {
+        return maxSeats;
+    }
+
+    public void setMaxSeats(int maxSeats) {
+        this.maxSeats = maxSeats;
+    }
+
+    public double getReserveRatio() {
+        return reserveRatio;
+    }
+
+    public void setReserveRatio(double reserveRatio) {
+        this.reserveRatio = reserveRatio;
+    }
+
+    public double getAbandonRate() {
+        return abandonRate;
+    }
+
+    public void setAbandonRate(double abandonRate) {
+        this.abandonRate = abandonRate;
+    }
+
+    public long getHoldPeriod() {
+        return holdPeriod;
+    }
+
+    public void setHoldPeriod(long holdPeriod) {
+        this.holdPeriod = holdPeriod;
+    }
+
+    public long getMeanArrivalInterval() {
+        return meanArrivalInterval;
+    }
+
+    public void setMeanArrivalInterval(long meanArrivalInterval) {
+        this.meanArrivalInterval = meanArrivalInterval;
+    }
+}
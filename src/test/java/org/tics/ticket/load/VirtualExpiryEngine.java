@@ -0,0 +1,92 @@
+package org.tics.ticket.load;
+
+import org.tics.ticket.SeatBlockHold;
+import org.tics.ticket.expiry.HoldExpiryEngine;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Expiry engine running on virtual time: it never advances on its own, and a hold expires once the engine is
+ * advanced past its expiry time. Paired with a {@link org.tics.util.ManualTimeSource} stamping the holds, hours of
+ * expiry run as fast as the holds can be made, and the same requests always expire at the same point.
+ */
+public class VirtualExpiryEngine implements HoldExpiryEngine {
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(
+            Comparator.comparingLong((Entry entry) -> entry.dueMillis).thenComparingLong(entry -> entry.seq));
+    private Consumer<List<SeatBlockHold>> expiryHandler = (holds) -> {};
+    private long nowMillis;
+    private long seq;
+
+    @Override
+    public void setExpiryHandler(Consumer<List<SeatBlockHold>> expiryHandler) {
+        this.expiryHandler = expiryHandler;
+    }
+
+    @Override
+    public synchronized void schedule(SeatBlockHold hold) {
+        Entry entry = new Entry(hold, hold.getExpiryMillis(), seq++);
+        hold.setExpiryHandle(entry);
+        queue.add(entry);
+    }
+
+    @Override
+    public synchronized boolean cancel(SeatBlockHold hold) {
+        Object handle = hold.getExpiryHandle();
+        if(!(handle instanceof Entry) || ((Entry) handle).done)
+            return false;
+        ((Entry) handle).done = true;
+        return true;
+    }
+
+    /**
+     * Moves the virtual time forward and expires the holds due by then.
+     *
+     * @param nowMillis the virtual time
+     */
+    @Override
+    public void advance(long nowMillis) {
+        List<SeatBlockHold> expired = new ArrayList<>();
+        synchronized (this) {
+            this.nowMillis = Math.max(this.nowMillis, nowMillis);
+            while(!queue.isEmpty() && queue.peek().dueMillis <= this.nowMillis) {
+                Entry entry = queue.poll();
+                if(!entry.done) {
+                    entry.done = true;
+                    expired.add(entry.hold);
+                }
+            }
+        }
+        if(!expired.isEmpty())
+            expiryHandler.accept(expired);
+    }
+
+    public synchronized long getNowMillis() {
+        return nowMillis;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    private static final class Entry {
+        private final SeatBlockHold hold;
+        private final long dueMillis;
+        private final long seq;
+        private boolean done;
+
+        Entry(SeatBlockHold hold, long dueMillis, long seq) {
+            this.hold = hold;
+            this.dueMillis = dueMillis;
+            this.seq = seq;
+        }
+    }
+}
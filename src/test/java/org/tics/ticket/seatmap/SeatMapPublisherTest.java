@@ -0,0 +1,96 @@
+package org.tics.ticket.seatmap;
+
+import org.junit.Test;
+import org.tics.ticket.SeatBlock;
+import org.tics.ticket.inventory.RowBitmapSeatInventory;
+import org.tics.util.ManualTimeSource;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SeatMapPublisherTest {
+
+    private static List<SeatBlock> seats(int row, int col, int length) {
+        SeatBlock seatBlock = new SeatBlock(row, col);
+        seatBlock.setLength(length);
+        return Collections.singletonList(seatBlock);
+    }
+
+    @Test
+    public void publishAfterInterval() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(1000);
+        RowBitmapSeatInventory inventory = new RowBitmapSeatInventory(3, 70);
+        inventory.claim(seats(3, 65, 6));
+        SeatMapPublisher seatMap = new SeatMapPublisher(inventory, 3, 70, seats(3, 65, 6), 50, clock);
+        SeatMapSnapshot initial = seatMap.snapshot();
+        assertEquals(0, initial.getVersion());
+        assertEquals(204, initial.getNumSeatsAvailable());
+        assertTrue(initial.isAvailable(3, 64));
+        assertFalse(initial.isAvailable(3, 65));
+        assertEquals(16 + 3 * 2 * 8, initial.encode().length);
+
+        List<SeatBlock> held = seatMap.allocate(70);
+        assertEquals(1, held.get(0).getRow());
+        //not published before the interval
+        assertSame(initial, seatMap.snapshot());
+        clock.advance(50);
+        SeatMapSnapshot first = seatMap.snapshot();
+        assertEquals(1, first.getVersion());
+        assertEquals(134, first.getNumSeatsAvailable());
+        assertFalse(first.isAvailable(1, 70));
+        assertTrue(initial.isAvailable(1, 70));
+        assertEquals(0, first.getRow(1)[0]);
+        //nothing changed since
+        clock.advance(50);
+        assertSame(first, seatMap.snapshot());
+
+        seatMap.release(seats(1, 10, 5));
+        seatMap.allocate(1);
+        clock.advance(50);
+        SeatMapSnapshot second = seatMap.snapshot();
+        assertEquals(2, second.getVersion());
+        assertEquals(138, second.getNumSeatsAvailable());
+
+        SeatMapDelta delta = seatMap.changesSince(0);
+        assertEquals(2, delta.getToVersion());
+        assertEquals(1, delta.size());
+        assertEquals(1, delta.getRow(0));
+        //seats 11 to 14 back, seat 10 taken again
+        assertEquals(0xFL << 10, delta.getBitmap(0)[0]);
+        assertEquals(1, seatMap.changesSince(1).size());
+        assertEquals(0, seatMap.changesSince(2).size());
+        assertNull(seatMap.changesSince(3));
+    }
+
+    @Test
+    public void forgetOldVersions() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(0);
+        SeatMapPublisher seatMap = new SeatMapPublisher(new RowBitmapSeatInventory(10, 10), 10, 10,
+                Collections.<SeatBlock>emptyList(), 0, clock);
+        for(int i = 0; i < SeatMapPublisher.DEFAULT_HISTORY + 1; i++) {
+            seatMap.allocate(1);
+            seatMap.snapshot();
+        }
+        assertEquals(SeatMapPublisher.DEFAULT_HISTORY + 1, seatMap.snapshot().getVersion());
+        //version 1 was overwritten by the last one
+        assertNull(seatMap.changesSince(1));
+        //one seat a version from row 1 on
+        assertEquals(7, seatMap.changesSince(2).size());
+    }
+
+    @Test
+    public void publishOnceVenueWorthPending() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(0);
+        SeatMapPublisher seatMap = new SeatMapPublisher(new RowBitmapSeatInventory(2, 2), 2, 2,
+                Collections.<SeatBlock>emptyList(), 1000, clock);
+        for(int i = 0; i < 4; i++) {
+            List<SeatBlock> seatBlocks = seatMap.allocate(1);
+            seatMap.release(seatBlocks);
+        }
+        //published by the writers, not waiting for a reader
+        assertTrue(seatMap.snapshot().getVersion() > 0);
+        assertEquals(4, seatMap.snapshot().getNumSeatsAvailable());
+    }
+}
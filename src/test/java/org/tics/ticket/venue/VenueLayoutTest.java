@@ -0,0 +1,79 @@
+package org.tics.ticket.venue;
+
+import org.junit.Test;
+import org.tics.ticket.SeatBlock;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VenueLayoutTest {
+
+    private static final String LAYOUT =
+            "# small hall\n" +
+            "section orchestra tier premium\n" +
+            "rows 2x10\n" +
+            "rows 1x8        # last row is shorter\n" +
+            "aisle 5\n" +
+            "blocked 1:1-2 3:8\n" +
+            "\n" +
+            "section box tier premium\n" +
+            "rows 1x4\n" +
+            "section balcony\n" +
+            "rows 4x12\n";
+
+    @Test
+    public void testParseLayout() throws Exception {
+        VenueLayout layout = VenueLayout.parse(LAYOUT);
+        assertEquals(3, layout.getSections().size());
+        assertEquals(8, layout.getRows());
+        assertEquals(12, layout.getSeatsInRow());
+
+        Section orchestra = layout.getSections().get(0);
+        assertEquals("premium", orchestra.getTier());
+        assertEquals(3, orchestra.getRows());
+        assertEquals(10, orchestra.getSeatsInRow());
+        assertEquals(8, orchestra.getRowLength(3));
+        //30 - 2 (short row) - 3 (aisle) - 2 - 1 (blocked; 3:8 besides the aisle)
+        assertEquals(22, orchestra.getNumSeats());
+        List<SeatBlock> blocked = orchestra.getBlockedSeats();
+        //row 1: 1-2 and 5; row 2: 5; row 3: 5 and 8-10
+        assertEquals(5, blocked.size());
+        assertEquals(3, blocked.get(4).getRow());
+        assertEquals(8, blocked.get(4).getCol());
+        assertEquals(3, blocked.get(4).getLength());
+
+        assertEquals(22 + 4 + 48, layout.getNumSeats());
+        assertEquals(1, layout.getSections().get(1).getIndex());
+        assertEquals(4, layout.getSections().get(1).getFirstRow());
+        assertEquals("balcony", layout.getSectionOfRow(5).getName());
+        assertEquals("box", layout.getSectionOfRow(4).getName());
+        assertEquals(2, layout.getZone("premium").size());
+        assertEquals(1, layout.getZone("balcony").size());
+    }
+
+    @Test
+    public void testInvalidLayouts() throws Exception {
+        assertInvalid("rows 2x10\n", "line 1");
+        assertInvalid("section a\nrows 2by10\n", "line 2");
+        assertInvalid("section a\nrows 2x10\nblocked 3:1\n", "outside section a");
+        assertInvalid("section a\nrows 2x10\nseats 3\n", "line 3");
+        assertInvalid("section a\nsection b\nrows 1x1\n", "no rows");
+        assertInvalid("section a\nrows 1x1\nsection a\nrows 1x1\n", "defined twice");
+        assertInvalid("section a tier b\nrows 1x1\nsection b\nrows 1x1\n", "also a section name");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownZone() throws Exception {
+        VenueLayout.parse(LAYOUT).getZone("standing");
+    }
+
+    private void assertInvalid(String layout, String message) {
+        try {
+            VenueLayout.parse(layout);
+            fail("parsed " + layout);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.tics.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.*;
+
+public class SnowflakeIdGeneratorTest {
+
+    @Test
+    public void idsAreOrderedAndUnique() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5);
+        String previous = generator.nextId();
+        //more ids than fit in a millisecond
+        for(int i = 0; i < 20000; i++) {
+            String id = generator.nextId();
+            assertEquals(13, id.length());
+            assertTrue(id.compareTo(previous) > 0);
+            previous = id;
+        }
+        long id = SnowflakeIdGenerator.parse(previous);
+        assertEquals(previous, SnowflakeIdGenerator.format(id));
+        assertEquals(5, SnowflakeIdGenerator.nodeOf(id));
+        assertTrue(Math.abs(SnowflakeIdGenerator.timestampOf(id) - System.currentTimeMillis()) < 60 * 1000);
+    }
+
+    @Test
+    public void idsAreUniqueAcrossThreadsAndNodes() throws Exception {
+        SnowflakeIdGenerator node1 = new SnowflakeIdGenerator(1);
+        SnowflakeIdGenerator node2 = new SnowflakeIdGenerator(2);
+        ConcurrentLinkedQueue<String> ids = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < 4; t++) {
+            SnowflakeIdGenerator generator = t % 2 == 0 ? node1 : node2;
+            threads.add(new Thread(() -> {
+                for(int i = 0; i < 10000; i++) {
+                    ids.add(generator.nextId());
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        Set<String> unique = new HashSet<>(ids);
+        assertEquals(40000, unique.size());
+    }
+
+    @Test
+    public void resumeAfterLastId() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0);
+        long future = (System.currentTimeMillis() + 60 * 1000 - SnowflakeIdGenerator.EPOCH) << 22;
+        String last = SnowflakeIdGenerator.format(future);
+        generator.resumeAfter(last);
+        generator.resumeAfter("5f0e4c1e-0000-0000-0000-000000000000");
+        assertTrue(generator.nextId().compareTo(last) > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidNodeId() {
+        new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1);
+    }
+}